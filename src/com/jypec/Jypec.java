@@ -1,6 +1,8 @@
 package com.jypec;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -14,9 +16,12 @@ import com.jypec.comdec.Compressor;
 import com.jypec.distortion.ImageComparisons;
 import com.jypec.img.HyperspectralImage;
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.ImageHeaderData;
 import com.jypec.util.JypecException;
+import com.jypec.util.bits.BitInputStream;
 import com.jypec.util.bits.BitOutputStream;
 import com.jypec.util.bits.BitOutputStreamTree;
+import com.jypec.util.bits.BitPipeSpillArea;
 import com.jypec.util.debug.Logger;
 import com.jypec.util.io.HyperspectralImageReader;
 import com.jypec.util.io.HyperspectralImageWriter;
@@ -57,9 +62,10 @@ public class Jypec {
 		/** Create the output stream and save the compressed result */
 		BitOutputStreamTree bstn;
 		if (args.showTree) {
-			bstn = new BitOutputStreamTree("root", args.showTree);
+			//keep the tree's memory bounded, spilling to disk if needed
+			bstn = new BitOutputStreamTree("root", args.showTree, BitPipeSpillArea.DEFAULT_SPILL_THRESHOLD);
 		} else { //in this case dump while compressing to avoid memory overhead
-			bstn = new BitOutputStreamTree(new FileOutputStream(new File(args.output)));
+			bstn = new BitOutputStreamTree(new FileOutputStream(new File(args.output)), BitOutputStream.DEFAULT_BUFFER_SIZE);
 		}
 		ImageHeaderReaderWriter.saveToCompressedStream(hi.getHeader(), bstn.addChild("header"), args.essentialHeader);
 		c.compress(hi.getData(), bstn.addChild("body"));
@@ -84,8 +90,13 @@ public class Jypec {
 		/** close output streams and dump data if needed */
 		if (args.showTree) { //if the tree was shown we need to dump the results now
 			Logger.getLogger().log("Saving compressed data...");
-			BitOutputStream output = new BitOutputStream(new FileOutputStream(new File(args.output)));
+			BitOutputStream output = new BitOutputStream(new FileOutputStream(new File(args.output)), BitOutputStream.DEFAULT_BUFFER_SIZE);
 			bstn.dumpInBitOutputStream(output);
+			output.paddingFlush();
+			output.close();
+		} else {
+			//keep the last bits if the stream did not end byte aligned
+			bstn.paddingFlush();
 		}
 		bstn.close();
 	}
@@ -107,7 +118,20 @@ public class Jypec {
 		/** Check arguments */
 		checkDecompressArguments(args);
 		
-		/** Read input image, decompressing if compressed format is found */
+		/** Compressed images are decompressed straight to the output */
+		ImageHeaderData header = new ImageHeaderData();
+		BitInputStream headerStream = new BitInputStream(new BufferedInputStream(new FileInputStream(args.input)));
+		try {
+			ImageHeaderReaderWriter.loadFromStream(headerStream, header);
+		} finally {
+			headerStream.close();
+		}
+		if (header.wasCompressed()) {
+			HyperspectralImageWriter.write(header, HyperspectralImageReader.openCompressed(args.input, header), args);
+			return;
+		}
+		
+		/** Otherwise read the input image as is */
 		HyperspectralImage hi = HyperspectralImageReader.read(args.input, false);
 		
 		/** Save the result */
@@ -123,8 +147,8 @@ public class Jypec {
 	 */
 	public static void compare(InputArguments args) throws IOException {
 		//read both images
-		HyperspectralImage first = HyperspectralImageReader.read(args.input, args.inputHeader, true);
-		HyperspectralImage second = HyperspectralImageReader.read(args.output, args.outputHeader, true);
+		HyperspectralImage first = HyperspectralImageReader.readMapped(args.input, args.inputHeader);
+		HyperspectralImage second = HyperspectralImageReader.readMapped(args.output, args.outputHeader);
 		
 		//check that they are the same size and stuff
 		if (!first.getData().sizeAndTypeEquals(second.getData())) {
@@ -153,7 +177,7 @@ public class Jypec {
 	 * @throws IOException 
 	 */
 	public static void analyze(InputArguments args) throws IOException {
-		HyperspectralImage image = HyperspectralImageReader.read(args.input, args.inputHeader, true);
+		HyperspectralImage image = HyperspectralImageReader.readMapped(args.input, args.inputHeader);
 		HyperspectralImageData hid = image.getData();
 		
 		int blacks = 0;
@@ -70,6 +70,10 @@ public class InputArguments {
 	public boolean requestPrequantization;
 	/** List of arguments for the prequantization transform */
 	public String[] prequantizationArgs;
+	/** True if lossless compression was asked for */
+	public boolean requestLossless;
+	/** Spectral transform for lossless compression, or null if none */
+	public String losslessSpectral;
 	
 	
 	/**
@@ -114,6 +118,10 @@ public class InputArguments {
 			args.prequantizationArgs = line.getOptionValues(JypecCLI.OPTION_PREQUANTIZE);
 		}
 		
+		if (args.requestLossless = line.hasOption(JypecCLI.OPTION_LOSSLESS)) {
+			args.losslessSpectral = line.getOptionValue(JypecCLI.OPTION_LOSSLESS);
+		}
+		
 		args.shaves = new LowKeyHashMap<Integer, Integer>();
 		if (line.hasOption(JypecCLI.OPTION_SHAVE)) {
 			String[] values = line.getOptionValues(JypecCLI.OPTION_SHAVE);
@@ -51,6 +51,8 @@ public class JypecCLI {
 	public static final String OPTION_HARDCODE_OUTLIERS = "hardcode_outliers";
 	/** Option to prequantize the transform so that non uniform quantization is done */
 	public static final String OPTION_PREQUANTIZE = "prequantize";
+	/** Option to code the image losslessly with integer transforms */
+	public static final String OPTION_LOSSLESS = "lossless";
 	
 	/* Options for jypec */
 	private static Options jypecOptions;
@@ -114,7 +116,7 @@ public class JypecCLI {
 		
 		Option prequantization = Option
 				.builder()
-				.desc("prequantization transformation algorithm")
+				.desc("prequantization transformation algorithm (log, sqrt, split or none). Add lut after log to interpolate a table instead of calculating logarithms")
 				.hasArgs()
 				.argName("args[]")
 				.longOpt(OPTION_PREQUANTIZE)
@@ -160,6 +162,15 @@ public class JypecCLI {
 				.longOpt(OPTION_HARDCODE_OUTLIERS)
 				.build();
 		
+		Option lossless = Option
+				.builder()
+				.desc("Compress losslessly with the integer 5/3 wavelet. Use 'diff' to subtract each band from the previous one")
+				.hasArg()
+				.optionalArg(true)
+				.argName("spectral")
+				.longOpt(OPTION_LOSSLESS)
+				.build();
+		
 		jypecOptions = new Options();
 		
 		jypecOptions.addOption(bits);
@@ -183,6 +194,7 @@ public class JypecCLI {
 		jypecOptions.addOption(analyze);
 		jypecOptions.addOption(hardcodeOutliers);
 		jypecOptions.addOption(prequantization);
+		jypecOptions.addOption(lossless);
 	}
 	
 	
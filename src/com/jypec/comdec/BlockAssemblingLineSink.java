@@ -0,0 +1,109 @@
+package com.jypec.comdec;
+
+import java.util.List;
+
+import com.jypec.ebc.data.CodingBlock;
+import com.jypec.wavelet.LineSink;
+
+/**
+ * @author Daniel
+ * {@link LineSink} placed after a line based wavelet to assemble code blocks as the
+ * wavelet output arrives. Coefficients are forwarded to another sink, and
+ * each block of the given list is reported to a {@link BlockListener} as soon as all
+ * of its rows have been received, so that it can be quantized and coded without
+ * waiting for the rest of the band. <br>
+ * This is a standalone building block: {@link Compressor} still transforms whole bands, since 
+ * its quantizer needs the range of all the coefficients of a band before coding any of them
+ */
+public class BlockAssemblingLineSink implements LineSink {
+
+	/**
+	 * Gets notified when a block is complete
+	 */
+	public interface BlockListener {
+		/**
+		 * @param block the block whose coefficients are all final
+		 */
+		public void blockReady(CodingBlock block);
+	}
+
+	private LineSink target;
+	private List<CodingBlock> blocks;
+	private BlockListener listener;
+	/** rows left to receive for each block */
+	private int[] pendingRows;
+	private int pendingBlocks;
+	/** indices of the blocks that cover each row, so that a line only checks its own */
+	private int[][] rowBlocks;
+
+
+	/**
+	 * @param target where to store the coefficients
+	 * @param blocks blocks to assemble (usually a {@link Blocker})
+	 * @param listener who to notify when blocks are complete
+	 */
+	public BlockAssemblingLineSink(LineSink target, List<CodingBlock> blocks, BlockListener listener) {
+		this.target = target;
+		this.blocks = blocks;
+		this.listener = listener;
+		this.pendingRows = new int[blocks.size()];
+		for (int i = 0; i < blocks.size(); i++) {
+			this.pendingRows[i] = blocks.get(i).getHeight();
+		}
+		this.pendingBlocks = blocks.size();
+		
+		/** index the blocks by the rows they cover */
+		int rows = 0;
+		for (CodingBlock block: blocks) {
+			rows = Math.max(rows, block.getRowOffset() + block.getHeight());
+		}
+		int[] counts = new int[rows];
+		for (CodingBlock block: blocks) {
+			for (int j = block.getRowOffset(); j < block.getRowOffset() + block.getHeight(); j++) {
+				counts[j]++;
+			}
+		}
+		this.rowBlocks = new int[rows][];
+		for (int j = 0; j < rows; j++) {
+			this.rowBlocks[j] = new int[counts[j]];
+			counts[j] = 0;
+		}
+		for (int i = 0; i < blocks.size(); i++) {
+			CodingBlock block = blocks.get(i);
+			for (int j = block.getRowOffset(); j < block.getRowOffset() + block.getHeight(); j++) {
+				this.rowBlocks[j][counts[j]++] = i;
+			}
+		}
+	}
+
+	@Override
+	public void receiveLine(int row, int column, float[] line, int offset, int length) {
+		this.target.receiveLine(row, column, line, offset, length);
+		if (row >= this.rowBlocks.length) {
+			return;
+		}
+		//blocks never span more than one subband, so they are fully covered by each line
+		for (int i: this.rowBlocks[row]) {
+			if (this.pendingRows[i] == 0) {
+				continue;
+			}
+			CodingBlock block = this.blocks.get(i);
+			if (block.getColumnOffset() >= column
+					&& block.getColumnOffset() + block.getWidth() <= column + length) {
+				this.pendingRows[i]--;
+				if (this.pendingRows[i] == 0) {
+					this.pendingBlocks--;
+					this.listener.blockReady(block);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of blocks still waiting for coefficients
+	 */
+	public int getPendingBlocks() {
+		return this.pendingBlocks;
+	}
+
+}
@@ -19,4 +19,12 @@ public class ComDecConstants {
 	public static final int GUARD_BITS_BITS = 8;
 	/** Bit depth of the number of bits reduced */
 	public static final int REDUCTION_BITS_BITS = 8;
+	/** Code written instead of the dimensionality reduction algorithm to mark a lossless stream
+	 * (algorithm codes are never negative) */
+	public static final byte LOSSLESS_MARKER = -1;
+	/** Bit depth of the bit depth of each losslessly coded band */
+	public static final int LOSSLESS_DEPTH_BITS = 8;
+	/** Maximum bit depth (sign included) of the wavelet coefficients of losslessly coded images, 
+	 * so that they fit in an integer all the way through the transform and the coder */
+	public static final int LOSSLESS_MAX_DEPTH = Integer.SIZE - 1;
 }
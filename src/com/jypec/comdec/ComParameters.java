@@ -34,6 +34,10 @@ public class ComParameters {
 	public double percentTraining = 1;
 	/** from 0-1, percent of outliers that are to be rawcoded */
 	public double percentOutliers;
+	/** True if the image is coded losslessly, skipping dimensionality reduction and quantization */
+	public boolean lossless;
+	/** True if, when coding losslessly, each band is coded as its difference from the previous one */
+	public boolean bandDifferencing;
 
 	/**
 	 * @param args read the compression parameters from the input arguments 
@@ -52,6 +56,16 @@ public class ComParameters {
 			this.percentOutliers = args.percentOutliers;
 		}
 		this.shaveMap = args.shaves;
+		if (args.requestLossless) {
+			this.lossless = true;
+			if (args.losslessSpectral != null) {
+				if (!args.losslessSpectral.equalsIgnoreCase("diff")) {
+					throw new IllegalArgumentException("Unknown lossless spectral transform: " + args.losslessSpectral);
+				}
+				this.bandDifferencing = true;
+			}
+			return;
+		}
 		this.dr = DimensionalityReduction.loadFrom(args);
 		this.pt = PrequantizationTransformer.loadFrom(args);
 	}
@@ -74,6 +88,12 @@ public class ComParameters {
 			cbstn.writeByte((byte) (int)e.getKey());
 			cbstn.writeByte((byte) (int)e.getValue());
 		}
+		if (this.lossless) {
+			//takes the place of the dimensionality reduction code
+			bw.addChild("lossless").writeByte(ComDecConstants.LOSSLESS_MARKER);
+			bw.addChild("band differencing").writeBoolean(this.bandDifferencing);
+			return;
+		}
 		dr.saveTo(bw.addChild("dim red"));
 		//pt is not saved since it is band-dependent
 	}
@@ -94,7 +114,13 @@ public class ComParameters {
 		for (int i = 0; i < entries; i++) {
 			this.shaveMap.put((int) bw.readByte(), (int) bw.readByte());
 		}
-		this.dr = DimensionalityReduction.loadFrom(bw);
+		byte code = bw.readByte();
+		this.lossless = code == ComDecConstants.LOSSLESS_MARKER;
+		if (this.lossless) {
+			this.bandDifferencing = bw.readBoolean();
+			return;
+		}
+		this.dr = DimensionalityReduction.loadFrom(code, bw);
 		//pt is not loaded since it is band-dependent
 	}
 	
@@ -109,6 +135,8 @@ public class ComParameters {
 
 		return this.wavePasses == other.wavePasses &&
 				this.bits == other.bits &&
+				this.lossless == other.lossless &&
+				this.bandDifferencing == other.bandDifferencing &&
 				this.shaveMap.entrySet().equals(other.shaveMap.entrySet());
 	}
 
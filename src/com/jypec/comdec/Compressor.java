@@ -1,27 +1,30 @@
 package com.jypec.comdec;
 
 import java.io.IOException;
-import java.util.List;
 
 import org.ejml.data.FMatrixRMaj;
 
+import com.jypec.comdec.refinement.Outliers;
 import com.jypec.comdec.refinement.Refinements;
 import com.jypec.ebc.EBCoder;
 import com.jypec.img.HyperspectralBandData;
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageIntegerData;
 import com.jypec.img.ImageDataType;
 import com.jypec.img.ImageHeaderData;
 import com.jypec.quantization.MatrixQuantizer;
-import com.jypec.util.Pair;
 import com.jypec.util.arrays.EJMLExtensions;
 import com.jypec.util.arrays.MatrixTransforms;
 import com.jypec.util.bits.BitOutputStreamTree;
+import com.jypec.util.bits.BitTwiddling;
 import com.jypec.util.debug.Logger;
 import com.jypec.util.debug.Profiler;
 import com.jypec.wavelet.BidimensionalWavelet;
-import com.jypec.wavelet.compositeTransforms.OneDimensionalWaveletExtender;
+import com.jypec.wavelet.IntegerBidimensionalWavelet;
 import com.jypec.wavelet.compositeTransforms.RecursiveBidimensionalWavelet;
-import com.jypec.wavelet.liftingTransforms.LiftingCdf97WaveletTransform;
+import com.jypec.wavelet.compositeTransforms.RecursiveIntegerBidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.LiftingInteger53BidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.ParallelLiftingCdf97BidimensionalWavelet;
 
 /**
  * @author Daniel
@@ -47,6 +50,10 @@ public class Compressor {
 	 * @throws IOException 
 	 */
 	public void compress(HyperspectralImageData srcImg, BitOutputStreamTree output) throws IOException {
+		if (cp.lossless) {
+			this.compressLossless(srcImg, output);
+			return;
+		}
 		Profiler.getProfiler().profileStart();
 		/** Get some values we are gonna need */
 		int numLines = srcImg.getNumberOfLines();
@@ -61,7 +68,7 @@ public class Compressor {
 		srcImgDMRM = null; //not needed anymore. allow GC to discard it
 		
 		/** create the wavelet transform, and coder we'll be using, which won't change over the bands */
-		BidimensionalWavelet bdw = new RecursiveBidimensionalWavelet(new OneDimensionalWaveletExtender(new LiftingCdf97WaveletTransform()), cp.wavePasses);
+		BidimensionalWavelet bdw = new RecursiveBidimensionalWavelet(new ParallelLiftingCdf97BidimensionalWavelet(), cp.wavePasses);
 		EBCoder coder = new EBCoder();
 		
 		/** Save metadata before compressing the image */
@@ -78,29 +85,32 @@ public class Compressor {
 			FMatrixRMaj waveForm = MatrixTransforms.extractBand(reduced, i, numLines, numSamples);
 			
 			/** Shave the resulting limits and raw encode their values */
+			float[] minMax;
 			if (cp.percentOutliers > 0) {
 				BitOutputStreamTree outlierTree = banditree.addChild("outliers");
 				Logger.getLogger().log("\tSaving outliers...");
-				List<Pair<Float, Pair<Integer, Integer>>> outliers = Refinements.findOutliers(waveForm, cp.percentOutliers);
+				Outliers outliers = Refinements.findOutliers(waveForm, cp.percentOutliers);
 				outlierTree.writeInt(outliers.size());
-				for (Pair<Float, Pair<Integer, Integer>> p: outliers) {
-					outlierTree.writeFloat(p.first());
-					outlierTree.writeVLPInt(p.second().first());  //x coordinate
-					outlierTree.writeVLPInt(p.second().second()); //y coordinate
+				for (int j = 0; j < outliers.size(); j++) {
+					outlierTree.writeFloat(outliers.getValue(j));
+					outlierTree.writeVLPInt(outliers.getRow(j));  //x coordinate
+					outlierTree.writeVLPInt(outliers.getColumn(j)); //y coordinate
 				}
-				Refinements.clamp(waveForm, Refinements.getNonOutlierRange());
+				//clamp while getting the limits for the normalization
+				float[] range = outliers.getNonOutlierRange();
+				minMax = EJMLExtensions.clampAndMinMax(waveForm, range[0], range[1]);
+			} else {
+				minMax = EJMLExtensions.minMax(waveForm);
 			}
 			
 			/** Apply the wavelet transform */
 			Logger.getLogger().log("\tApplying wavelet... ");
 
 			
-			float[] minMax = EJMLExtensions.minMax(waveForm);
 			BitOutputStreamTree minmaxTree = banditree.addChild("minmax");
 			minmaxTree.writeFloat(minMax[0]);
 			minmaxTree.writeFloat(minMax[1]);
 			MatrixTransforms.normalize(waveForm, minMax[0], minMax[1], -0.5f, 0.5f);
-			minMax = EJMLExtensions.minMax(waveForm);
 			bdw.forwardTransform(waveForm, numLines, numSamples);
 			
 
@@ -116,15 +126,15 @@ public class Compressor {
 			/** custom quantizer for this band */
 			cp.pt.train(waveForm);
 			cp.pt.saveTo(banditree.addChild("PreQuantizationTransform"));
-			cp.pt.forwardTransform(waveForm);
 			
 			//use one guard bit just in case for the wavelet transform
 			MatrixQuantizer mq = new MatrixQuantizer(targetType.getBitDepth() - 1, 0, 1, -0.5f, 0.5f, 0.375f);
 			
 			
-			/** quantize the transform and save the quantization over the current band */
-			HyperspectralBandData hb = HyperspectralBandData.generateRogueBand(targetType, numLines, numSamples);
-			mq.quantize(waveForm, hb);
+			/** prequantize and quantize the transform in one go, saving the quantization over the current band */
+			HyperspectralImageIntegerData quantized = new HyperspectralImageIntegerData(targetType, 1, numLines, numSamples);
+			mq.quantize(waveForm, cp.pt, quantized.getBandArray(0), quantized.getBandOffset(0));
+			HyperspectralBandData hb = quantized.getBand(0);
 			
 			/** Now divide into blocks and encode it*/
 			Blocker blocker = new Blocker(hb, cp.wavePasses, Blocker.DEFAULT_EXPECTED_DIM, Blocker.DEFAULT_MAX_BLOCK_DIM);
@@ -136,4 +146,82 @@ public class Compressor {
 		Profiler.getProfiler().profileEnd();
 	}
 	
+	
+	/**
+	 * Compress the image without loss. Samples are kept as integers all the way: 
+	 * (optionally) each band is replaced by its difference with the previous one, 
+	 * transformed with the reversible 5/3 wavelet, and coded as is with the {@link EBCoder}
+	 * @param srcImg
+	 * @param output
+	 * @throws IOException
+	 */
+	private void compressLossless(HyperspectralImageData srcImg, BitOutputStreamTree output) throws IOException {
+		Profiler.getProfiler().profileStart();
+		int numBands = srcImg.getNumberOfBands();
+		int numLines = srcImg.getNumberOfLines();
+		int numSamples = srcImg.getNumberOfSamples();
+		/** worst case: band differences add one bit, and each pass of the 5/3 wavelet 
+		 * at most doubles the magnitudes along each dimension. Plus the sign bit */
+		int sourceDepth = srcImg.getDataType().getBitDepth();
+		int extraDepth = (cp.bandDifferencing ? 1 : 0) + 2 * cp.wavePasses + 1;
+		if (sourceDepth + extraDepth > ComDecConstants.LOSSLESS_MAX_DEPTH) {
+			throw new UnsupportedOperationException("Lossless compression with " + cp.wavePasses + " wavelet passes" 
+					+ (cp.bandDifferencing ? " and band differencing" : "") + " is only available up to " 
+					+ (ComDecConstants.LOSSLESS_MAX_DEPTH - extraDepth) + " bits per sample (image has " + sourceDepth + ")");
+		}
+		
+		IntegerBidimensionalWavelet bdw = new RecursiveIntegerBidimensionalWavelet(new LiftingInteger53BidimensionalWavelet(), cp.wavePasses);
+		EBCoder coder = new EBCoder();
+		
+		Logger.getLogger().log("Saving compression parameters... ");
+		this.cp.saveTo(output.addChild("compression parameters"));
+		
+		int[] band = new int[numLines * numSamples];
+		int[] previous = cp.bandDifferencing ? new int[band.length] : null;
+		for (int i = 0; i < numBands; i++) {
+			BitOutputStreamTree banditree = output.addChild("code for band " + i);
+			Logger.getLogger().log("Compressing band [" + (i+1) + "/" + numBands + "] losslessly: ");
+			
+			/** get the integer samples, decorrelating them from the previous band if requested */
+			for (int j = 0; j < numLines; j++) {
+				for (int k = 0; k < numSamples; k++) {
+					int index = j * numSamples + k;
+					band[index] = srcImg.getValueAt(i, j, k);
+					if (cp.bandDifferencing) {
+						int value = band[index];
+						band[index] -= previous[index];
+						previous[index] = value;
+					}
+				}
+			}
+			
+			bdw.forwardTransform(band, numSamples, numLines, numSamples);
+			
+			/** find the depth needed to code the coefficients exactly */
+			int maxMagnitude = 0;
+			for (int value: band) {
+				maxMagnitude = Math.max(maxMagnitude, Math.abs(value));
+			}
+			int depth = Math.max(2, BitTwiddling.bitsOf(maxMagnitude) + 1);
+			if (depth > ComDecConstants.LOSSLESS_MAX_DEPTH) {
+				throw new IllegalStateException("Coefficients of band " + i + " need " + depth + " bits, over the maximum of " 
+						+ ComDecConstants.LOSSLESS_MAX_DEPTH);
+			}
+			banditree.addChild("depth").writeNBitNumber(depth, ComDecConstants.LOSSLESS_DEPTH_BITS);
+			ImageDataType targetType = new ImageDataType(depth, true);
+			
+			HyperspectralBandData hb = HyperspectralBandData.generateRogueBand(targetType, numLines, numSamples);
+			for (int j = 0; j < numLines; j++) {
+				for (int k = 0; k < numSamples; k++) {
+					hb.setDataAt(targetType.integerToData(band[j * numSamples + k]), j, k);
+				}
+			}
+			
+			Blocker blocker = new Blocker(hb, cp.wavePasses, Blocker.DEFAULT_EXPECTED_DIM, Blocker.DEFAULT_MAX_BLOCK_DIM);
+			Logger.getLogger().log("\tEncoding in " + blocker.size() + " blocks of " + depth + " bits");
+			blocker.code(targetType, coder, banditree.addChild("Blocks"));
+		}
+		Profiler.getProfiler().profileEnd();
+	}
+	
 }
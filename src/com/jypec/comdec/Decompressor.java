@@ -12,6 +12,7 @@ import com.jypec.img.HeaderConstants;
 import com.jypec.img.HyperspectralBandData;
 import com.jypec.img.HyperspectralImageData;
 import com.jypec.img.HyperspectralImageFloatData;
+import com.jypec.img.HyperspectralImageIntegerData;
 import com.jypec.img.ImageDataType;
 import com.jypec.img.ImageHeaderData;
 import com.jypec.quantization.MatrixQuantizer;
@@ -22,9 +23,11 @@ import com.jypec.util.bits.BitInputStream;
 import com.jypec.util.debug.Logger;
 import com.jypec.util.debug.Profiler;
 import com.jypec.wavelet.BidimensionalWavelet;
-import com.jypec.wavelet.compositeTransforms.OneDimensionalWaveletExtender;
+import com.jypec.wavelet.IntegerBidimensionalWavelet;
 import com.jypec.wavelet.compositeTransforms.RecursiveBidimensionalWavelet;
-import com.jypec.wavelet.liftingTransforms.LiftingCdf97WaveletTransform;
+import com.jypec.wavelet.compositeTransforms.RecursiveIntegerBidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.LiftingInteger53BidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.ParallelLiftingCdf97BidimensionalWavelet;
 
 /**
  * @author Daniel
@@ -40,6 +43,28 @@ public class Decompressor {
 	 * @throws IOException 
 	 */
 	public HyperspectralImageData decompress(ImageHeaderData ihd, BitInputStream input) throws IOException {
+		final HyperspectralImageData[] res = new HyperspectralImageData[1];
+		//a single panel with the whole image
+		this.decompress(ihd, input, Integer.MAX_VALUE, new PanelSink() {
+			@Override
+			public void receivePanel(HyperspectralImageData panel, int firstLine, int totalLines) {
+				res[0] = panel;
+			}
+		});
+		return res[0];
+	}
+	
+	/**
+	 * Decompress the given stream, only boosting the reduced image back to its original 
+	 * dimension a panel at a time, so that the whole image need not be in memory
+	 * at once (lossless images are still output as a single panel)
+	 * @param ihd the image header metadata
+	 * @param input
+	 * @param panelLines number of lines in each panel (the last one might have less)
+	 * @param sink where to send the panels to, in order
+	 * @throws IOException
+	 */
+	public void decompress(ImageHeaderData ihd, BitInputStream input, int panelLines, PanelSink sink) throws IOException {
 		Profiler.getProfiler().profileStart();
 		/** Need to know the image dimensions and some other values */
 		Logger.getLogger().log("Extracting image metadata...");
@@ -52,12 +77,18 @@ public class Decompressor {
 		Logger.getLogger().log("Loading decompression parameters...");
 		ComParameters cp = new ComParameters();
 		cp.loadFrom(input);
+		if (cp.lossless) {
+			HyperspectralImageData srcImg = this.decompressLossless(cp, idt, bands, lines, samples, input);
+			sink.receivePanel(srcImg, 0, lines);
+			Profiler.getProfiler().profileEnd();
+			return;
+		}
 		
 		/** Uncompress the data stream */
 		ArrayList<FMatrixRMaj> reduced = new ArrayList<FMatrixRMaj>(cp.dr.getNumComponents());
 
 		EBDecoder decoder = new EBDecoder();
-		BidimensionalWavelet bdw = new RecursiveBidimensionalWavelet(new OneDimensionalWaveletExtender(new LiftingCdf97WaveletTransform()), cp.wavePasses);
+		BidimensionalWavelet bdw = new RecursiveBidimensionalWavelet(new ParallelLiftingCdf97BidimensionalWavelet(), cp.wavePasses);
 		
 		/** Proceed to uncompress the reduced image band by band */
 		for (int i = 0; i < cp.dr.getNumComponents(); i++) {
@@ -92,7 +123,8 @@ public class Decompressor {
 				targetType.mutatePrecision(-shaving);
 			}
 			
-			HyperspectralBandData hb = HyperspectralBandData.generateRogueBand(targetType, lines, samples);
+			HyperspectralImageIntegerData quantized = new HyperspectralImageIntegerData(targetType, 1, lines, samples);
+			HyperspectralBandData hb = quantized.getBand(0);
 			/** Now divide into blocks and decode it*/
 			Blocker blocker = new Blocker(hb, cp.wavePasses, Blocker.DEFAULT_EXPECTED_DIM, Blocker.DEFAULT_MAX_BLOCK_DIM);
 			Logger.getLogger().log("\tDecoding " + blocker.size() + "blocks");
@@ -103,11 +135,10 @@ public class Decompressor {
 			Logger.getLogger().log("\tDequantizing...");
 			FMatrixRMaj waveForm = new FMatrixRMaj(lines, samples);
 			MatrixQuantizer mq = new MatrixQuantizer(targetType.getBitDepth() - 1, 0, 1, -0.5f, 0.5f, 0.375f); //one guard bit just in case
-			mq.dequantize(hb, waveForm);
+			mq.dequantize(quantized.getBandArray(0), quantized.getBandOffset(0), pt, waveForm);
 			
 			/** Apply the reverse wavelet transform */
 			Logger.getLogger().log("Reversing wavelet...");
-			pt.reverseTransform(waveForm);
 			bdw.reverseTransform(waveForm, lines, samples);
 			MatrixTransforms.normalize(waveForm, -0.5f, 0.5f, prenormalizationMin, prenormalizationMax);
 			
@@ -124,14 +155,70 @@ public class Decompressor {
 		/** Undo PCA dimensionality reduction */
 		ImageDataType srcDT = new ImageDataType(idt.getBitDepth(), idt.isSigned());
 		Logger.getLogger().log("Projecting back into original dimension...");
-		FMatrixRMaj result = cp.dr.boost(MatrixTransforms.getMatrix(reduced, cp.dr.getNumComponents(), lines, samples));
-		
-		HyperspectralImageData srcImg = new HyperspectralImageFloatData(result, srcDT, bands, lines, samples);
-		
-		
+		int components = cp.dr.getNumComponents();
+		for (int firstLine = 0; firstLine < lines; firstLine += panelLines) {
+			int pLines = Math.min(panelLines, lines - firstLine);
+			int columns = pLines * samples;
+			FMatrixRMaj reducedPanel = new FMatrixRMaj(components, columns);
+			for (int i = 0; i < components; i++) {
+				System.arraycopy(reduced.get(i).getData(), firstLine * samples, reducedPanel.getData(), i * columns, columns);
+			}
+			FMatrixRMaj result = cp.dr.boost(reducedPanel, firstLine * samples);
+			sink.receivePanel(new HyperspectralImageFloatData(result, srcDT, bands, pLines, samples), firstLine, lines);
+		}
 		
 		//image is decompressed now
 		Profiler.getProfiler().profileEnd();
+	}
+	
+	
+	/**
+	 * Reverts {@link Compressor}'s lossless compression
+	 * @param cp the already loaded compression parameters
+	 * @param idt type of the original image
+	 * @param bands
+	 * @param lines
+	 * @param samples
+	 * @param input where to read the bands from
+	 * @return the original image
+	 * @throws IOException
+	 */
+	private HyperspectralImageData decompressLossless(ComParameters cp, ImageDataType idt, int bands, int lines, int samples, BitInputStream input) throws IOException {
+		ImageDataType srcDT = new ImageDataType(idt.getBitDepth(), idt.isSigned());
+		HyperspectralImageData srcImg = new HyperspectralImageIntegerData(srcDT, bands, lines, samples);
+		
+		EBDecoder decoder = new EBDecoder();
+		IntegerBidimensionalWavelet bdw = new RecursiveIntegerBidimensionalWavelet(new LiftingInteger53BidimensionalWavelet(), cp.wavePasses);
+		
+		int[] band = new int[lines * samples];
+		int[] previous = cp.bandDifferencing ? new int[band.length] : null;
+		for (int i = 0; i < bands; i++) {
+			Logger.getLogger().log("Extracting losslessly compressed band [" + (i+1) + "/" + bands + "]");
+			int depth = input.readNBitNumber(ComDecConstants.LOSSLESS_DEPTH_BITS);
+			ImageDataType targetType = new ImageDataType(depth, true);
+			
+			HyperspectralBandData hb = HyperspectralBandData.generateRogueBand(targetType, lines, samples);
+			Blocker blocker = new Blocker(hb, cp.wavePasses, Blocker.DEFAULT_EXPECTED_DIM, Blocker.DEFAULT_MAX_BLOCK_DIM);
+			blocker.decode(input, targetType, decoder);
+			
+			for (int j = 0; j < lines; j++) {
+				for (int k = 0; k < samples; k++) {
+					band[j * samples + k] = hb.getValueAt(j, k);
+				}
+			}
+			bdw.reverseTransform(band, samples, lines, samples);
+			
+			for (int j = 0; j < lines; j++) {
+				for (int k = 0; k < samples; k++) {
+					int index = j * samples + k;
+					if (cp.bandDifferencing) {
+						band[index] += previous[index];
+						previous[index] = band[index];
+					}
+					srcImg.setDataAt(srcDT.integerToData(band[index]), i, j, k);
+				}
+			}
+		}
 		return srcImg;
 	}
 }
@@ -0,0 +1,21 @@
+package com.jypec.comdec;
+
+import com.jypec.img.HyperspectralImageData;
+
+/**
+ * @author Daniel
+ * Receives a decompressed image a panel (group of consecutive lines,
+ * with all bands and samples) at a time
+ */
+public interface PanelSink {
+
+	/**
+	 * Receive a panel of the image
+	 * @param panel the lines of the image. It is not kept by the caller, 
+	 * so it can be freed after returning
+	 * @param firstLine index of the first line of the panel within the whole image
+	 * @param totalLines number of lines of the whole image
+	 */
+	public void receivePanel(HyperspectralImageData panel, int firstLine, int totalLines);
+
+}
@@ -0,0 +1,69 @@
+package com.jypec.comdec.refinement;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * Outliers found in a band by {@link Refinements#findOutliers(FMatrixRMaj, double)}:
+ * their values and positions, in the order they were picked, and the range 
+ * left by the rest of the samples
+ * @author Daniel
+ */
+public class Outliers {
+
+	private float[] values;
+	private int[] rows, columns;
+	private float[] nonOutlierRange;
+
+	
+	/**
+	 * @param values values of the outliers
+	 * @param rows row of each outlier
+	 * @param columns column of each outlier
+	 * @param nonOutlierRange the range [min, max] of the samples that are not outliers
+	 */
+	public Outliers(float[] values, int[] rows, int[] columns, float[] nonOutlierRange) {
+		this.values = values;
+		this.rows = rows;
+		this.columns = columns;
+		this.nonOutlierRange = nonOutlierRange;
+	}
+
+	/**
+	 * @return the number of outliers
+	 */
+	public int size() {
+		return this.values.length;
+	}
+
+	/**
+	 * @param i
+	 * @return the value of the i-th outlier
+	 */
+	public float getValue(int i) {
+		return this.values[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the row where the i-th outlier is
+	 */
+	public int getRow(int i) {
+		return this.rows[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the column where the i-th outlier is
+	 */
+	public int getColumn(int i) {
+		return this.columns[i];
+	}
+
+	/**
+	 * @return the range [min, max] of the samples that are not outliers
+	 */
+	public float[] getNonOutlierRange() {
+		return this.nonOutlierRange;
+	}
+
+}
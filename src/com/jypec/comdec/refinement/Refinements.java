@@ -1,8 +1,5 @@
 package com.jypec.comdec.refinement;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import org.ejml.data.FMatrixRMaj;
@@ -16,73 +13,148 @@ import com.jypec.util.Pair;
  */
 public class Refinements {
 	
-	private static float[] nonOutlierRange = new float[2];
-
 	/**
+	 * Finds the top <code>percentOutliers</code> of the given matrix, picking each time
+	 * the lowest or highest remaining sample, whichever is further from its neighbour. <br>
+	 * Only the few samples that can be picked are looked for (with a bounded heap), instead of
+	 * sorting the whole band. Samples with the same value are ordered by position, so the
+	 * result is the same as picking from the fully sorted band.
 	 * @param waveForm
 	 * @param percentOutliers
-	 * @return a list of top <code>percentOutliers</code> in the given matrix.
-	 * These are the highest or lowest values
+	 * @return the outliers found, and the range of the remaining samples
 	 */
-	public static List<Pair<Float, Pair<Integer, Integer>>> findOutliers(FMatrixRMaj waveForm, double percentOutliers) {
-		List<Pair<Float, Pair<Integer, Integer>>> list = Refinements.toSortedByValuePositionalArray(waveForm);
-		List<Pair<Float, Pair<Integer, Integer>>> res = new ArrayList<Pair<Float, Pair<Integer, Integer>>>();
-		int lowIndex = 0, highIndex = list.size() - 1;
-		double count = 0, totalCount = list.size();
-		while (count / totalCount < percentOutliers) {
-			float lowVal = list.get(lowIndex).first();
-			float lowNext = list.get(lowIndex + 1).first();
-			float highVal = list.get(highIndex).first();
-			float highPrev = list.get(highIndex - 1).first();
+	public static Outliers findOutliers(FMatrixRMaj waveForm, double percentOutliers) {
+		int n = waveForm.getNumElements();
+		float[] data = waveForm.getData();
+		//number of outliers
+		int k = 0;
+		while ((double) k / (double) n < percentOutliers) {
+			k++;
+		}
+		//sorted from the extremes inwards. One more than outliers are needed to look at neighbours
+		int[] low, high;
+		if (2 * (k + 1) >= n) {
+			low = selectExtremes(data, n, n, false);
+			high = new int[n];
+			for (int i = 0; i < n; i++) {
+				high[i] = low[n - 1 - i];
+			}
+		} else {
+			low = selectExtremes(data, n, k + 1, false);
+			high = selectExtremes(data, n, k + 1, true);
+		}
+		
+		float[] values = new float[k];
+		int[] rows = new int[k], columns = new int[k];
+		float[] nonOutlierRange = new float[2];
+		int lowIndex = 0, highIndex = 0;
+		for (int count = 0; count < k; count++) {
+			float lowVal = data[low[lowIndex]];
+			float lowNext = data[low[lowIndex + 1]];
+			float highVal = data[high[highIndex]];
+			float highPrev = data[high[highIndex + 1]];
 			
 			float lowDiff = lowNext - lowVal;
 			float highDiff = highVal - highPrev;
 			
+			int index;
 			if (lowDiff > highDiff) {
-				res.add(list.get(lowIndex));
+				index = low[lowIndex];
 				lowIndex++;
 				nonOutlierRange[0] = lowNext;
 				nonOutlierRange[1] = highVal;
 			} else {
-				res.add(list.get(highIndex));
-				highIndex--;
+				index = high[highIndex];
+				highIndex++;
 				nonOutlierRange[0] = lowVal;
 				nonOutlierRange[1] = highPrev;
 			}
-			
-			count++;
+			values[count] = data[index];
+			rows[count] = index / waveForm.getNumCols();
+			columns[count] = index % waveForm.getNumCols();
 		}
 		
+		return new Outliers(values, rows, columns, nonOutlierRange);
+	}
+	
+	
+	/**
+	 * @param data
+	 * @param n number of samples in data
+	 * @param m number of samples to select
+	 * @param highest if true, select the highest samples, otherwise the lowest
+	 * @return the positions of the m lowest (highest) samples, from lowest (highest) inwards. 
+	 * Samples are compared with {@link Float#compare(float, float)} and then by position
+	 */
+	private static int[] selectExtremes(float[] data, int n, int m, boolean highest) {
+		//heap with the least extreme of the selected samples on top
+		int[] heap = new int[m];
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			if (size < m) {
+				heap[size] = i;
+				siftUp(data, heap, size, highest);
+				size++;
+			} else if (isMoreExtreme(data, i, heap[0], highest)) {
+				heap[0] = i;
+				siftDown(data, heap, 0, size, highest);
+			}
+		}
+		//pop the least extreme each time, filling from the end
+		int[] res = new int[size];
+		while (size > 0) {
+			size--;
+			res[size] = heap[0];
+			heap[0] = heap[size];
+			siftDown(data, heap, 0, size, highest);
+		}
 		return res;
 	}
 	
 	/**
-	 * Call after {@link #findOutliers(FMatrixRmaj, double)}. 
-	 * @return the range [min, max] of the non-outlier part of the 
-	 * waveform sent to {@link #findOutliers(FMatrixRmaj, double)}
+	 * @return true if sample a is more extreme (lower or higher depending on <code>highest</code>)
+	 * than sample b
 	 */
-	public static float[] getNonOutlierRange() {
-		return Refinements.nonOutlierRange;
+	private static boolean isMoreExtreme(float[] data, int a, int b, boolean highest) {
+		int cmp = Float.compare(data[a], data[b]);
+		if (cmp == 0) {
+			cmp = Integer.compare(a, b);
+		}
+		return highest ? cmp > 0 : cmp < 0;
 	}
-
 	
-	private static List<Pair<Float, Pair<Integer, Integer>>> toSortedByValuePositionalArray(FMatrixRMaj waveForm) {
-		List<Pair<Float, Pair<Integer, Integer>>> list = new ArrayList<Pair<Float, Pair<Integer, Integer>>>();
-		
-		for (int i = 0; i < waveForm.getNumRows(); i++) {
-			for (int j = 0; j < waveForm.getNumCols(); j++) {
-				list.add(new Pair<Float, Pair<Integer, Integer>>(waveForm.get(i, j), new Pair<Integer, Integer>(i, j)));
+	private static void siftUp(float[] data, int[] heap, int pos, boolean highest) {
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isMoreExtreme(data, heap[parent], heap[pos], highest)) {
+				return;
 			}
+			swap(heap, parent, pos);
+			pos = parent;
 		}
-		
-		Collections.sort(list, new Comparator<Pair<Float, Pair<Integer, Integer>>>() {
-			@Override
-			public int compare(Pair<Float, Pair<Integer, Integer>> o1, Pair<Float, Pair<Integer, Integer>> o2) {
-				return Float.compare(o1.first(), o2.first());
+	}
+	
+	private static void siftDown(float[] data, int[] heap, int pos, int size, boolean highest) {
+		while (true) {
+			int left = 2 * pos + 1, right = left + 1, least = pos;
+			if (left < size && isMoreExtreme(data, heap[least], heap[left], highest)) {
+				least = left;
 			}
-		});
-		
-		return list;
+			if (right < size && isMoreExtreme(data, heap[least], heap[right], highest)) {
+				least = right;
+			}
+			if (least == pos) {
+				return;
+			}
+			swap(heap, least, pos);
+			pos = least;
+		}
+	}
+	
+	private static void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
 	}
 
 	/**
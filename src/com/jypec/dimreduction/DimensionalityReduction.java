@@ -130,6 +130,18 @@ public abstract class DimensionalityReduction {
 	 */
 	public abstract FMatrixRMaj boost(FMatrixRMaj source);
 	
+	/**
+	 * Boosts a panel of consecutive columns (samples) of a reduced matrix, so that big
+	 * images can be boosted a piece at a time. Reductions that treat each sample the same
+	 * need not override this, since it just calls {@link #boost(FMatrixRMaj)}
+	 * @param source the panel (in the reduced dimension space)
+	 * @param firstColumn index of the first column of the panel within the whole reduced matrix
+	 * @return the panel in the original space
+	 */
+	public FMatrixRMaj boost(FMatrixRMaj source, int firstColumn) {
+		return this.boost(source);
+	}
+	
 	
 	/**
 	 * Saves the necessary information into the given bistream so as to later
@@ -160,8 +172,18 @@ public abstract class DimensionalityReduction {
 	 * @throws IOException 
 	 */
 	public static final DimensionalityReduction loadFrom(BitInputStream bw) throws IOException {
+		return loadFrom(bw.readByte(), bw);
+	}
+	
+	/**
+	 * Same as {@link #loadFrom(BitInputStream)}, when the algorithm code has already been read
+	 * @param type the algorithm code
+	 * @param bw where to read the rest of the algorithm from
+	 * @return the proper dimensionality reduction algorithm
+	 * @throws IOException
+	 */
+	public static final DimensionalityReduction loadFrom(byte type, BitInputStream bw) throws IOException {
 		DimensionalityReduction dr;
-		byte type = bw.readByte();
 		
 		if (type < 0 || type > DimensionalityReductionAlgorithm.values().length) {
 			throw new IllegalArgumentException("Cannot load that kind of Dimensionality Reduction algorithm: " + type);
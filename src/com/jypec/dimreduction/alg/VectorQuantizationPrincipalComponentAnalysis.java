@@ -177,12 +177,17 @@ public class VectorQuantizationPrincipalComponentAnalysis extends Dimensionality
 
 	@Override
 	public FMatrixRMaj boost(FMatrixRMaj source) {
+		return this.boost(source, 0);
+	}
+	
+	@Override
+	public FMatrixRMaj boost(FMatrixRMaj source, int firstColumn) {
 		/** Initialize stuff */
 		FMatrixRMaj res = new FMatrixRMaj(this.dimOrig, source.getNumCols());
 
 		/** Boost each sample with its cluster's pca */
 		for (int i = 0; i < source.getNumCols(); i++) {
-			PrincipalComponentAnalysis pca = this.pcas.get(this.classification[i]);
+			PrincipalComponentAnalysis pca = this.pcas.get(this.classification[firstColumn + i]);
 			FMatrixRMaj col = CommonOps_FDRM.extractColumn(source, i, null);
 			col = pca.boost(col);
 			CommonOps_FDRM.insert(col, res, 0, i);
@@ -15,22 +15,33 @@ import com.jypec.util.debug.Profiler;
  * MQCoder that given an input block codes it into the
  * desired output bitstream. Every time {@link #code(CodingBlock, BitStream)} is called,
  * statistics are reset, so you can reuse the object for multiple codings without
- * one interfering with the others 
+ * one interfering with the others. <br>
+ * The coder owns its working memory (significance table, coding plane and 
+ * probability tables), which is reused from block to block and only grows when a 
+ * bigger block than any seen before is coded. Reusing the same coder is thus
+ * allocation-free after the first block. This also means that it is not thread safe: 
+ * use one coder per thread when coding in parallel
  * @author Daniel
  *
  */
 public class EBCoder {
 	private SignificanceTable sigTable;
 	private MQArithmeticCoder coder;
+	private CodingPlane plane;
+	private int[] workspace;
 
 	
-	private void initialize(int width, int height) {
+	private void initialize(CodingBlock block) {
 		if (coder == null) {
 			coder = new MQArithmeticCoder();
 		} else {
 			coder.intialize();
 		}
-		sigTable = new SignificanceTable(width, height);
+		if (sigTable == null) {
+			sigTable = new SignificanceTable(block.getWidth(), block.getHeight());
+		} else {
+			sigTable.reset(block.getWidth(), block.getHeight());
+		}
 	}
 	
 	
@@ -42,25 +53,31 @@ public class EBCoder {
 	 * @throws IOException 
 	 */ 
 	public void code(CodingBlock block, BitOutputStreamTree output) throws IOException {
-		//int numberOfBitPlanes = block.getMagnitudeBitPlaneNumber();
-		int numberOfBitPlanes = block.getMaxMagnitudeBitPlaneNumber(); //use only as many as needed
-		output.writeByte((byte) numberOfBitPlanes);
-		
-		this.initialize(block.getWidth(), block.getHeight());
-		
-		//all planes coded with a three pass scheme except the first one
-		for (int i = numberOfBitPlanes - 1; i >= 0; i--) {
-			CodingPlane plane = block.getBitPlane(i);
-			if (i < numberOfBitPlanes - 1) { //Only cleanup for the first one
-				this.codeSignificance(plane, output);
-				this.codeRefinement(plane, output);
+		//work over a dense copy of the block
+		this.workspace = block.useLocalCopy(this.workspace);
+		try {
+			//int numberOfBitPlanes = block.getMagnitudeBitPlaneNumber();
+			int numberOfBitPlanes = block.getMaxMagnitudeBitPlaneNumber(); //use only as many as needed
+			output.writeByte((byte) numberOfBitPlanes);
+			
+			this.initialize(block);
+			
+			//all planes coded with a three pass scheme except the first one
+			for (int i = numberOfBitPlanes - 1; i >= 0; i--) {
+				this.plane = block.getBitPlane(i, this.plane);
+				if (i < numberOfBitPlanes - 1) { //Only cleanup for the first one
+					this.codeSignificance(plane, output);
+					this.codeRefinement(plane, output);
+				}
+				this.codeCleanup(plane, output);
 			}
-			this.codeCleanup(plane, output);
+			//end coding by dumping the remaining bits in the buffer
+			//and marking the end of the stream
+			this.coder.dumpRemainingBits(output);
+			this.coder.markEndOfStream(output);
+		} finally {
+			block.releaseLocalCopy(false);
 		}
-		//end coding by dumping the remaining bits in the buffer
-		//and marking the end of the stream
-		this.coder.dumpRemainingBits(output);
-		this.coder.markEndOfStream(output);
 	}
 	
 	/**
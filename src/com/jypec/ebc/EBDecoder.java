@@ -14,7 +14,8 @@ import com.jypec.util.bits.BitStreamConstants;
 import com.jypec.util.debug.Profiler;
 
 /**
- * MQDecoder dual to the MQcoder
+ * MQDecoder dual to the MQcoder. Like the coder, it reuses its working memory
+ * from block to block, so it is not thread safe
  * @see EBCoder
  * @author Daniel
  *
@@ -24,6 +25,8 @@ public class EBDecoder {
 	
 	private SignificanceTable sigTable;
 	private MQArithmeticDecoder decoder;
+	private CodingPlane plane;
+	private int[] workspace;
 
 	
 	/**
@@ -39,7 +42,11 @@ public class EBDecoder {
 		} else {
 			decoder.initialize(input);
 		}
-		sigTable = new SignificanceTable(output.getWidth(), output.getHeight());
+		if (sigTable == null) {
+			sigTable = new SignificanceTable(output.getWidth(), output.getHeight());
+		} else {
+			sigTable.reset(output.getWidth(), output.getHeight());
+		}
 	}
 	
 	/**
@@ -57,16 +64,20 @@ public class EBDecoder {
 		
 		this.initialize(input, output);
 		
-		
-		
-		//decode over all planes
-		for (int i = numberOfBitPlanes - 1; i >= 0; i--) {
-			CodingPlane plane = output.getBitPlane(i);
-			if (i < numberOfBitPlanes - 1) { //first plane has only cleanup
-				this.decodeSignificance(input, plane);
-				this.decodeRefinement(input, plane);
+		//work over a dense copy of the block, stored back when done
+		this.workspace = output.useLocalCopy(this.workspace);
+		try {
+			//decode over all planes
+			for (int i = numberOfBitPlanes - 1; i >= 0; i--) {
+				this.plane = output.getBitPlane(i, this.plane);
+				if (i < numberOfBitPlanes - 1) { //first plane has only cleanup
+					this.decodeSignificance(input, plane);
+					this.decodeRefinement(input, plane);
+				}
+				this.decodeCleanup(input, plane);
 			}
-			this.decodeCleanup(input, plane);
+		} finally {
+			output.releaseLocalCopy(true);
 		}
 		
 		this.removeMarkEndOfStream(input);
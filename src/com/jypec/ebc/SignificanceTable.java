@@ -1,5 +1,7 @@
 package com.jypec.ebc;
 
+import java.util.Arrays;
+
 import com.jypec.ebc.mq.ContextLabel;
 import com.jypec.util.Pair;
 import com.jypec.util.bits.Bit;
@@ -51,12 +53,17 @@ public class SignificanceTable {
 		}
 	}
 	
-	//inner storage
-	private SignificanceValue[][] table;
-	private boolean[][] firstRefinement;
-	private byte[][] sumHPrecalc, sumVPrecalc, sumDPrecalc;
+	//inner storage. Flattened (row-major) so that the same arrays can be reused
+	//for blocks of any shape as long as they fit within the allocated capacity
+	private SignificanceValue[] table;
+	private boolean[] firstRefinement;
+	private byte[] sumHPrecalc, sumVPrecalc, sumDPrecalc;
 	private int height, width;
 	
+	//sign contexts only depend on the sign of the neighbor contributions,
+	//so all possible results are built only once [horizontal+1][vertical+1]
+	private static final Pair<ContextLabel, Bit>[][] SIGN_CONTEXTS = buildSignContexts();
+	
 	/**
 	 * Build a table of the specified dimensions. All values are defaulted to insignificant
 	 * with the first refinement marked as "true"
@@ -64,20 +71,41 @@ public class SignificanceTable {
 	 * @param height
 	 */
 	public SignificanceTable(int width, int height) {
+		this.reset(width, height);
+	}
+	
+	/**
+	 * Reset this table to the given dimensions, as if it had just been constructed. 
+	 * Inner storage is only reallocated if it is not big enough to hold
+	 * the new table, so reusing the same table for blocks of bounded size does not
+	 * allocate memory
+	 * @param width
+	 * @param height
+	 */
+	public void reset(int width, int height) {
 		this.width = width;
 		this.height = height;
-		this.table = new SignificanceValue[height][width];
-		this.firstRefinement = new boolean[height][width];
-		this.sumVPrecalc = new byte[height][width];
-		this.sumHPrecalc = new byte[height][width];
-		this.sumDPrecalc = new byte[height][width];
-		//initialize just in case
-		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
-				this.table[i][j] = SignificanceValue.INSIGNIFICANT;
-				this.firstRefinement[i][j] = true;
-			}
+		int size = width * height;
+		if (this.table == null || this.table.length < size) {
+			this.table = new SignificanceValue[size];
+			this.firstRefinement = new boolean[size];
+			this.sumVPrecalc = new byte[size];
+			this.sumHPrecalc = new byte[size];
+			this.sumDPrecalc = new byte[size];
+		} else {
+			Arrays.fill(this.sumVPrecalc, 0, size, (byte) 0);
+			Arrays.fill(this.sumHPrecalc, 0, size, (byte) 0);
+			Arrays.fill(this.sumDPrecalc, 0, size, (byte) 0);
 		}
+		Arrays.fill(this.table, 0, size, SignificanceValue.INSIGNIFICANT);
+		Arrays.fill(this.firstRefinement, 0, size, true);
+	}
+	
+	/**
+	 * @return the number of positions this table can hold without reallocating
+	 */
+	public int getCapacity() {
+		return this.table.length;
 	}
 	
 	/**
@@ -87,43 +115,44 @@ public class SignificanceTable {
 	 * @param isNegative set significant negative if this flag is true, positive if false
 	 */
 	public void setSignificant(int row, int column, boolean isNegative) {
-		if (this.table[row][column] != SignificanceValue.INSIGNIFICANT) {
+		int index = row * width + column;
+		if (this.table[index] != SignificanceValue.INSIGNIFICANT) {
 			return; //already set
 		}
 		
 		//set significance table
 		if (!isNegative) {
-			this.table[row][column] = SignificanceValue.SIGNIFICANT_POSITIVE;
+			this.table[index] = SignificanceValue.SIGNIFICANT_POSITIVE;
 		} else {
-			this.table[row][column] = SignificanceValue.SIGNIFICANT_NEGATIVE;
+			this.table[index] = SignificanceValue.SIGNIFICANT_NEGATIVE;
 		}
 		
 		//set buffer tables
 		if (column > 0) {
-			this.sumHPrecalc[row][column-1]++;
+			this.sumHPrecalc[index-1]++;
 			if (row > 0) {
-				this.sumDPrecalc[row-1][column-1]++;
+				this.sumDPrecalc[index-width-1]++;
 			}
 			if (row < height - 1) {
-				this.sumDPrecalc[row+1][column-1]++;
+				this.sumDPrecalc[index+width-1]++;
 			}
 		}
 		
 		if (column < width - 1) {
-			this.sumHPrecalc[row][column+1]++;
+			this.sumHPrecalc[index+1]++;
 			if (row > 0) {
-				this.sumDPrecalc[row-1][column+1]++;
+				this.sumDPrecalc[index-width+1]++;
 			}
 			if (row < height - 1) {
-				this.sumDPrecalc[row+1][column+1]++;
+				this.sumDPrecalc[index+width+1]++;
 			}
 		}
 		
 		if (row > 0) {
-			this.sumVPrecalc[row-1][column]++;
+			this.sumVPrecalc[index-width]++;
 		}
 		if (row < height - 1) {
-			this.sumVPrecalc[row+1][column]++;
+			this.sumVPrecalc[index+width]++;
 		}
 	}
 	
@@ -134,7 +163,7 @@ public class SignificanceTable {
 	 * (positive or negative significant both)
 	 */
 	public boolean isSignificant(int row, int column) {
-		return this.table[row][column].isSignificant();
+		return this.table[row * width + column].isSignificant();
 	}
 	
 	/**
@@ -151,10 +180,11 @@ public class SignificanceTable {
 		//d2 v1 d3
 		//basically add together the significance of the vertical,
 		//horitonztal, and diagonal neighbors
+		int index = row * width + column;
 		int sumH, sumV, sumD;
-		sumH = sumHPrecalc[row][column];
-		sumV = sumVPrecalc[row][column]; 
-		sumD = sumDPrecalc[row][column];
+		sumH = sumHPrecalc[index];
+		sumV = sumVPrecalc[index]; 
+		sumD = sumDPrecalc[index];
 		
 		//Depending on which subband we are coding, the context
 		//will be different
@@ -228,28 +258,50 @@ public class SignificanceTable {
 	 * @param column
 	 * @param row
 	 * @return the sign bit context associated with the given position
-	 * (D.3.2 JPEG2000 standard), and the xor bit needed for compression
+	 * (D.3.2 JPEG2000 standard), and the xor bit needed for compression.
+	 * The returned pair is shared and must not be modified
 	 */
 	public Pair<ContextLabel, Bit> getSignBitDecodingContextAt(int row, int column) {
-		SignificanceValue v0, v1, h0, h1;
-		v0 = v1 = h0 = h1 = SignificanceValue.INSIGNIFICANT;
-		//get neighboring values
+		int index = row * width + column;
+		int horizontalContribution = 0, verticalContribution = 0;
+		//get contributions of neighboring values
 		if (column > 0) {
-			h0 = this.table[row][column-1];
+			horizontalContribution += this.table[index-1].getContribution();
 		}
 		if (column < width - 1) {
-			h1 = this.table[row][column+1];
+			horizontalContribution += this.table[index+1].getContribution();
 		}
 		if (row > 0) {
-			v0 = this.table[row-1][column];
+			verticalContribution += this.table[index-width].getContribution();
 		}
 		if (row < height - 1) {
-			v1 = this.table[row+1][column];
+			verticalContribution += this.table[index+width].getContribution();
 		}
-		//get contributions
-		int horizontalContribution = h0.getContribution() + h1.getContribution();
-		int verticalContribution = v0.getContribution() + v1.getContribution();
 		
+		return SIGN_CONTEXTS[Integer.signum(horizontalContribution) + 1][Integer.signum(verticalContribution) + 1];
+	}
+	
+	/**
+	 * @return the table of sign contexts indexed by the sign of the horizontal and
+	 * vertical contributions (offset by one so that they start at zero)
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Pair<ContextLabel, Bit>[][] buildSignContexts() {
+		Pair<ContextLabel, Bit>[][] contexts = new Pair[3][3];
+		for (int h = -1; h <= 1; h++) {
+			for (int v = -1; v <= 1; v++) {
+				contexts[h + 1][v + 1] = buildSignContext(h, v);
+			}
+		}
+		return contexts;
+	}
+	
+	/**
+	 * @param horizontalContribution
+	 * @param verticalContribution
+	 * @return the sign context and xor bit for the given contributions
+	 */
+	private static Pair<ContextLabel, Bit> buildSignContext(int horizontalContribution, int verticalContribution) {
 		ContextLabel resContext = null;
 		Bit resBit = Bit.BIT_ZERO;
 		
@@ -297,14 +349,15 @@ public class SignificanceTable {
 	 * the first refinement context is separated from subsequent ones
 	 */
 	public ContextLabel getMagnitudeRefinementContextAt(int row, int column) {
+		int index = row * width + column;
 		int sumH, sumV, sumD;
-		sumH = sumHPrecalc[row][column];
-		sumV = sumVPrecalc[row][column]; 
-		sumD = sumDPrecalc[row][column];
+		sumH = sumHPrecalc[index];
+		sumV = sumVPrecalc[index]; 
+		sumD = sumDPrecalc[index];
 		int totalSum = sumH + sumV + sumD;
-		if (this.firstRefinement[row][column]) {
+		if (this.firstRefinement[index]) {
 			//refine it
-			this.firstRefinement[row][column] = false;
+			this.firstRefinement[index] = false;
 			if (totalSum == 0) {
 				return ContextLabel.FOURTEEN;
 			} else {
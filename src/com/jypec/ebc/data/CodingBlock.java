@@ -2,7 +2,7 @@ package com.jypec.ebc.data;
 
 import com.jypec.ebc.SubBand;
 import com.jypec.util.bits.BitTwiddling;
-import com.jypec.util.datastructures.BidimensionalArrayIntegerMatrix;
+import com.jypec.util.datastructures.ArrayIntegerMatrix;
 import com.jypec.util.datastructures.IntegerMatrix;
 
 /**
@@ -24,6 +24,8 @@ public class CodingBlock {
 	private int rowOffset = 0, columnOffset = 0;
 	private int magnitudeBitPlanes;
 	private SubBand band;
+	/** dense copy of the samples being worked on, null if working directly over the data */
+	private int[] local;
 	
 	/**
 	 * Construct a coding block from the given data. It is assumed that 
@@ -51,7 +53,7 @@ public class CodingBlock {
 	 * @param band which band this block corresponds to
 	 */
 	public CodingBlock(int height, int width, int depth, SubBand band) {
-		this.setUp(BidimensionalArrayIntegerMatrix.newMatrix(height, width), height, width, 0, 0, depth, band);
+		this.setUp(ArrayIntegerMatrix.newMatrix(height, width), height, width, 0, 0, depth, band);
 	}
 	
 	
@@ -145,6 +147,25 @@ public class CodingBlock {
 		return new CodingPlane(this, i, lightWeight);
 	}
 	
+	/**
+	 * Gets the ith bitPlane from within this codeBlock, reusing the given
+	 * plane instead of creating a new one (if not null)
+	 * @param i the index of the bitplane to get
+	 * @param workspace plane to be reset to point to the ith bitplane of this block. 
+	 * If null, a new (non-lightweight) plane is created
+	 * @return the ith bit plane within this block
+	 */
+	public CodingPlane getBitPlane(int i, CodingPlane workspace) {
+		if (workspace == null) {
+			return this.getBitPlane(i);
+		}
+		if (i < 0 || i >= this.magnitudeBitPlanes) {
+			throw new IllegalArgumentException("Requested plane (" + i + ") does not exist. Available: [0," + (this.magnitudeBitPlanes - 1) + "]");
+		}
+		workspace.reset(this, i);
+		return workspace;
+	}
+	
 	/**
 	 * @return the mask to be used with the internal data to extract the sign bit
 	 */
@@ -158,6 +179,9 @@ public class CodingBlock {
 	 * @return the data at the specified position
 	 */
 	public int getDataAt(int row, int column) {
+		if (this.local != null) {
+			return this.local[row * this.columns + column];
+		}
 		return this.data.getDataAt(row + rowOffset, column + columnOffset);
 	}
 	
@@ -167,7 +191,7 @@ public class CodingBlock {
 	 * @return the magnitude of the value at the specified position
 	 */
 	private int getMagnitudeAt(int row, int column) {
-		return this.data.getDataAt(row + rowOffset, column + columnOffset) & ~this.getSignMask();
+		return this.getDataAt(row, column) & ~this.getSignMask();
 	}
 	
 	
@@ -179,8 +203,51 @@ public class CodingBlock {
 	 * @param column
 	 */
 	public void setDataAt(int value, int row, int column) {
+		if (this.local != null) {
+			this.local[row * this.columns + column] = value;
+			return;
+		}
 		this.data.setDataAt(value, row + rowOffset, column + columnOffset);
 	}
+	
+	/**
+	 * Make this block work over a dense copy of its samples instead of going through
+	 * the underlying data on every access, until {@link #releaseLocalCopy(boolean)} is called
+	 * @param workspace where to hold the copy. Reused if big enough, can be null
+	 * @return the array holding the copy, row-major with {@link #getWidth()} samples per row
+	 */
+	public int[] useLocalCopy(int[] workspace) {
+		int size = this.rows * this.columns;
+		if (workspace == null || workspace.length < size) {
+			workspace = new int[size];
+		}
+		this.data.copyBlockTo(this.rowOffset, this.columnOffset, this.rows, this.columns, workspace);
+		this.local = workspace;
+		return workspace;
+	}
+	
+	/**
+	 * Go back to working over the underlying data
+	 * @param writeBack if true, changes made to the local copy are stored in the underlying data
+	 */
+	public void releaseLocalCopy(boolean writeBack) {
+		if (this.local == null) {
+			return;
+		}
+		if (writeBack) {
+			for (int i = 0; i < this.rows; i++) {
+				this.data.setRow(i + this.rowOffset, this.columnOffset, this.columns, this.local, i * this.columns);
+			}
+		}
+		this.local = null;
+	}
+	
+	/**
+	 * @return the local copy set with {@link #useLocalCopy(int[])}, or null if not using one
+	 */
+	public int[] getLocalCopy() {
+		return this.local;
+	}
 
 	/**
 	 * @return the subBand this block belongs to
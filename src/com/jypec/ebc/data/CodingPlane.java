@@ -1,5 +1,7 @@
 package com.jypec.ebc.data;
 
+import java.util.Arrays;
+
 import com.jypec.ebc.SubBand;
 import com.jypec.util.bits.Bit;
 
@@ -11,12 +13,15 @@ import com.jypec.util.bits.Bit;
  */
 public class CodingPlane {
 	private CodingBlock block;
+	/** the block's local copy if it has one, to skip calling the block on every access */
+	private int[] data;
 	
 	
 	private SubBand subBand;
 	private int bitMask;
 	private int signMask;
-	private boolean[][] codingStatus;
+	private boolean[] codingStatus;
+	private boolean lightWeight;
 	private int planeOffset;
 	
 	private int fullStripNumber, lastStripHeight, columns;
@@ -38,11 +43,25 @@ public class CodingPlane {
 	 * @param lightWeight
 	 */
 	public CodingPlane(CodingBlock block, int planeOffset, boolean lightWeight) {
-		if (planeOffset < 0 && planeOffset > 30) {
+		this.lightWeight = lightWeight;
+		this.reset(block, planeOffset);
+	}
+	
+	/**
+	 * Point this plane to the planeOffset-th bit of the given block, as if it
+	 * had just been constructed. The status matrix (if not lightweight) is only
+	 * reallocated if the new block does not fit in it, so a plane can be reused
+	 * over blocks of bounded size without allocating memory
+	 * @param block
+	 * @param planeOffset
+	 */
+	public void reset(CodingBlock block, int planeOffset) {
+		if (planeOffset < 0 || planeOffset > 30) {
 			throw new IllegalArgumentException("Planeoffset out of range");
 		}
 		
 		this.block = block;
+		this.data = block.getLocalCopy();
 		int rows = this.block.getHeight();
 		this.fullStripNumber = rows >> 2;
 		this.lastStripHeight = rows % 4;
@@ -53,7 +72,12 @@ public class CodingPlane {
 		this.signMask = this.block.getSignMask();
 		
 		if (!lightWeight) {
-			this.codingStatus = new boolean[rows][columns]; //defaulted to false
+			int size = rows * columns;
+			if (this.codingStatus == null || this.codingStatus.length < size) {
+				this.codingStatus = new boolean[size]; //defaulted to false
+			} else {
+				Arrays.fill(this.codingStatus, 0, size, false);
+			}
 		}
 	}
 	
@@ -92,7 +116,7 @@ public class CodingPlane {
 	 * @return The symbol at the given position
 	 */
 	public Bit getSymbolAt(int row, int column) {
-		return Bit.fromInteger(this.block.getDataAt(row, column) & this.bitMask);
+		return Bit.fromInteger(this.dataAt(row, column) & this.bitMask);
 	}
 
 	/**
@@ -110,7 +134,7 @@ public class CodingPlane {
 	 * 		of the encompassing codeblock
 	 */
 	public boolean isNegativeAt(int row, int column) {
-		return (this.block.getDataAt(row, column) & this.signMask) != 0;
+		return (this.dataAt(row, column) & this.signMask) != 0;
 	}
 
 	/**
@@ -119,7 +143,7 @@ public class CodingPlane {
 	 * @param row
 	 */
 	public void setCoded(int row, int column) {
-		this.codingStatus[row][column] = true;
+		this.codingStatus[row * columns + column] = true;
 	}
 
 	/**
@@ -129,7 +153,7 @@ public class CodingPlane {
 	 * @see CodingPlane.setCoded
 	 */
 	public boolean isCoded(int row, int column) {
-		return this.codingStatus[row][column];
+		return this.codingStatus[row * columns + column];
 	}
 
 	/**
@@ -162,13 +186,29 @@ public class CodingPlane {
 	 * @param mask
 	 */
 	private void setBitAt(int row, int column, Bit bit, int mask) {
-		int data = this.block.getDataAt(row, column);
+		int data = this.dataAt(row, column);
 		if (bit == Bit.BIT_ONE) {
 			data |= mask;
 		} else {
 			data &= ~mask;
 		}
-		this.block.setDataAt(data, row, column);
+		if (this.data != null) {
+			this.data[row * columns + column] = data;
+		} else {
+			this.block.setDataAt(data, row, column);
+		}
+	}
+	
+	/**
+	 * @param row
+	 * @param column
+	 * @return the sample at the given position of the block
+	 */
+	private int dataAt(int row, int column) {
+		if (this.data != null) {
+			return this.data[row * columns + column];
+		}
+		return this.block.getDataAt(row, column);
 	}
 	
 	/**
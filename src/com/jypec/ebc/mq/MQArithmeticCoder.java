@@ -31,6 +31,8 @@ public class MQArithmeticCoder {
 	
 	
 	private EnumMap<ContextLabel, MQProbabilityTable> contextStates;
+	/** cached since {@link ContextLabel#values()} creates a new array every call */
+	private static final ContextLabel[] CONTEXT_LABELS = ContextLabel.values();
 	
 	
 	/**
@@ -50,14 +52,22 @@ public class MQArithmeticCoder {
 		this.countdownTimer = MQConstants.COUNTDOWN_INIT;
 		this.codeBytesGenerated = -1;
 		
-		this.contextStates = new EnumMap<ContextLabel, MQProbabilityTable>(ContextLabel.class);
-		
-		for (ContextLabel contextLabel: ContextLabel.values()) {
-			this.contextStates.put(
-					contextLabel, 
-					new MQProbabilityTable(
-							contextLabel.getDefaultState(), 
-							contextLabel.getDefaultMPS()));
+		//reuse the tables if already created, this is called once per block
+		if (this.contextStates == null) {
+			this.contextStates = new EnumMap<ContextLabel, MQProbabilityTable>(ContextLabel.class);
+			for (ContextLabel contextLabel: ContextLabel.values()) {
+				this.contextStates.put(
+						contextLabel, 
+						new MQProbabilityTable(
+								contextLabel.getDefaultState(), 
+								contextLabel.getDefaultMPS()));
+			}
+		} else {
+			for (ContextLabel contextLabel: CONTEXT_LABELS) {
+				this.contextStates.get(contextLabel).reset(
+						contextLabel.getDefaultState(), 
+						contextLabel.getDefaultMPS());
+			}
 		}
 	}
 	
@@ -31,6 +31,8 @@ public class MQArithmeticDecoder {
 	
 	
 	private EnumMap<ContextLabel, MQProbabilityTable> contextStates;
+	/** cached since {@link ContextLabel#values()} creates a new array every call */
+	private static final ContextLabel[] CONTEXT_LABELS = ContextLabel.values();
 	
 	/**
 	 * Initialize the decoder, make it ready to rumble
@@ -47,14 +49,22 @@ public class MQArithmeticDecoder {
 	 * @throws IOException 
 	 */
 	public void initialize(BitInputStream input) throws IOException {
-		this.contextStates = new EnumMap<ContextLabel, MQProbabilityTable>(ContextLabel.class);
-		
-		for (ContextLabel contextLabel: ContextLabel.values()) {
-			this.contextStates.put(
-					contextLabel, 
-					new MQProbabilityTable(
-							contextLabel.getDefaultState(), 
-							contextLabel.getDefaultMPS()));
+		//reuse the tables if already created, this is called once per block
+		if (this.contextStates == null) {
+			this.contextStates = new EnumMap<ContextLabel, MQProbabilityTable>(ContextLabel.class);
+			for (ContextLabel contextLabel: ContextLabel.values()) {
+				this.contextStates.put(
+						contextLabel, 
+						new MQProbabilityTable(
+								contextLabel.getDefaultState(), 
+								contextLabel.getDefaultMPS()));
+			}
+		} else {
+			for (ContextLabel contextLabel: CONTEXT_LABELS) {
+				this.contextStates.get(contextLabel).reset(
+						contextLabel.getDefaultState(), 
+						contextLabel.getDefaultMPS());
+			}
 		}
 		
 		this.isFinished = false;
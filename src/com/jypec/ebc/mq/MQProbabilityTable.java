@@ -59,6 +59,15 @@ public class MQProbabilityTable {
 	 * @param MPS
 	 */
 	public MQProbabilityTable(int state, Bit MPS) {
+		this.reset(state, MPS);
+	}
+	
+	/**
+	 * Reset this table to the given values, so that it can be reused
+	 * @param state
+	 * @param MPS
+	 */
+	public void reset(int state, Bit MPS) {
 		this.prediction = MPS;
 		if (state < 0 || state > 46) {
 			throw new IllegalArgumentException("State out of bounds @MQProbabilityTable()");
@@ -3,6 +3,7 @@ package com.jypec.img;
 
 import com.jypec.ebc.SubBand;
 import com.jypec.ebc.data.CodingBlock;
+import com.jypec.util.datastructures.ArrayIntegerMatrix;
 import com.jypec.util.datastructures.IntegerMatrix;
 import com.jypec.util.debug.Logger;
 
@@ -19,6 +20,8 @@ public class HyperspectralBandData implements IntegerMatrix {
 	private int depth;
 	private int lines;
 	private int samples;
+	/** where the samples are read from and written to */
+	private IntegerMatrix storage;
 	
 	
 	/**
@@ -35,6 +38,13 @@ public class HyperspectralBandData implements IntegerMatrix {
 		this.depth = depth;
 		this.lines = lines;
 		this.samples = samples;
+		if (hi instanceof HyperspectralImageIntegerData) {
+			//go straight to the array instead of through the image
+			HyperspectralImageIntegerData hid = (HyperspectralImageIntegerData) hi;
+			this.storage = new ArrayIntegerMatrix(hid.getBandArray(band), hid.getBandOffset(band), hi.getNumberOfLines(), hi.getNumberOfSamples());
+		} else {
+			this.storage = new ImageBandMatrix();
+		}
 	}
 	
 	/**
@@ -50,7 +60,7 @@ public class HyperspectralBandData implements IntegerMatrix {
 	
 	@Override
 	public int getDataAt(int line, int sample) {
-		return this.hyimg.getDataAt(this.band, line, sample);
+		return this.storage.getDataAt(line, sample);
 	}
 	
 	/**
@@ -64,7 +74,22 @@ public class HyperspectralBandData implements IntegerMatrix {
 	
 	@Override
 	public void setDataAt(int data, int line, int sample) {
-		this.hyimg.setDataAt(data, this.band, line, sample);
+		this.storage.setDataAt(data, line, sample);
+	}
+	
+	@Override
+	public void getRow(int row, int column, int length, int[] dst, int dstOffset) {
+		this.storage.getRow(row, column, length, dst, dstOffset);
+	}
+	
+	@Override
+	public void setRow(int row, int column, int length, int[] src, int srcOffset) {
+		this.storage.setRow(row, column, length, src, srcOffset);
+	}
+	
+	@Override
+	public void copyBlockTo(int row, int column, int height, int width, int[] dst) {
+		this.storage.copyBlockTo(row, column, height, width, dst);
 	}
 	
 	/**
@@ -164,4 +189,52 @@ public class HyperspectralBandData implements IntegerMatrix {
 	public HyperspectralImageData getImage() {
 		return this.hyimg;
 	}
+	
+	
+	/**
+	 * Accesses the band through the image, for images not backed by an integer array
+	 */
+	private class ImageBandMatrix implements IntegerMatrix {
+		@Override
+		public int getDataAt(int row, int column) {
+			return hyimg.getDataAt(band, row, column);
+		}
+
+		@Override
+		public void setDataAt(int data, int row, int column) {
+			hyimg.setDataAt(data, band, row, column);
+		}
+
+		@Override
+		public void getRow(int row, int column, int length, int[] dst, int dstOffset) {
+			for (int j = 0; j < length; j++) {
+				dst[dstOffset + j] = hyimg.getDataAt(band, row, column + j);
+			}
+		}
+
+		@Override
+		public void setRow(int row, int column, int length, int[] src, int srcOffset) {
+			for (int j = 0; j < length; j++) {
+				hyimg.setDataAt(src[srcOffset + j], band, row, column + j);
+			}
+		}
+
+		@Override
+		public void copyBlockTo(int row, int column, int height, int width, int[] dst) {
+			for (int i = 0; i < height; i++) {
+				this.getRow(row + i, column, width, dst, i * width);
+			}
+		}
+
+		@Override
+		public int getRows() {
+			return lines;
+		}
+
+		@Override
+		public int getColumns() {
+			return samples;
+		}
+	}
+	
 }
@@ -0,0 +1,69 @@
+package com.jypec.img;
+
+/**
+ * Implementation of {@link HyperspectralImageData} for types of up to 8 bits, which
+ * stores the raw data in one <code>byte[]</code> per band. Takes a quarter of the memory
+ * that {@link HyperspectralImageIntegerData} would
+ * @author Daniel
+ */
+public class HyperspectralImageByteData extends HyperspectralImageCompactData {
+
+	private byte[][] data;
+
+	/**
+	 * Create a zero-filled hyperspectral image
+	 * @param dataType the type of data that forms the image. Must be 8 bits deep at most
+	 * @param bands number of bands in the image (spectral dimension)
+	 * @param lines number of lines in a band (height of the spatial dimension (vertical number of samples))
+	 * @param samples number of samples in a line (width of the spatial dimension (horizontal number of samples))
+	 */
+	public HyperspectralImageByteData (ImageDataType dataType, int bands, int lines, int samples) {
+		super(dataType, bands, lines, samples, Byte.SIZE);
+		this.data = new byte[bands][this.bandElements];
+	}
+
+	@Override
+	protected HyperspectralImageCompactData createEmpty(ImageDataType dataType, int bands, int lines, int samples) {
+		return new HyperspectralImageByteData(dataType, bands, lines, samples);
+	}
+
+	@Override
+	public int getDataAt(int band, int line, int sample) {
+		return this.data[band][line*samples + sample] & 0xff;
+	}
+
+	@Override
+	public void setDataAt(int value, int band, int line, int sample) {
+		this.data[band][line*samples + sample] = (byte) value;
+	}
+
+	@Override
+	public void getDataRun(int band, int position, int[] dst, int offset, int length) {
+		byte[] array = this.data[band];
+		for (int i = 0; i < length; i++) {
+			dst[offset + i] = array[position + i] & 0xff;
+		}
+	}
+
+	@Override
+	public void setDataRun(int band, int position, int[] src, int offset, int length) {
+		byte[] array = this.data[band];
+		for (int i = 0; i < length; i++) {
+			array[position + i] = (byte) src[offset + i];
+		}
+	}
+
+	/**
+	 * @param band
+	 * @return the array where the given band is stored, row-major
+	 */
+	public byte[] getBandArray(int band) {
+		return this.data[band];
+	}
+
+	@Override
+	public void free() {
+		this.data = null;
+	}
+
+}
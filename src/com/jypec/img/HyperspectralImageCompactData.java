@@ -0,0 +1,129 @@
+package com.jypec.img;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * Base for the implementations of {@link HyperspectralImageData} that store the raw data
+ * in arrays narrower than an <code>int</code>, one per band
+ * ({@link HyperspectralImageShortData}, {@link HyperspectralImageByteData}).
+ * Subclasses only provide access to their arrays, everything else is built
+ * on top of {@link #getDataRun(int, int, int[], int, int)} and {@link #setDataRun(int, int, int[], int, int)}
+ * @author Daniel
+ */
+public abstract class HyperspectralImageCompactData extends HyperspectralImageData {
+
+	/** Samples converted at once when going through the data runs */
+	private static final int CHUNK = 4096;
+
+	/**
+	 * @param dataType the type of data that forms the image. Must fit in the given number of bits
+	 * @param bands number of bands in the image (spectral dimension)
+	 * @param lines number of lines in a band (height of the spatial dimension (vertical number of samples))
+	 * @param samples number of samples in a line (width of the spatial dimension (horizontal number of samples))
+	 * @param storageBits bits of each element of the arrays the subclass stores the data in
+	 */
+	protected HyperspectralImageCompactData(ImageDataType dataType, int bands, int lines, int samples, int storageBits) {
+		super(dataType, bands, lines, samples);
+		if (dataType.getBitDepth() > storageBits) {
+			throw new IllegalArgumentException("Cannot store " + dataType + " data in " + storageBits + " bits");
+		}
+	}
+
+	/**
+	 * @param dataType
+	 * @param bands
+	 * @param lines
+	 * @param samples
+	 * @return a new zero-filled image of the same class as this one
+	 */
+	protected abstract HyperspectralImageCompactData createEmpty(ImageDataType dataType, int bands, int lines, int samples);
+
+	@Override
+	public int getValueAt(int band, int line, int sample) {
+		return this.dataType.dataToValue(this.getDataAt(band, line, sample));
+	}
+
+	@Override
+	public void setValueAt(float value, int band, int line, int sample) {
+		this.setDataAt(this.dataType.valueToData(value), band, line, sample);
+	}
+
+	@Override
+	public void getValueRun(int band, int position, float[] dst, int offset, int length) {
+		int[] run = new int[Math.min(length, CHUNK)];
+		boolean signed = this.dataType.isSigned();
+		while (length > 0) {
+			int n = Math.min(length, run.length);
+			this.getDataRun(band, position, run, 0, n);
+			if (signed) {
+				for (int i = 0; i < n; i++) {
+					dst[offset + i] = this.dataType.dataToValue(run[i]);
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					dst[offset + i] = run[i];
+				}
+			}
+			position += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public float[] getPixel(int line, int sample) {
+		float[] res = new float[this.getNumberOfBands()];
+		for (int i = 0; i < this.getNumberOfBands(); i++) {
+			res[i] = this.getValueAt(i, line, sample);
+		}
+		return res;
+	}
+
+	@Override
+	public void setPixel(float[] values, int line, int sample) {
+		for (int i = 0; i < this.getNumberOfBands(); i++) {
+			this.setValueAt(values[i], i, line, sample);
+		}
+	}
+
+	@Override
+	public void copyDataFrom(FMatrixRMaj source) {
+		int[] run = new int[Math.min(this.bandElements, CHUNK)];
+		for (int i = 0; i < this.getNumberOfBands(); i++) {
+			for (int j = 0; j < this.bandElements; j += run.length) {
+				int n = Math.min(run.length, this.bandElements - j);
+				for (int k = 0; k < n; k++) {
+					run[k] = this.dataType.valueToData(source.get(i, j + k));
+				}
+				this.setDataRun(i, j, run, 0, n);
+			}
+		}
+	}
+
+	@Override
+	public FMatrixRMaj tofloatMatrix() {
+		FMatrixRMaj res = new FMatrixRMaj(this.bands, this.bandElements);
+		for (int i = 0; i < bands; i++) {
+			this.getValueRun(i, 0, res.data, i * this.bandElements, this.bandElements);
+		}
+		return res;
+	}
+
+	@Override
+	public HyperspectralImageData resize(int bands, int lines, int samples) {
+		HyperspectralImageCompactData newImage = this.createEmpty(
+				new ImageDataType(this.getDataType().getBitDepth(), this.getDataType().isSigned()),
+				bands, lines, samples);
+
+		int cSamples = Math.min(samples, this.getNumberOfSamples());
+		int[] run = new int[cSamples];
+		for (int i = 0; i < Math.min(bands, this.getNumberOfBands()); i++) {
+			for (int j = 0; j < Math.min(lines, this.getNumberOfLines()); j++) {
+				this.getDataRun(i, j * this.samples, run, 0, cSamples);
+				newImage.setDataRun(i, j * samples, run, 0, cSamples);
+			}
+		}
+		return newImage;
+	}
+
+}
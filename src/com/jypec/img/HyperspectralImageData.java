@@ -87,8 +87,8 @@ public abstract class HyperspectralImageData {
 	 * @return the total number of samples within the image, that is:<br>
 	 * bands * lines * samples
 	 */
-	public int getTotalNumberOfSamples() {
-		return bands * lines * samples;
+	public long getTotalNumberOfSamples() {
+		return (long) bands * (long) lines * (long) samples;
 	}
 	
 	/**
@@ -138,6 +138,52 @@ public abstract class HyperspectralImageData {
 	 */
 	public abstract void setValueAt(float value, int band, int line, int sample);
 	
+	/**
+	 * Get the data of consecutive samples of a band, in row-major order 
+	 * (so runs can go over several lines). Subclasses should override this 
+	 * with something faster than going sample by sample
+	 * @param band
+	 * @param position index of the first sample within the band (<code>line * samples + sample</code>)
+	 * @param dst where to put the data
+	 * @param offset position of dst where the first sample goes
+	 * @param length number of samples
+	 */
+	public void getDataRun(int band, int position, int[] dst, int offset, int length) {
+		for (int i = 0; i < length; i++, position++) {
+			dst[offset + i] = this.getDataAt(band, position / this.samples, position % this.samples);
+		}
+	}
+	
+	/**
+	 * Set the data of consecutive samples of a band, in row-major order
+	 * @param band
+	 * @param position index of the first sample within the band (<code>line * samples + sample</code>)
+	 * @param src where to take the data from
+	 * @param offset position of src where the first sample is
+	 * @param length number of samples
+	 * @see #getDataRun(int, int, int[], int, int)
+	 */
+	public void setDataRun(int band, int position, int[] src, int offset, int length) {
+		for (int i = 0; i < length; i++, position++) {
+			this.setDataAt(src[offset + i], band, position / this.samples, position % this.samples);
+		}
+	}
+	
+	/**
+	 * Same as {@link #getDataRun(int, int, int[], int, int)} but getting the values
+	 * the data represents
+	 * @param band
+	 * @param position
+	 * @param dst
+	 * @param offset
+	 * @param length
+	 */
+	public void getValueRun(int band, int position, float[] dst, int offset, int length) {
+		for (int i = 0; i < length; i++, position++) {
+			dst[offset + i] = this.getValueAt(band, position / this.samples, position % this.samples);
+		}
+	}
+	
 	/**
 	 * @param line
 	 * @param sample
@@ -62,6 +62,33 @@ public class HyperspectralImageFloatData extends HyperspectralImageData {
 		data.set(band*this.bandElements + line*this.samples + sample, value);
 	}
 
+	@Override
+	public void getDataRun(int band, int position, int[] dst, int offset, int length) {
+		float[] array = this.data.getData();
+		int base = band * this.bandElements + position;
+		for (int i = 0; i < length; i++) {
+			dst[offset + i] = this.dataType.valueToData(array[base + i]);
+		}
+	}
+	
+	@Override
+	public void setDataRun(int band, int position, int[] src, int offset, int length) {
+		float[] array = this.data.getData();
+		int base = band * this.bandElements + position;
+		for (int i = 0; i < length; i++) {
+			array[base + i] = this.dataType.dataToValue(src[offset + i]);
+		}
+	}
+	
+	@Override
+	public void getValueRun(int band, int position, float[] dst, int offset, int length) {
+		float[] array = this.data.getData();
+		int base = band * this.bandElements + position;
+		for (int i = 0; i < length; i++) {
+			dst[offset + i] = (int) array[base + i];
+		}
+	}
+
 	@Override
 	public float[] getPixel(int line, int sample) {
 		float[] pixel = new float[this.bands];
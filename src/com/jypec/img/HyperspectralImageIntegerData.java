@@ -2,6 +2,8 @@ package com.jypec.img;
 
 import org.ejml.data.FMatrixRMaj;
 
+import com.jypec.util.datastructures.SegmentedIntArray;
+
 /**
  * Integer implementation of {@link HyperspectralImageData}, stores the information
  * in raw data form, and converts to value when necessary
@@ -9,7 +11,10 @@ import org.ejml.data.FMatrixRMaj;
  */
 public class HyperspectralImageIntegerData extends HyperspectralImageData {
 
-	private int[] data;
+	private SegmentedIntArray data;
+	/** array and starting position of each band, so that accesses skip the segment lookup */
+	private int[][] bandArrays;
+	private int[] bandOffsets;
 	
 	/**
 	 * Create a hyperspectral image with the given data, or an empty image if data is null
@@ -20,13 +25,34 @@ public class HyperspectralImageIntegerData extends HyperspectralImageData {
 	 * @param samples number of samples in a line (width of the spatial dimension (horizontal number of samples))
 	 */
 	public HyperspectralImageIntegerData (ImageDataType dataType, int bands, int lines, int samples) {
+		this(dataType, bands, lines, samples, SegmentedIntArray.MAX_SEGMENT_LENGTH);
+	}
+	
+	/**
+	 * Same as {@link #HyperspectralImageIntegerData(ImageDataType, int, int, int)}, but
+	 * limiting the number of samples stored in each segment of the backing storage. 
+	 * Segments always hold whole bands
+	 * @param dataType
+	 * @param bands
+	 * @param lines
+	 * @param samples
+	 * @param maxSegmentLength
+	 */
+	public HyperspectralImageIntegerData (ImageDataType dataType, int bands, int lines, int samples, int maxSegmentLength) {
 		super(dataType, bands, lines, samples);
-		this.data = new int[bands*lines*samples];
+		int bandsPerSegment = Math.max(1, Math.min(bands, maxSegmentLength / Math.max(1, this.bandElements)));
+		this.data = new SegmentedIntArray(this.getTotalNumberOfSamples(), Math.max(1, bandsPerSegment * this.bandElements));
+		this.bandArrays = new int[bands][];
+		this.bandOffsets = new int[bands];
+		for (int i = 0; i < bands; i++) {
+			this.bandArrays[i] = this.data.getSegment(i / bandsPerSegment);
+			this.bandOffsets[i] = (i % bandsPerSegment) * this.bandElements;
+		}
 	}
 	
 	@Override
 	public int getDataAt(int band, int line, int sample) {
-		return this.data[band*bandElements + line*samples + sample];
+		return this.bandArrays[band][this.bandOffsets[band] + line*samples + sample];
 	}
 	
 	@Override
@@ -36,12 +62,12 @@ public class HyperspectralImageIntegerData extends HyperspectralImageData {
 	
 	@Override
 	public void setDataAt(int value, int band, int line, int sample) {
-		this.data[band*bandElements + line*samples + sample] = value; 
+		this.bandArrays[band][this.bandOffsets[band] + line*samples + sample] = value; 
 	}
 	
 	@Override
 	public void setValueAt(float value, int band, int line, int sample) {
-		this.data[band*bandElements + line*samples + sample] = this.dataType.valueToData(value);
+		this.bandArrays[band][this.bandOffsets[band] + line*samples + sample] = this.dataType.valueToData(value);
 	}
 	
 	@Override
@@ -71,22 +97,62 @@ public class HyperspectralImageIntegerData extends HyperspectralImageData {
 		}
 	}
 
+	@Override
+	public void getDataRun(int band, int position, int[] dst, int offset, int length) {
+		System.arraycopy(this.bandArrays[band], this.bandOffsets[band] + position, dst, offset, length);
+	}
+	
+	@Override
+	public void setDataRun(int band, int position, int[] src, int offset, int length) {
+		System.arraycopy(src, offset, this.bandArrays[band], this.bandOffsets[band] + position, length);
+	}
+	
+	@Override
+	public void getValueRun(int band, int position, float[] dst, int offset, int length) {
+		int[] array = this.bandArrays[band];
+		int start = this.bandOffsets[band] + position;
+		for (int i = 0; i < length; i++) {
+			dst[offset + i] = this.dataType.dataToValue(array[start + i]);
+		}
+	}
+
 	@Override
 	public FMatrixRMaj tofloatMatrix() {
-		FMatrixRMaj res = new FMatrixRMaj(this.bands, this.lines * this.samples);
+		FMatrixRMaj res = new FMatrixRMaj(this.bands, this.bandElements);
 		for (int i = 0; i < bands; i++) {
-			for (int j = 0; j < lines; j++) {
-				for (int k = 0; k < samples; k++) {
-					res.set(i, j*samples + k, this.getValueAt(i, j, k));
-				}
-			}
+			this.getValueRun(i, 0, res.data, i * this.bandElements, this.bandElements);
 		}
 		return res;
 	}
 
+	/**
+	 * @param band
+	 * @return the array where the given band is stored, starting at
+	 * {@link #getBandOffset(int)} and row-major
+	 */
+	public int[] getBandArray(int band) {
+		return this.bandArrays[band];
+	}
+	
+	/**
+	 * @param band
+	 * @return the position of the given band within {@link #getBandArray(int)}
+	 */
+	public int getBandOffset(int band) {
+		return this.bandOffsets[band];
+	}
+	
+	/**
+	 * @return the storage backing this image, band after band
+	 */
+	public SegmentedIntArray getStorage() {
+		return this.data;
+	}
+	
 	@Override
 	public void free() {
 		this.data = null;
+		this.bandArrays = null;
 	}
 
 	@Override
@@ -0,0 +1,332 @@
+package com.jypec.img;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ejml.data.FMatrixRMaj;
+
+import com.jypec.util.io.ChunkedByteBuffer;
+import com.jypec.util.io.Interleaving;
+import com.jypec.util.io.headerio.enums.BandOrdering;
+import com.jypec.util.io.headerio.enums.ByteOrdering;
+import com.jypec.util.io.imagedatareading.ImageDataReaderFactory;
+import com.jypec.util.io.imagedatareading.SampleRunReader;
+
+/**
+ * Read only implementation of {@link HyperspectralImageData} that works directly
+ * over the raw data of a (usually mapped) file, without copying it to the heap first.
+ * Samples are decoded on demand: runs that are contiguous in the file are read straight from it,
+ * and the rest goes through a small cache of decoded pages (groups of whole lines
+ * in the file's band ordering), so that the operating system only pages in
+ * the regions of the file that are actually used
+ * @author Daniel
+ */
+public class HyperspectralImageMappedData extends HyperspectralImageData {
+
+	/** Approximate number of samples decoded at once in each page */
+	public static final int PAGE_SAMPLES = 1 << 16;
+
+	private ChunkedByteBuffer buffer;
+	private BandOrdering ordering;
+	private SampleRunReader reader;
+	/** lines in each page, and samples of the file that a line of a page covers */
+	private int linesPerPage, pageLineSamples;
+	private Map<Long, int[]> pages;
+	/** see {@link ImageDataType#getValueTable()} */
+	private float[] valueTable;
+
+	/**
+	 * Create an image over the given buffer
+	 * @param dataType type of the samples in the buffer
+	 * @param bands number of bands in the image (spectral dimension)
+	 * @param lines number of lines in a band (height of the spatial dimension (vertical number of samples))
+	 * @param samples number of samples in a line (width of the spatial dimension (horizontal number of samples))
+	 * @param buffer where the raw data is stored, starting at its first byte
+	 * @param ordering band ordering of the raw data
+	 * @param byteOrdering byte ordering of the raw data
+	 */
+	public HyperspectralImageMappedData(ImageDataType dataType, int bands, int lines, int samples,
+			ChunkedByteBuffer buffer, BandOrdering ordering, ByteOrdering byteOrdering) {
+		super(dataType, bands, lines, samples);
+		if (buffer.length() < (this.getBitSize() + 7) / 8) {
+			throw new IllegalArgumentException("The buffer is too small for an image of the given dimensions");
+		}
+		this.buffer = buffer;
+		this.ordering = ordering;
+		this.reader = ImageDataReaderFactory.getRunReader(byteOrdering, dataType, buffer);
+		this.valueTable = dataType.getValueTable();
+		this.pageLineSamples = ordering == BandOrdering.BSQ ? samples : bands * samples;
+		this.linesPerPage = Math.max(1, Math.min(lines, PAGE_SAMPLES / Math.max(1, this.pageLineSamples)));
+		//in BSQ pixels are spread over one page per band
+		final int maxPages = ordering == BandOrdering.BSQ ? bands + 2 : 4;
+		this.pages = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+				return this.size() > maxPages;
+			}
+		};
+	}
+
+	/**
+	 * @param band
+	 * @param line
+	 * @param sample
+	 * @return the index of the given sample within the file
+	 */
+	private long fileIndex(int band, int line, int sample) {
+		switch (this.ordering) {
+		case BIL:
+			return ((long) line * bands + band) * samples + sample;
+		case BIP:
+			return ((long) line * samples + sample) * bands + band;
+		case BSQ:
+		default:
+			return (long) band * bandElements + (long) line * samples + sample;
+		}
+	}
+
+	/**
+	 * @param band
+	 * @param line
+	 * @return the index within the file of the first sample of the page that covers the given line of the given band
+	 */
+	private long pageStart(int band, int line) {
+		int firstLine = (line / this.linesPerPage) * this.linesPerPage;
+		return this.fileIndex(this.ordering == BandOrdering.BSQ ? band : 0, firstLine, 0);
+	}
+
+	/**
+	 * @param band
+	 * @param line
+	 * @return the decoded page that covers the given line of the given band
+	 */
+	private synchronized int[] getPage(int band, int line) {
+		int page = line / this.linesPerPage;
+		long key = this.ordering == BandOrdering.BSQ ? (long) band * lines + page : page;
+		int[] res = this.pages.get(key);
+		if (res == null) {
+			int firstLine = page * this.linesPerPage;
+			int pageLines = Math.min(this.linesPerPage, lines - firstLine);
+			res = new int[pageLines * this.pageLineSamples];
+			this.reader.readRun(this.pageStart(band, line), res, 0, res.length);
+			this.pages.put(key, res);
+		}
+		return res;
+	}
+
+	/**
+	 * @param band
+	 * @param line
+	 * @param sample
+	 * @return the position of the given sample within its page
+	 */
+	private int pageIndex(int band, int line, int sample) {
+		return (int) (this.fileIndex(band, line, sample) - this.pageStart(band, line));
+	}
+
+	@Override
+	public int getDataAt(int band, int line, int sample) {
+		return this.getPage(band, line)[this.pageIndex(band, line, sample)];
+	}
+
+	@Override
+	public int getValueAt(int band, int line, int sample) {
+		return this.dataType.dataToValue(this.getDataAt(band, line, sample));
+	}
+
+	@Override
+	public void getDataRun(int band, int position, int[] dst, int offset, int length) {
+		while (length > 0) {
+			int line = position / samples;
+			int sample = position % samples;
+			int n = Math.min(length, samples - sample);
+			if (this.ordering == BandOrdering.BIP) {
+				int[] page = this.getPage(band, line);
+				int index = this.pageIndex(band, line, sample);
+				for (int i = 0; i < n; i++, index += bands) {
+					dst[offset + i] = page[index];
+				}
+			} else {
+				if (this.ordering == BandOrdering.BSQ) {
+					//the rest of the band is contiguous in the file
+					n = length;
+				}
+				this.reader.readRun(this.fileIndex(band, line, sample), dst, offset, n);
+			}
+			position += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public void getValueRun(int band, int position, float[] dst, int offset, int length) {
+		int[] run = new int[Math.min(length, PAGE_SAMPLES)];
+		while (length > 0) {
+			int n = Math.min(length, run.length);
+			this.getDataRun(band, position, run, 0, n);
+			this.toValues(run, dst, offset, n);
+			position += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public float[] getPixel(int line, int sample) {
+		float[] res = new float[this.getNumberOfBands()];
+		for (int i = 0; i < this.getNumberOfBands(); i++) {
+			res[i] = this.getValueAt(i, line, sample);
+		}
+		return res;
+	}
+
+	/**
+	 * Decodes the file in parallel over line ranges, see {@link #decodeColumnPanel(int, int, FMatrixRMaj)}
+	 */
+	@Override
+	public FMatrixRMaj tofloatMatrix() {
+		final FMatrixRMaj res = new FMatrixRMaj(this.bands, this.bandElements);
+		Interleaving.forEachLineRange(lines, bands * samples, new Interleaving.LineRangeProcessor() {
+			@Override
+			public void process(int fromLine, int toLine) {
+				decodeColumnPanel(fromLine, toLine, res);
+			}
+		});
+		return res;
+	}
+	
+	/**
+	 * Decode the values of a range of lines straight from the file into the matching
+	 * columns (<code>fromLine * samples</code> to <code>toLine * samples</code>) of a 
+	 * matrix laid out as {@link #tofloatMatrix()} returns it. Panels of disjoint line ranges 
+	 * can be decoded at the same time
+	 * @param fromLine first line to decode
+	 * @param toLine last line to decode (exclusive)
+	 * @param dst where to put the values, with one row per band and one column per pixel
+	 */
+	public void decodeColumnPanel(int fromLine, int toLine, FMatrixRMaj dst) {
+		float[] data = dst.getData();
+		if (this.ordering == BandOrdering.BSQ) {
+			//each band of the panel is contiguous in the file
+			int length = (toLine - fromLine) * samples;
+			int[] raw = new int[Math.min(length, PAGE_SAMPLES)];
+			for (int b = 0; b < bands; b++) {
+				for (int done = 0; done < length; done += raw.length) {
+					int n = Math.min(raw.length, length - done);
+					this.reader.readRun(this.fileIndex(b, fromLine, 0) + done, raw, 0, n);
+					this.toValues(raw, data, b * bandElements + fromLine * samples + done, n);
+				}
+			}
+			return;
+		}
+		
+		int[] raw = new int[this.pageLineSamples];
+		float[] values = new float[this.pageLineSamples];
+		for (int l = fromLine; l < toLine; l++) {
+			this.reader.readRun(this.fileIndex(0, l, 0), raw, 0, raw.length);
+			this.toValues(raw, values, 0, raw.length);
+			int lineOffset = l * samples;
+			if (this.ordering == BandOrdering.BIL) {
+				for (int b = 0; b < bands; b++) {
+					System.arraycopy(values, b * samples, data, b * bandElements + lineOffset, samples);
+				}
+			} else {
+				//transposed in tiles so that both the line and the rows stay in cache
+				for (int s0 = 0; s0 < samples; s0 += Interleaving.TILE) {
+					int s1 = Math.min(samples, s0 + Interleaving.TILE);
+					for (int b = 0; b < bands; b++) {
+						int base = b * bandElements + lineOffset;
+						for (int s = s0; s < s1; s++) {
+							data[base + s] = values[s * bands + b];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Convert raw data to the values it represents, through the
+	 * type's table when it has one
+	 * @param raw data to convert, from its start
+	 * @param values where to put the values
+	 * @param offset position of values where the first one goes
+	 * @param length number of samples to convert
+	 */
+	private void toValues(int[] raw, float[] values, int offset, int length) {
+		if (this.valueTable != null) {
+			float[] table = this.valueTable;
+			for (int i = 0; i < length; i++) {
+				values[offset + i] = table[raw[i]];
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				values[offset + i] = this.dataType.dataToValue(raw[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copy the region of this image with the given size into a new {@link HyperspectralImageIntegerData}
+	 * (filled with zeroes where it goes out of this one)
+	 */
+	@Override
+	public HyperspectralImageData resize(int bands, int lines, int samples) {
+		HyperspectralImageIntegerData newImage = new HyperspectralImageIntegerData(
+				new ImageDataType(this.getDataType().getBitDepth(), this.getDataType().isSigned()),
+				bands, lines, samples);
+
+		int cSamples = Math.min(samples, this.getNumberOfSamples());
+		int[] run = new int[cSamples];
+		for (int i = 0; i < Math.min(bands, this.getNumberOfBands()); i++) {
+			for (int j = 0; j < Math.min(lines, this.getNumberOfLines()); j++) {
+				this.getDataRun(i, j * this.samples, run, 0, cSamples);
+				newImage.setDataRun(i, j * samples, run, 0, cSamples);
+			}
+		}
+		return newImage;
+	}
+
+	@Override
+	public void setDataAt(int value, int band, int line, int sample) {
+		throw new UnsupportedOperationException("Mapped images are read only");
+	}
+
+	@Override
+	public void setValueAt(float value, int band, int line, int sample) {
+		throw new UnsupportedOperationException("Mapped images are read only");
+	}
+
+	@Override
+	public void setDataRun(int band, int position, int[] src, int offset, int length) {
+		throw new UnsupportedOperationException("Mapped images are read only");
+	}
+
+	@Override
+	public void setPixel(float[] values, int line, int sample) {
+		throw new UnsupportedOperationException("Mapped images are read only");
+	}
+
+	@Override
+	public void copyDataFrom(FMatrixRMaj source) {
+		throw new UnsupportedOperationException("Mapped images are read only");
+	}
+
+	/**
+	 * @return the buffer this image reads from
+	 */
+	public ChunkedByteBuffer getBuffer() {
+		return this.buffer;
+	}
+
+	@Override
+	public synchronized void free() {
+		this.pages.clear();
+		this.buffer = null;
+		this.reader = null;
+	}
+
+}
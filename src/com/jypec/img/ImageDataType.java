@@ -21,6 +21,9 @@ public class ImageDataType {
 	/** unsigned 4 byte */
 	public static final ImageDataType UNSIGNED_FOUR_BYTE = new ImageDataType(32, true);
 	
+	/** Maximum bit depth for which {@link #getValueTable()} builds a table */
+	public static final int MAX_TABLE_DEPTH = 16;
+	
 	
 	private int bitDepth;
 	private int magnitudeDepth;
@@ -137,6 +140,36 @@ public class ImageDataType {
 
 	}
 
+	/**
+	 * Same as {@link #valueToData(float)} but without going through float, so that
+	 * values over 24 bits are converted exactly
+	 * @param value
+	 * @return the bit representation of the given value according to this data Type
+	 */
+	public int integerToData(int value) {
+		if (this.signed) {
+			return this.signedClampToRange(value, this.magnitudeLimit, this.signBit);
+		} else {
+			return this.clampToInterval(value, 0, this.magnitudeLimit);
+		}
+	}
+
+	/**
+	 * @return a table with the value of every possible data of this type as a float
+	 * (so that <code>table[data] == dataToValue(data)</code>), or null if this type 
+	 * is more than {@link #MAX_TABLE_DEPTH} bits deep and the table would be too big
+	 */
+	public float[] getValueTable() {
+		if (this.bitDepth > MAX_TABLE_DEPTH) {
+			return null;
+		}
+		float[] table = new float[1 << this.bitDepth];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = this.dataToValue(i);
+		}
+		return table;
+	}
+	
 	/**
 	 * @return the byte depth of this type, or -1 if its depth is not multiple of 8
 	 */
@@ -15,6 +15,8 @@ public class LogPrequantization extends PrequantizationTransformer {
 
 	
 	private float avg; //average of the distribution being transformed
+	private boolean tabulated = false;
+	private LogTable table; //only if tabulated and trained
 	
 	/**
 	 * Builds a logarithmic pre quantization transformation
@@ -32,8 +34,38 @@ public class LogPrequantization extends PrequantizationTransformer {
 		this(0);
 	}
 
+	/**
+	 * @param tabulated if true, {@link #train(FMatrixRMaj)} builds a {@link LogTable} covering
+	 * the trained samples, and {@link #forward(float)} interpolates it instead of calculating
+	 * the logarithm (see {@link LogTable} for the error bound). Only affects compression, 
+	 * the reverse transform is always exact
+	 */
+	public void setTabulated(boolean tabulated) {
+		this.tabulated = tabulated;
+		if (!tabulated) {
+			this.table = null;
+		}
+	}
+	
+	/**
+	 * @return the maximum error of {@link #forward(float)} with respect to the exact logarithm,
+	 * not counting float rounding. Zero unless tabulated and trained
+	 */
+	public double getErrorBound() {
+		return this.table == null ? 0 : this.table.getErrorBound();
+	}
+	
 	@Override
 	public float forward(float input) {
+		if (this.table != null) {
+			if (input > avg) {
+				return this.table.log1p(input - avg);
+			} else if (input < avg) {
+				return -this.table.log1p(avg - input);
+			} else {
+				return 0;
+			}
+		}
 		if (input > avg) {
 			return (float) Math.log(input - avg + 1);
 		} else if (input < avg) {
@@ -43,6 +75,18 @@ public class LogPrequantization extends PrequantizationTransformer {
 		}
 	}
 
+	/**
+	 * Goes straight through the table when there is one, see {@link LogTable#signedLog1p(float, float[], int, float[], int, int)}
+	 */
+	@Override
+	public void forward(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		if (this.table == null) {
+			super.forward(src, srcOffset, dst, dstOffset, length);
+			return;
+		}
+		this.table.signedLog1p(this.avg, src, srcOffset, dst, dstOffset, length);
+	}
+
 	@Override
 	public float reverse(float input) {
 		if (input > 0) {
@@ -59,9 +103,29 @@ public class LogPrequantization extends PrequantizationTransformer {
 		bost.writeFloat(avg);
 	}
 
+	/**
+	 * The average and the range of the samples (for the table) are found in a single pass. 
+	 * The average is the same as {@link EJMLExtensions#avg(FMatrixRMaj)}
+	 */
 	@Override
 	public void train(FMatrixRMaj s) {
-		this.avg = EJMLExtensions.avg(s);
+		float[] data = s.getData();
+		int size = s.getNumElements();
+		float sum = 0, min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			float sample = data[i];
+			sum += sample;
+			min = Math.min(min, sample);
+			max = Math.max(max, sample);
+		}
+		this.avg = (float) (sum / (double) size);
+		this.table = null;
+		if (this.tabulated) {
+			float maxDistance = Math.max(this.avg - min, max - this.avg);
+			if (maxDistance > 0) {
+				this.table = new LogTable(maxDistance, LogTable.DEFAULT_SEGMENTS);
+			}
+		}
 	}
 
 }
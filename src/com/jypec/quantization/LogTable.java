@@ -0,0 +1,95 @@
+package com.jypec.quantization;
+
+/**
+ * Piecewise linear table of <code>log(1 + t)</code> over <code>[0, max]</code>, used by
+ * {@link LogPrequantization} to avoid calling {@link Math#log(double)} on every sample. <br>
+ * With <code>h = max / segments</code>, the interpolation error is at most 
+ * <code>h^2 / 8</code> (the second derivative of <code>log(1 + t)</code> is bounded by one),
+ * plus the rounding of the float result. With the default {@value #DEFAULT_SEGMENTS} segments
+ * and <code>max = 4</code> that is under <code>1.2e-7</code>, far below the quantization step
+ * of any usable bit depth
+ * @author Daniel
+ */
+public class LogTable {
+
+	/** Default number of segments of the table */
+	public static final int DEFAULT_SEGMENTS = 1 << 12;
+
+	private float max;
+	private float scale;
+	/** value at each node, and increment over the segment starting there */
+	private float[] values, deltas;
+
+
+	/**
+	 * @param max highest value of <code>t</code> to tabulate. Must be positive
+	 * @param segments number of segments the interval is split into
+	 */
+	public LogTable(float max, int segments) {
+		if (!(max > 0) || segments < 1) {
+			throw new IllegalArgumentException("The table must cover a non-empty interval with at least one segment");
+		}
+		this.max = max;
+		this.scale = segments / max;
+		this.values = new float[segments + 1];
+		this.deltas = new float[segments + 1]; //last one stays zero
+		double step = (double) max / segments;
+		for (int i = 0; i <= segments; i++) {
+			this.values[i] = (float) Math.log1p(i * step);
+		}
+		for (int i = 0; i < segments; i++) {
+			this.deltas[i] = this.values[i + 1] - this.values[i];
+		}
+	}
+
+	/**
+	 * @param t a value in <code>[0, max]</code>. Values over <code>max</code> are calculated exactly
+	 * @return <code>log(1 + t)</code> within the error bound given in the class description
+	 */
+	public float log1p(float t) {
+		if (t > this.max) {
+			return (float) Math.log(t + 1);
+		}
+		float position = t * this.scale;
+		int node = (int) position;
+		return this.values[node] + (position - node) * this.deltas[node];
+	}
+
+	/**
+	 * Calculates <code>sign(x - center) * log(1 + |x - center|)</code> for a run of samples, 
+	 * giving the same results as calling {@link #log1p(float)} on each one
+	 * @param center value subtracted from the samples
+	 * @param src where to read the samples from
+	 * @param srcOffset position of the first sample in src
+	 * @param dst where to put the results
+	 * @param dstOffset position of the first result in dst
+	 * @param length number of samples
+	 */
+	public void signedLog1p(float center, float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		float max = this.max, scale = this.scale;
+		float[] values = this.values, deltas = this.deltas;
+		for (int i = 0; i < length; i++) {
+			float difference = src[srcOffset + i] - center;
+			float t = Math.abs(difference);
+			float res;
+			if (t > max) {
+				res = (float) Math.log(t + 1);
+			} else {
+				float position = t * scale;
+				int node = (int) position;
+				res = values[node] + (position - node) * deltas[node];
+			}
+			dst[dstOffset + i] = difference < 0 ? -res : res;
+		}
+	}
+
+	/**
+	 * @return the maximum error of {@link #log1p(float)} with respect to the exact function,
+	 * not counting float rounding
+	 */
+	public double getErrorBound() {
+		double h = 1.0 / this.scale;
+		return h * h / 8;
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.jypec.quantization;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import org.ejml.data.FMatrixRMaj;
 
 import com.jypec.util.datastructures.IntegerMatrix;
@@ -12,8 +15,13 @@ import com.jypec.util.debug.Profiler;
  *
  */
 public class MatrixQuantizer {
+	
+	/** Minimum number of samples processed by each task of the bulk methods */
+	public static final int DEFAULT_THRESHOLD = 1 << 15;
 
 	private Quantizer quantizer;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int threshold = DEFAULT_THRESHOLD;
 	
 	/**
 	 * Create a matrix quantizer with an underlying Quantizer for the quantizing process.
@@ -63,5 +71,142 @@ public class MatrixQuantizer {
 		Profiler.getProfiler().profileEnd();
 	}
 	
+	/**
+	 * Quantizes the input directly into an array, splitting the work by rows
+	 * across the common {@link ForkJoinPool} if the input is big enough. 
+	 * Gives the same result as {@link #quantize(FMatrixRMaj, IntegerMatrix)}
+	 * @param input
+	 * @param output where to put the result, row-major with as many columns as the input
+	 * @param outputOffset position in <code>output</code> of the first sample
+	 */
+	public void quantize(FMatrixRMaj input, int[] output, int outputOffset) {
+		this.quantize(input, null, output, outputOffset);
+	}
+	
+	/**
+	 * Same as {@link PrequantizationTransformer#forwardTransform(FMatrixRMaj)} followed by
+	 * {@link #quantize(FMatrixRMaj, int[], int)}, but in a single pass over the input,
+	 * which is left untouched
+	 * @param input
+	 * @param pt prequantization applied to the samples before quantizing them (can be null)
+	 * @param output where to put the result, row-major with as many columns as the input
+	 * @param outputOffset position in <code>output</code> of the first sample
+	 */
+	public void quantize(FMatrixRMaj input, PrequantizationTransformer pt, int[] output, int outputOffset) {
+		Profiler.getProfiler().profileStart();
+		this.pool.invoke(new RowTask(input, pt, output, outputOffset, 0, input.getNumRows(), true));
+		Profiler.getProfiler().profileEnd();
+	}
+	
+	/**
+	 * Reverts {@link #quantize(FMatrixRMaj, int[], int)}
+	 * @param input quantized samples, row-major with as many columns as the output
+	 * @param inputOffset position in <code>input</code> of the first sample
+	 * @param output where the dequantized result is output
+	 */
+	public void dequantize(int[] input, int inputOffset, FMatrixRMaj output) {
+		this.dequantize(input, inputOffset, null, output);
+	}
+	
+	/**
+	 * Reverts {@link #quantize(FMatrixRMaj, PrequantizationTransformer, int[], int)}
+	 * @param input quantized samples, row-major with as many columns as the output
+	 * @param inputOffset position in <code>input</code> of the first sample
+	 * @param pt prequantization to revert after dequantizing (can be null)
+	 * @param output where the dequantized result is output
+	 */
+	public void dequantize(int[] input, int inputOffset, PrequantizationTransformer pt, FMatrixRMaj output) {
+		Profiler.getProfiler().profileStart();
+		this.pool.invoke(new RowTask(output, pt, input, inputOffset, 0, output.getNumRows(), false));
+		Profiler.getProfiler().profileEnd();
+	}
+	
+	/**
+	 * Quantizes a range of rows of the input
+	 * @param input
+	 * @param output where to put the result, row-major with as many columns as the input
+	 * @param outputOffset position in <code>output</code> of the first sample of the input (not of the range)
+	 * @param fromRow first row (inclusive)
+	 * @param toRow last row (exclusive)
+	 */
+	public void quantizeRows(FMatrixRMaj input, int[] output, int outputOffset, int fromRow, int toRow) {
+		int cols = input.getNumCols();
+		this.quantizer.normalizeAndQuantize(input.getData(), fromRow * cols, output, outputOffset + fromRow * cols, (toRow - fromRow) * cols);
+	}
+	
+	/**
+	 * Dequantizes a range of rows of the output
+	 * @param input quantized samples, row-major with as many columns as the output
+	 * @param inputOffset position in <code>input</code> of the first sample of the output (not of the range)
+	 * @param output
+	 * @param fromRow first row (inclusive)
+	 * @param toRow last row (exclusive)
+	 */
+	public void dequantizeRows(int[] input, int inputOffset, FMatrixRMaj output, int fromRow, int toRow) {
+		int cols = output.getNumCols();
+		this.quantizer.deQuantizeAndDenormalize(input, inputOffset + fromRow * cols, output.getData(), fromRow * cols, (toRow - fromRow) * cols);
+	}
+	
+	
+	/**
+	 * (De)quantizes a range of rows, splitting it in halves while big enough
+	 */
+	@SuppressWarnings("serial")
+	private class RowTask extends RecursiveAction {
+		private FMatrixRMaj matrix;
+		private PrequantizationTransformer pt;
+		private int[] array;
+		private int offset, fromRow, toRow;
+		private boolean quantize;
+
+		public RowTask(FMatrixRMaj matrix, PrequantizationTransformer pt, int[] array, int offset, int fromRow, int toRow, boolean quantize) {
+			this.matrix = matrix;
+			this.pt = pt;
+			this.array = array;
+			this.offset = offset;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.quantize = quantize;
+		}
+
+		@Override
+		protected void compute() {
+			int rows = toRow - fromRow;
+			if (rows < 2 || (long) rows * matrix.getNumCols() < 2 * (long) threshold) {
+				if (pt == null) {
+					if (quantize) {
+						quantizeRows(matrix, array, offset, fromRow, toRow);
+					} else {
+						dequantizeRows(array, offset, matrix, fromRow, toRow);
+					}
+				} else {
+					this.computeFused();
+				}
+				return;
+			}
+			int middle = fromRow + rows / 2;
+			invokeAll(new RowTask(matrix, pt, array, offset, fromRow, middle, quantize),
+					new RowTask(matrix, pt, array, offset, middle, toRow, quantize));
+		}
+		
+		/**
+		 * (Un)apply the prequantization one row at a time, right before quantizing
+		 * or after dequantizing it, so the row is still in cache
+		 */
+		private void computeFused() {
+			int cols = matrix.getNumCols();
+			float[] data = matrix.getData();
+			float[] line = quantize ? new float[cols] : null;
+			for (int i = fromRow; i < toRow; i++) {
+				if (quantize) {
+					pt.forward(data, i * cols, line, 0, cols);
+					quantizer.normalizeAndQuantize(line, 0, array, offset + i * cols, cols);
+				} else {
+					dequantizeRows(array, offset, matrix, i, i + 1);
+					pt.reverse(data, i * cols, data, i * cols, cols);
+				}
+			}
+		}
+	}
 	
 }
@@ -22,6 +22,20 @@ public class NonePrequantization extends PrequantizationTransformer {
 		return;
 	}
 
+	@Override
+	public void forward(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		if (src != dst || srcOffset != dstOffset) {
+			System.arraycopy(src, srcOffset, dst, dstOffset, length);
+		}
+	}
+	
+	@Override
+	public void reverse(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		if (src != dst || srcOffset != dstOffset) {
+			System.arraycopy(src, srcOffset, dst, dstOffset, length);
+		}
+	}
+	
 	/**
 	 * Constructor
 	 */
@@ -53,6 +53,34 @@ public abstract class PrequantizationTransformer {
 	 */
 	public abstract float reverse(float input);
 	
+	/**
+	 * Apply {@link #forward(float)} to a run of samples
+	 * @param src the samples
+	 * @param srcOffset first sample
+	 * @param dst where to put the transformed samples (can be <code>src</code>)
+	 * @param dstOffset where the first transformed sample goes
+	 * @param length number of samples
+	 */
+	public void forward(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			dst[dstOffset + i] = this.forward(src[srcOffset + i]);
+		}
+	}
+	
+	/**
+	 * Apply {@link #reverse(float)} to a run of samples
+	 * @param src the transformed samples
+	 * @param srcOffset first sample
+	 * @param dst where to put the original samples (can be <code>src</code>)
+	 * @param dstOffset where the first original sample goes
+	 * @param length number of samples
+	 */
+	public void reverse(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			dst[dstOffset + i] = this.reverse(src[srcOffset + i]);
+		}
+	}
+	
 	/**
 	 * Train this {@link PrequantizationTransformer} so it can analyze the data 
 	 * prior to transforming it with {@link #forwardTransform(FMatrixRMaj, int, int)}
@@ -138,9 +166,15 @@ public abstract class PrequantizationTransformer {
 				throw new IllegalArgumentException("Need at least the name of the prequantization algorithm");
 			}
 			
+			boolean tabulated = args.prequantizationArgs.length > 1 && args.prequantizationArgs[1].equalsIgnoreCase("lut");
+			if (tabulated && !args.prequantizationArgs[0].equalsIgnoreCase("log")) {
+				throw new UnsupportedOperationException("Only the log prequantization can be tabulated");
+			}
 			switch(args.prequantizationArgs[0].toLowerCase()) {
 			case "log":
-				return new LogPrequantization();
+				LogPrequantization log = new LogPrequantization();
+				log.setTabulated(tabulated);
+				return log;
 			case "sqrt":
 				return new SqrtPrequantization();
 			case "split":
@@ -1,5 +1,7 @@
 package com.jypec.quantization;
 
+import com.jypec.util.kernels.Kernels;
+
 /**
  * This class quantizes samples (from floats to integers in sign-magnitude form)
  * And dequantizes samples.
@@ -153,6 +155,33 @@ public class Quantizer {
 		return dequantized;
 	}
 	
+	/**
+	 * Same as calling {@link #normalizeAndQuantize(float)} over a run of samples
+	 * @param src the samples
+	 * @param srcOffset first sample
+	 * @param dst where the quantized samples are stored
+	 * @param dstOffset where the first quantized sample goes
+	 * @param length number of samples
+	 */
+	public void normalizeAndQuantize(float[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+		Kernels.get().quantize(src, srcOffset, dst, dstOffset, length, 
+				this.sampleLowerLimit, this.sampleIntervalLength, this.lowerGuard, this.upperGuard, 
+				this.delta, this.maxMagnitude, this.signMask);
+	}
+	
+	/**
+	 * Same as calling {@link #deQuantizeAndDenormalize(int)} over a run of samples
+	 * @param src the quantized samples
+	 * @param srcOffset first sample
+	 * @param dst where the recovered samples are stored
+	 * @param dstOffset where the first recovered sample goes
+	 * @param length number of samples
+	 */
+	public void deQuantizeAndDenormalize(int[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		Kernels.get().dequantize(src, srcOffset, dst, dstOffset, length, 
+				this.sampleLowerLimit, this.sampleIntervalLength, this.delta, this.reconstructionOffset, this.signMask);
+	}
+	
 	/**
 	 * @return the number of MAGNITUDE bits this quantizer uses when returning values
 	 */
@@ -5,6 +5,7 @@ import org.ejml.dense.row.CommonOps_FDRM;
 import org.ejml.simple.SimpleMatrix;
 
 import com.jypec.distortion.ImageComparisons;
+import com.jypec.util.kernels.Kernels;
 
 /**
  * Useful operations not native to EJML
@@ -169,18 +170,38 @@ public class EJMLExtensions {
 		float[] minMax = new float[2];
 		minMax[0] = Integer.MAX_VALUE;
 		minMax[1] = Integer.MIN_VALUE;
-		for (int i = 0; i < h1.getNumRows(); i++) {
-			for (int j = 0; j < h1.getNumCols(); j++) {
-				float sample = h1.get(i, j);
-				if (minMax[0] > sample) {
-					minMax[0] = sample;
-				}
-				if (minMax[1] < sample) {
-					minMax[1] = sample;
-				}
+		Kernels.get().minMax(h1.getData(), 0, h1.getNumElements(), minMax);
+		return minMax;
+	}
+	
+	/**
+	 * Clamps the samples to the given range and finds the minimum and maximum of the
+	 * result in the same pass. Same as clamping and then calling {@link #minMax(FMatrixRMaj)}
+	 * @param h1 the matrix, modified in place
+	 * @param lower samples under this value are set to it
+	 * @param upper samples over this value are set to it
+	 * @return the minimum and maximum values of the clamped matrix, in that order
+	 */
+	public static float[] clampAndMinMax(FMatrixRMaj h1, float lower, float upper) {
+		float min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		float[] data = h1.getData();
+		for (int i = 0; i < h1.getNumElements(); i++) {
+			float sample = data[i];
+			if (sample < lower) {
+				sample = lower;
+				data[i] = sample;
+			} else if (sample > upper) {
+				sample = upper;
+				data[i] = sample;
+			}
+			if (min > sample) {
+				min = sample;
+			}
+			if (max < sample) {
+				max = sample;
 			}
 		}
-		return minMax;
+		return new float[]{min, max};
 	}
 	
 	/**
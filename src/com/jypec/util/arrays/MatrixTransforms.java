@@ -4,6 +4,8 @@ import java.util.List;
 
 import org.ejml.data.FMatrixRMaj;
 
+import com.jypec.util.kernels.Kernels;
+
 /**
  * @author Daniel
  * Useful matrix transforms are written here
@@ -105,14 +107,7 @@ public class MatrixTransforms {
 		float initialRange = max - min;
 		float targetRange = targetMax - targetMin;
 		//recalculate every sample
-		for (int i = 0; i < source.getNumRows(); i++) {
-			for (int j = 0; j < source.getNumCols(); j++) {
-				float value = source.get(i, j);
-				value = ((value - min) / initialRange);		//value is in [0, 1]
-				value = value * targetRange + targetMin;	//value is in targetMin, targetMax
-				source.set(i, j, value);
-			}
-		}
+		Kernels.get().normalize(source.getData(), 0, source.getNumElements(), min, initialRange, targetMin, targetRange);
 		
 		return source;
 	}
@@ -50,6 +50,27 @@ public class BitInputStream extends InputStream {
 	public int read() throws IOException {
 		return ((int) this.readByte()) & 0xff;
 	}
+
+	/**
+	 * When the stream is byte aligned, bytes are read straight from the source, 
+	 * returning -1 once it is over as {@link InputStream#read(byte[], int, int)} requires
+	 * (instead of failing like {@link #read()} does)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (this.availableBits != 0) {
+			return super.read(b, off, len);
+		}
+		int res = this.source.read(b, off, len);
+		for (int i = Math.max(0, res - 4); i < res; i++) {
+			this.lastBitsRead <<= 8;
+			this.lastBitsRead |= b[off + i] & 0xff;
+		}
+		if (res > 0) {
+			this.bitsInput += res << 3;
+		}
+		return res;
+	}
 	
 	
 
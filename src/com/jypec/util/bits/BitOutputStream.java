@@ -5,11 +5,26 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 /**
- * Wraps around an output stream providing bit-wise functionality
+ * Wraps around an output stream providing bit-wise functionality. <br>
+ * Bits are accumulated in a 64-bit word and moved to an internal byte buffer 
+ * as soon as they form full bytes. By default, the buffer is handed to the 
+ * underlying stream at the end of every write, so that the stream always contains 
+ * all full bytes written so far. If constructed with {@link #BitOutputStream(OutputStream, int)},
+ * bytes are only handed over when the buffer fills up, or on {@link #flush()} or {@link #close()},
+ * which is much faster for unbuffered streams such as files. <br>
+ * In both cases the bits that do not form a full byte are kept until completed
+ * or padded (e.g: with {@link #paddingFlush()})
  * @author Daniel
  * @see BitInputStream
  */
 public class BitOutputStream extends OutputStream {
+	
+	/** Default size for the internal buffer when buffering is requested */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	/** Size of the internal buffer when writing through to the underlying stream */
+	private static final int WRITE_THROUGH_BUFFER_SIZE = 1 << 10;
+	/** Maximum number of bits that can be added to the accumulator at once */
+	private static final int MAX_ACCUMULATED_BITS = Long.SIZE - Byte.SIZE;
 
 	@Override
 	/**
@@ -17,6 +32,7 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException
 	 */
 	public void flush() throws IOException {
+		this.drainBuffer();
 		this.stream.flush();
 	}
 	
@@ -30,8 +46,8 @@ public class BitOutputStream extends OutputStream {
 			throw new IllegalArgumentException("Can only pad to 8bytes max");
 		}
 		//first pad the last byte
-		if (this.bufferSize > 0) {
-			this.writeNBitNumber(0, 8 - this.bufferSize);
+		if (this.accumulatedBits > 0) {
+			this.writeNBitNumber(0, 8 - this.accumulatedBits);
 		}
 		//now pad to byteAmount
 		long bytesOutput = this.bitsOutput / 8;
@@ -48,14 +64,19 @@ public class BitOutputStream extends OutputStream {
 	 */
 	public void paddingFlush() throws IOException {
 		//flush remaining bits padding with zeroes
-		if (this.bufferSize > 0) {
-			this.writeNBitNumber(0, 8 - this.bufferSize);
+		if (this.accumulatedBits > 0) {
+			this.writeNBitNumber(0, 8 - this.accumulatedBits);
 		}
 		this.flush();
 	}
 
+	/**
+	 * Closes the underlying stream, after handing over all full bytes. Bits
+	 * that do not make up a full byte are discarded
+	 */
 	@Override
 	public void close() throws IOException {
+		this.drainBuffer();
 		this.stream.close();
 	}
 
@@ -64,23 +85,117 @@ public class BitOutputStream extends OutputStream {
 		this.writeByte((byte) b);
 	}
 	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		this.writeBytes(b, off, len);
+	}
+	
 	
 	private OutputStream stream;
-	private int buffer;
-	private int bufferSize;
+	/** Pending bits (less than a byte after every write), right aligned */
+	private long accumulator;
+	private int accumulatedBits;
+	/** Full bytes not yet handed to the stream */
+	private byte[] buffer;
+	private int bufferPosition;
+	/** If true, the buffer is emptied after every write */
+	private boolean writeThrough;
+	/** Temporary storage for converting arrays to bytes */
+	private byte[] conversionBuffer;
 	private long bitsOutput;
 	
 	/**
-	 * Create a bit output wrapper around the given outputstream
+	 * Create a bit output wrapper around the given outputstream. Every full byte
+	 * is sent to the stream as soon as the write that completed it returns
 	 * @param stream
 	 */
 	public BitOutputStream(OutputStream stream) {
+		this(stream, WRITE_THROUGH_BUFFER_SIZE, true);
+	}
+	
+	/**
+	 * Create a bit output wrapper around the given outputstream, which only 
+	 * sends data to it when the given number of bytes has been written, or on 
+	 * {@link #flush()} and {@link #close()}
+	 * @param stream
+	 * @param bufferSize size of the internal buffer (in bytes)
+	 */
+	public BitOutputStream(OutputStream stream, int bufferSize) {
+		this(stream, bufferSize, false);
+	}
+	
+	private BitOutputStream(OutputStream stream, int bufferSize, boolean writeThrough) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
 		this.stream = stream;
-		this.buffer = 0;
-		this.bufferSize = 0;
+		this.writeThrough = writeThrough;
+		this.accumulator = 0;
+		this.accumulatedBits = 0;
 		this.bitsOutput = 0;
+		//streams with no destination (e.g: tree nodes) never use the buffer
+		if (stream != null) {
+			this.buffer = new byte[bufferSize];
+		}
+		this.bufferPosition = 0;
+	}
+	
+	/**
+	 * Hand the buffered bytes over to the underlying stream
+	 * @throws IOException
+	 */
+	private void drainBuffer() throws IOException {
+		if (this.bufferPosition > 0) {
+			this.stream.write(this.buffer, 0, this.bufferPosition);
+			this.bufferPosition = 0;
+		}
+	}
+	
+	/**
+	 * Called at the end of every write, drains the buffer if writing through
+	 * @throws IOException
+	 */
+	private void endWrite() throws IOException {
+		if (this.writeThrough) {
+			this.drainBuffer();
+		}
+	}
+	
+	/**
+	 * Puts the given byte in the internal buffer, draining it if full
+	 * @param b
+	 * @throws IOException
+	 */
+	private void bufferByte(int b) throws IOException {
+		this.buffer[this.bufferPosition++] = (byte) b;
+		if (this.bufferPosition == this.buffer.length) {
+			this.drainBuffer();
+		}
+	}
+	
+	/**
+	 * Add up to {@link #MAX_ACCUMULATED_BITS} bits to the accumulator, moving 
+	 * all full bytes to the buffer
+	 * @param bits the bits to be added (right aligned)
+	 * @param quantity number of bits to be added
+	 * @throws IOException
+	 */
+	private void accumulate(long bits, int quantity) throws IOException {
+		this.accumulator = (this.accumulator << quantity) | (bits & (-1l >>> (Long.SIZE - quantity)));
+		this.accumulatedBits += quantity;
+		while (this.accumulatedBits >= Byte.SIZE) {
+			this.accumulatedBits -= Byte.SIZE;
+			this.bufferByte((int) (this.accumulator >>> this.accumulatedBits));
+		}
+		this.bitsOutput += quantity;
 	}
 	
+	/**
+	 * @return true if there are no pending bits, so the next write starts at a byte boundary
+	 */
+	protected boolean isByteAligned() {
+		return this.accumulatedBits == 0;
+	}
 	
 
 	/**
@@ -92,17 +207,7 @@ public class BitOutputStream extends OutputStream {
 		if (bit != 0 && bit != 1) {
 			throw new IllegalStateException("Whoops @FIFOBitStream.putBit");
 		}
-		bit = Bit.normalize(bit);
-		
-		this.buffer <<= 1;
-		this.buffer |= bit;
-		this.bufferSize ++;
-		if (this.bufferSize == 8) {
-			this.stream.write(this.buffer);
-			this.buffer = 0;
-			this.bufferSize = 0;
-		}
-		this.bitsOutput++;
+		this.writeBits(bit, 1, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
 	}
 
 
@@ -123,22 +228,60 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException 
 	 */
 	public void writeBits(long bits, int quantity, BitStreamConstants ordering) throws IOException {
-		switch (ordering) {
-		case ORDERING_LEFTMOST_FIRST:
-			//adjust the bits so that the first one is in the leftmost position
-			bits <<= Long.SIZE - quantity;
-			for (int i = 0; i < quantity; i++) {
-				writeBit(Bit.fromLong(bits & BitStreamConstants.LONG_LEFT_BIT_MASK));
-				bits <<= 1;
+		if (quantity <= 0) {
+			return;
+		}
+		if (ordering == BitStreamConstants.ORDERING_RIGHTMOST_FIRST) {
+			//the rightmost bit goes first, so reverse them and write the leftmost first
+			bits = Long.reverse(bits) >>> (Long.SIZE - quantity);
+		}
+		if (quantity > MAX_ACCUMULATED_BITS) {
+			this.accumulate(bits >>> Integer.SIZE, quantity - Integer.SIZE);
+			this.accumulate(bits, Integer.SIZE);
+		} else {
+			this.accumulate(bits, quantity);
+		}
+		this.endWrite();
+	}
+	
+	/**
+	 * Write the given bytes. If the stream is byte aligned they are directly
+	 * copied to the output, otherwise they are shifted into place
+	 * @param array where to take the bytes from
+	 * @param offset index of the first byte to write
+	 * @param length number of bytes to write
+	 * @throws IOException
+	 */
+	public void writeBytes(byte[] array, int offset, int length) throws IOException {
+		if (this.accumulatedBits == 0) {
+			while (length > 0) {
+				int chunk = Math.min(length, this.buffer.length - this.bufferPosition);
+				System.arraycopy(array, offset, this.buffer, this.bufferPosition, chunk);
+				this.bufferPosition += chunk;
+				if (this.bufferPosition == this.buffer.length) {
+					this.drainBuffer();
+				}
+				offset += chunk;
+				length -= chunk;
+				this.bitsOutput += chunk * Byte.SIZE;
 			}
-			break;
-		case ORDERING_RIGHTMOST_FIRST:
-			for (int i = 0; i < quantity; i++) {
-				writeBit(Bit.fromLong(bits & BitStreamConstants.LONG_RIGHT_BIT_MASK));
-				bits >>= 1;
+		} else {
+			for (int i = offset; i < offset + length; i++) {
+				this.accumulate(array[i], Byte.SIZE);
 			}
-			break;
 		}
+		this.endWrite();
+	}
+	
+	/**
+	 * @param size
+	 * @return a temporary buffer of at least the given size, reused between calls
+	 */
+	private byte[] getConversionBuffer(int size) {
+		if (this.conversionBuffer == null || this.conversionBuffer.length < size) {
+			this.conversionBuffer = new byte[size];
+		}
+		return this.conversionBuffer;
 	}
 	
 	
@@ -157,12 +300,7 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException 
 	 */
 	public void writeByte(byte i) throws IOException {
-		if (this.bufferSize == 0) {
-			this.stream.write(i);
-			this.bitsOutput += 8;
-		} else {
-			this.writeNBitNumber(i, Byte.SIZE);
-		}
+		this.writeBits(i, Byte.SIZE, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
 	}
 	
 	/**
@@ -191,10 +329,7 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException 
 	 */
 	public void writeInt(int i) throws IOException {
-		this.writeByte((byte) (i >> 24));
-		this.writeByte((byte) (i >> 16));
-		this.writeByte((byte) (i >> 8));
-		this.writeByte((byte) i);
+		this.writeBits(i, Integer.SIZE, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
 	}
 	
 	/**
@@ -250,8 +385,15 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException 
 	 */
 	public void writeDoubleArray(double[] array, int length) throws IOException {
-		for (int i = 0; i < length; i++) {
-			this.writeDouble(array[i]);
+		int chunk = Math.min(length, WRITE_THROUGH_BUFFER_SIZE);
+		byte[] bytes = this.getConversionBuffer(chunk * Double.BYTES);
+		for (int start = 0; start < length; start += chunk) {
+			int end = Math.min(start + chunk, length);
+			for (int i = start; i < end; i++) {
+				long bits = Double.doubleToLongBits(array[i]);
+				BitTwiddling.putLong(bits, bytes, (i - start) * Double.BYTES);
+			}
+			this.writeBytes(bytes, 0, (end - start) * Double.BYTES);
 		}
 	}
 
@@ -262,8 +404,14 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException 
 	 */
 	public void writeFloatArray(float[] array, int length) throws IOException {
-		for (int i = 0; i < length; i++) {
-			this.writeFloat(array[i]);
+		int chunk = Math.min(length, WRITE_THROUGH_BUFFER_SIZE);
+		byte[] bytes = this.getConversionBuffer(chunk * Float.BYTES);
+		for (int start = 0; start < length; start += chunk) {
+			int end = Math.min(start + chunk, length);
+			for (int i = start; i < end; i++) {
+				BitTwiddling.putInt(Float.floatToIntBits(array[i]), bytes, (i - start) * Float.BYTES);
+			}
+			this.writeBytes(bytes, 0, (end - start) * Float.BYTES);
 		}
 	}
 
@@ -274,9 +422,7 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException 
 	 */
 	public void writeByteArray(byte[] array, int length) throws IOException {
-		for (int i = 0; i < length; i++) {
-			this.writeByte(array[i]);
-		}
+		this.writeBytes(array, 0, length);
 	}
 	
 	/**
@@ -286,8 +432,14 @@ public class BitOutputStream extends OutputStream {
 	 * @throws IOException
 	 */
 	public void writeIntArray(int[] array, int length) throws IOException {
-		for (int i = 0; i < length; i++) {
-			this.writeInt(array[i]);
+		int chunk = Math.min(length, WRITE_THROUGH_BUFFER_SIZE);
+		byte[] bytes = this.getConversionBuffer(chunk * Integer.BYTES);
+		for (int start = 0; start < length; start += chunk) {
+			int end = Math.min(start + chunk, length);
+			for (int i = start; i < end; i++) {
+				BitTwiddling.putInt(array[i], bytes, (i - start) * Integer.BYTES);
+			}
+			this.writeBytes(bytes, 0, (end - start) * Integer.BYTES);
 		}
 	}
 	
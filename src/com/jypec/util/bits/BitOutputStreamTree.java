@@ -43,17 +43,32 @@ public class BitOutputStreamTree extends BitOutputStream {
 	private BitPipe bitPipe;
 	/** Internal {@link BitInputStream} for outputting the bits sent here */
 	private BitInputStream bis;
+	/** If not null, shared by all nodes of the tree to move their bits to disk
+	 * when too many are buffered */
+	private BitPipeSpillArea spillArea;
+	/** True if this node created {@link #spillArea} and must release it */
+	private boolean ownsSpillArea;
 	
 	
 	/********************************/
 	/**	CONSTRUCTORS/INITIALIZERS	*/
 	/********************************/
-	private BitOutputStreamTree(OutputStream destination, String name, boolean spawnChildren) {
+	private BitOutputStreamTree(OutputStream destination, String name, boolean spawnChildren, BitPipeSpillArea spillArea) {
 		super(destination);
+		this.initialize(destination, name, spawnChildren, spillArea);
+	}
+	
+	private BitOutputStreamTree(OutputStream destination, int bufferSize, String name, boolean spawnChildren) {
+		super(destination, bufferSize);
+		this.initialize(destination, name, spawnChildren, null);
+	}
+	
+	private void initialize(OutputStream destination, String name, boolean spawnChildren, BitPipeSpillArea spillArea) {
 		this.name = name;
 		this.destination = destination;
+		this.spillArea = spillArea;
 		if (destination == null) { //do not bother creating if we are not using it
-			this.bitPipe = new BitPipe();
+			this.bitPipe = spillArea == null ? new BitPipe() : spillArea.createPipe();
 			this.createBis();
 		}
 		this.spawnChildren = spawnChildren;
@@ -65,14 +80,28 @@ public class BitOutputStreamTree extends BitOutputStream {
 	 * @param spawnChildren if this tree should spawn children (less efficient)
 	 */
 	public BitOutputStreamTree(String name, boolean spawnChildren) {
-		this(null, name, spawnChildren);
+		this(null, name, spawnChildren, null);
+	}
+	
+	/**
+	 * Build a bstn that keeps at most (approximately) the given number of bits
+	 * in memory across all its nodes. When more are buffered, full words are moved 
+	 * to a temporary file (see {@link BitPipeSpillArea}), which is deleted
+	 * when calling {@link #close()} on this tree
+	 * @param name the name of this tree
+	 * @param spawnChildren if this tree should spawn children (less efficient)
+	 * @param spillThreshold number of bits to buffer in memory before spilling to disk
+	 */
+	public BitOutputStreamTree(String name, boolean spawnChildren, long spillThreshold) {
+		this(null, name, spawnChildren, new BitPipeSpillArea(spillThreshold));
+		this.ownsSpillArea = true;
 	}
 	
 	/**
 	 * same as calling {@link #BitOutputStreamTree(null, false)}
 	 */
 	public BitOutputStreamTree() {
-		this(null, null, false);
+		this(null, null, false, null);
 	}
 	
 	/**
@@ -81,7 +110,17 @@ public class BitOutputStreamTree extends BitOutputStream {
 	 * @param destination
 	 */
 	public BitOutputStreamTree(OutputStream destination) {
-		this(destination, null, false);
+		this(destination, null, false, null);
+	}
+	
+	/**
+	 * Same as {@link #BitOutputStreamTree(OutputStream)}, but buffering the output
+	 * as in {@link BitOutputStream#BitOutputStream(OutputStream, int)}
+	 * @param destination
+	 * @param bufferSize
+	 */
+	public BitOutputStreamTree(OutputStream destination, int bufferSize) {
+		this(destination, bufferSize, null, false);
 	}
 	
 	private void createBis() {
@@ -95,6 +134,24 @@ public class BitOutputStreamTree extends BitOutputStream {
 				this.lastBitsRead += bit;
 				return bit;
 			}
+			
+			@Override
+			public long readLongBits(int quantity, BitStreamConstants ordering) throws IOException {
+				if (quantity <= 0) {
+					return 0;
+				}
+				long bits = bitPipe.getBits(quantity);
+				this.lastBitsRead = (int) ((((long) this.lastBitsRead) << (quantity - 1) << 1) | bits);
+				if (ordering == BitStreamConstants.ORDERING_RIGHTMOST_FIRST) {
+					bits = Long.reverse(bits) >>> (Long.SIZE - quantity);
+				}
+				return bits;
+			}
+			
+			@Override
+			public int readNBitNumber(int quantity, BitStreamConstants ordering) throws IOException {
+				return (int) this.readLongBits(quantity, ordering);
+			}
 
 	        @Override
 	        public byte readByte() throws IOException {
@@ -139,6 +196,40 @@ public class BitOutputStreamTree extends BitOutputStream {
 		bitPipe.putBit(bit);
 	}
 
+	@Override
+	public void writeBits(long bits, int quantity, BitStreamConstants ordering) throws IOException {
+		if (this.destination != null) {
+			super.writeBits(bits, quantity, ordering);
+			return;
+		}
+		
+		if (hasChildren()) {
+			throw new IllegalStateException("You shouldn't add bits to a tree node if it has children, since it is traversed in preorder and this would break it");
+		}
+		if (ordering == BitStreamConstants.ORDERING_RIGHTMOST_FIRST && quantity > 0) {
+			bits = Long.reverse(bits) >>> (Long.SIZE - quantity);
+		}
+		bitPipe.putBits(bits, quantity);
+	}
+	
+	@Override
+	public void writeBytes(byte[] array, int offset, int length) throws IOException {
+		if (this.destination != null) {
+			super.writeBytes(array, offset, length);
+			return;
+		}
+		
+		//pack up to eight bytes at a time
+		for (int i = offset; i < offset + length; i += Long.BYTES) {
+			int bytes = Math.min(Long.BYTES, offset + length - i);
+			long word = 0;
+			for (int j = 0; j < bytes; j++) {
+				word = (word << Byte.SIZE) | (array[i + j] & 0xff);
+			}
+			this.writeBits(word, bytes * Byte.SIZE, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
+		}
+	}
+
 	@Override
 	public void writeByte(byte i) throws IOException {
 		if (this.destination != null) {
@@ -167,6 +258,8 @@ public class BitOutputStreamTree extends BitOutputStream {
 	public void close() throws IOException {
 		if (this.destination != null) {
 			super.close();
+		} else if (this.ownsSpillArea) {
+			this.spillArea.close();
 		}
 	}
 	/********************************/
@@ -246,7 +339,7 @@ public class BitOutputStreamTree extends BitOutputStream {
 		if (this.children == null) {
 			this.children = new ArrayList<BitOutputStreamTree>();
 		}
-		BitOutputStreamTree bstn = new BitOutputStreamTree(name, this.spawnChildren);
+		BitOutputStreamTree bstn = new BitOutputStreamTree(null, name, this.spawnChildren, this.spillArea);
 		this.children.add(bstn);
 		return bstn;
 	}
@@ -284,9 +377,7 @@ public class BitOutputStreamTree extends BitOutputStream {
 	 * @throws IOException 
 	 */
 	public void dumpInBitOutputStream(BitOutputStream target) throws IOException {
-		while (!this.bitPipe.isEmpty()) {
-			target.writeBit(this.bitPipe.getBitAsInt());
-		}
+		this.bitPipe.transferTo(target);
 		if (this.hasChildren()) {
 			for (BitOutputStreamTree bstn: this.children) {
 				bstn.dumpInBitOutputStream(target);
@@ -1,45 +1,48 @@
 package com.jypec.util.bits;
 
-import java.util.LinkedList;
+import java.io.IOException;
 
 /**
- * Queue for bits
+ * Queue for bits. <br>
+ * Bits are stored in a growable ring buffer of longs, so that the memory
+ * used is close to the number of bits stored (instead of one object per word),
+ * and so that runs of up to 64 bits can be put in and taken out at once
  * @author Daniel
  *
  */
 public class BitPipe {
 
-	private static final int LEFTMOST_BIT_MASK = 0x1 << (Integer.SIZE - 1);
-	
-	//where to store bits if it gets too big
-	private LinkedList<Integer> storage;
-	//output is where we are taking bits from, input where we are putting them in
-	//bits might be taken from the input if they are asked for before the whole input fills up
-	private int output, input;
-	//bits left in the output (to be output)
-	//and bits left in the input (to be filled)
-	private int outputLeft, inputLeft;
-	//current size (number of bits stored)
-	private long size;
-		
-	
+	/** Number of words the pipe starts with. Kept low since many pipes store few bits */
+	private static final int INITIAL_CAPACITY = 2;
+	private static final int WORD_SIZE = Long.SIZE;
+	private static final int WORD_SHIFT = 6;
+	private static final int WORD_OFFSET_MASK = WORD_SIZE - 1;
+
+	//where to store bits. Its length is always a power of two
+	private long[] storage;
+	private int storageMask;
+	//output is where we are taking bits from, input where we are putting them in.
+	//both are absolute bit positions, wrapped around the storage when accessing it
+	private long output, input;
+
+
 	/**
 	 * Create a BitPipe
 	 */
 	public BitPipe() {
-		this.storage = new LinkedList<Integer>();
-		this.size = 0;
-		this.outputLeft = 0;
-		this.inputLeft = Integer.SIZE;
+		this.storage = new long[INITIAL_CAPACITY];
+		this.storageMask = INITIAL_CAPACITY - 1;
+		this.output = 0;
+		this.input = 0;
 	}
-	
+
 	/**
 	 * @param bit the bit to put
 	 */
 	public void putBit(Bit bit) {
 		this.unsafePutBit(bit.toInteger());
 	}
-	
+
 	/**
 	 * @param bit the bit (in integer form) to put
 	 */
@@ -50,94 +53,173 @@ public class BitPipe {
 		bit = Bit.normalize(bit);
 		this.unsafePutBit(bit);
 	}
-	
+
 	/**
 	 * @param bit puts the given int as a bit assuming it is either
 	 * a 0x0 or a 0x1, without checks
 	 */
 	public void unsafePutBit(int bit) {
-		//if there is space in the input
-		if (inputLeft > 0) {
-			input <<= 1;
-			input += bit;
-			inputLeft--;
-		//else push a value to the queue and restart the input
+		this.putBits(bit, 1);
+	}
+
+	/**
+	 * Puts the given bits in the pipe, leftmost first
+	 * @param bits where to take the bits from (from the LSBs)
+	 * @param quantity number of bits to put (0 to 64)
+	 */
+	public void putBits(long bits, int quantity) {
+		if (quantity <= 0) {
+			return;
+		}
+		this.ensureCapacity(quantity);
+		//left align the bits so that they are easily placed
+		bits <<= WORD_SIZE - quantity;
+		int offset = (int) (input & WORD_OFFSET_MASK);
+		int index = (int) (input >>> WORD_SHIFT) & storageMask;
+		if (offset == 0) {
+			//new word, overwrite whatever was there before
+			storage[index] = bits;
 		} else {
-			storage.addLast(input);
-			input = bit;
-			inputLeft = Integer.SIZE - 1;
+			storage[index] |= bits >>> offset;
+			if (offset + quantity > WORD_SIZE) {
+				storage[(index + 1) & storageMask] = bits << (WORD_SIZE - offset);
+			}
 		}
-		this.size++;
+		this.input += quantity;
 	}
-	
+
+	/**
+	 * Grow the storage if the given number of bits do not fit
+	 * @param quantity
+	 */
+	private void ensureCapacity(int quantity) {
+		//one extra word is needed when the output is not word aligned
+		long capacity = ((long) storage.length - 1) << WORD_SHIFT;
+		if (this.storedBits() + quantity <= capacity) {
+			return;
+		}
+		this.relocate(storage.length << 1);
+	}
+
+	/**
+	 * Shrink the storage to the smallest capacity that holds the bits currently in the pipe,
+	 * so that the memory of bits taken out of it in bulk is released
+	 */
+	protected void trimToSize() {
+		long words = ((input + WORD_OFFSET_MASK) >>> WORD_SHIFT) - (output >>> WORD_SHIFT) + 1;
+		int length = INITIAL_CAPACITY;
+		while (length < words) {
+			length <<= 1;
+		}
+		if (length < storage.length) {
+			this.relocate(length);
+		}
+	}
+
+	/**
+	 * Move the stored bits to a new storage array of the given length, starting at its first word
+	 * @param length a power of two, big enough for the stored bits
+	 */
+	private void relocate(int length) {
+		long[] newStorage = new long[length];
+		int first = (int) (output >>> WORD_SHIFT);
+		int words = (int) (((input + WORD_OFFSET_MASK) >>> WORD_SHIFT) - (output >>> WORD_SHIFT));
+		for (int i = 0; i < words; i++) {
+			newStorage[i] = storage[(first + i) & storageMask];
+		}
+		long size = this.storedBits();
+		this.storage = newStorage;
+		this.storageMask = newStorage.length - 1;
+		this.output &= WORD_OFFSET_MASK;
+		this.input = this.output + size;
+	}
+
 	/**
 	 * @return the next bit in this pipe
 	 */
 	public Bit getBit() {
 		return Bit.fromInteger(getBitAsInt());
 	}
-	
+
 	/**
 	 * @return the next bit in this pipe, as a 0x0 or 0x1
 	 */
 	public int getBitAsInt() {
-		int res;
-		//check if there are bits in the output
-		if (outputLeft > 0) {
-			res = removeBitFromOutput();
-		}
-		//check if there are bits in the intermediate storage
-		else if (!storage.isEmpty()) {
-			output = storage.removeFirst();
-			outputLeft = Integer.SIZE;
-			res = removeBitFromOutput();
-		}
-		//check if there are bits in the input
-		else if (inputLeft < Integer.SIZE) {
-			res = removeBitFromInput();
+		return (int) this.getBits(1);
+	}
+
+	/**
+	 * Takes the given number of bits out of the pipe
+	 * @param quantity number of bits (0 to 64)
+	 * @return the bits, leftmost being the first that came out of the pipe,
+	 * in the LSBs of the result
+	 */
+	public long getBits(int quantity) {
+		if (quantity <= 0) {
+			return 0;
 		}
-		//nothing to return, throw exception
-		else {
+		if (quantity > this.storedBits()) {
 			throw new IndexOutOfBoundsException();
 		}
-		//return the bit
-		return res;
+		int offset = (int) (output & WORD_OFFSET_MASK);
+		int index = (int) (output >>> WORD_SHIFT) & storageMask;
+		long word = storage[index] << offset;
+		if (offset + quantity > WORD_SIZE) {
+			word |= storage[(index + 1) & storageMask] >>> (WORD_SIZE - offset);
+		}
+		this.output += quantity;
+		return word >>> (WORD_SIZE - quantity);
 	}
-	
+
 	/**
-	 * Removes and returns the leftmost bit from the output
-	 * @return
+	 * Empties this pipe, sending all of its bits to the given one
+	 * @param target
 	 */
-	private int removeBitFromOutput() {
-		outputLeft--;
-		int temp = output & LEFTMOST_BIT_MASK;
-		output <<= 1;
-		this.size--;
-		return Bit.normalize(temp);
+	public void transferTo(BitPipe target) {
+		while (!this.isEmpty()) {
+			int quantity = (int) Math.min(WORD_SIZE, this.getNumberOfBits());
+			target.putBits(this.getBits(quantity), quantity);
+		}
 	}
-	
+
 	/**
-	 * Removes and returns the leftmost (first to come in) element from the input
-	 * @return
+	 * Empties this pipe, sending all of its bits to the given stream
+	 * @param target
+	 * @throws IOException
 	 */
-	private int removeBitFromInput() {
-		int temp = input & (0x1 << (Integer.SIZE - 1 - inputLeft));
-		inputLeft++;
-		this.size--;
-		return Bit.normalize(temp);
+	public void transferTo(BitOutputStream target) throws IOException {
+		while (!this.isEmpty()) {
+			int quantity = (int) Math.min(WORD_SIZE, this.getNumberOfBits());
+			target.writeBits(this.getBits(quantity), quantity, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
+		}
 	}
-	
+
 	/**
 	 * @return the number of bits stored in this pipe
 	 */
 	public long getNumberOfBits() {
-		return this.size;
+		return this.storedBits();
+	}
+	
+	/**
+	 * @return the number of bits of memory currently allocated to hold this pipe's bits
+	 */
+	public long getCapacity() {
+		return ((long) this.storage.length) << WORD_SHIFT;
 	}
 	
+	/**
+	 * @return the number of bits held in the ring buffer. Not overridable
+	 * so that subclasses storing bits elsewhere do not break the buffer logic
+	 */
+	private long storedBits() {
+		return this.input - this.output;
+	}
+
 	/**
 	 * @return true if the pipe is empty
 	 */
 	public boolean isEmpty() {
-		return this.size == 0;
+		return this.input == this.output;
 	}
 }
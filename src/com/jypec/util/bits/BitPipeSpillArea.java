@@ -0,0 +1,186 @@
+package com.jypec.util.bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scratch area shared by a group of {@link SpillingBitPipe}s. <br>
+ * Keeps track of the number of bits buffered in memory by all of them, and when
+ * that number goes over a threshold, moves their full words to a temporary file,
+ * from where they are read back when the pipes are emptied. The file is only
+ * created if the threshold is ever reached, and deleted on {@link #close()}
+ * @author Daniel
+ */
+public class BitPipeSpillArea {
+
+	/** Default number of bits kept in memory before spilling (128MiB) */
+	public static final long DEFAULT_SPILL_THRESHOLD = 1L << 30;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private long threshold;
+	private long bufferedBits;
+	private List<SpillingBitPipe> pipes;
+
+	private File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private ByteBuffer writeBuffer;
+	/** position in the file where the next word will be written */
+	private long writePosition;
+
+
+	/**
+	 * Create a spill area
+	 * @param threshold number of bits that can be buffered in memory before
+	 * spilling them to disk
+	 */
+	public BitPipeSpillArea(long threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold cannot be negative");
+		}
+		this.threshold = threshold;
+		this.bufferedBits = 0;
+		this.pipes = new ArrayList<SpillingBitPipe>();
+		this.writePosition = 0;
+	}
+
+	/**
+	 * @return a new pipe whose bits are accounted for (and spilled) in this area
+	 */
+	public SpillingBitPipe createPipe() {
+		SpillingBitPipe pipe = new SpillingBitPipe(this);
+		this.pipes.add(pipe);
+		return pipe;
+	}
+
+	/**
+	 * Called by the pipes when bits are put in memory
+	 * @param quantity
+	 */
+	void bitsBuffered(int quantity) {
+		this.bufferedBits += quantity;
+		if (this.bufferedBits > this.threshold) {
+			this.spillAll();
+		}
+	}
+
+	/**
+	 * Called by the pipes when bits are taken out of memory
+	 * @param quantity
+	 */
+	void bitsReleased(long quantity) {
+		this.bufferedBits -= quantity;
+	}
+
+	/**
+	 * @return the number of bits currently buffered in memory by all pipes
+	 */
+	public long getBufferedBits() {
+		return this.bufferedBits;
+	}
+
+	/**
+	 * @return the number of bytes written to the scratch file so far
+	 */
+	public long getSpilledBytes() {
+		return this.writePosition;
+	}
+
+	/**
+	 * Move all full words of all pipes to disk
+	 */
+	private void spillAll() {
+		try {
+			this.open();
+			for (SpillingBitPipe pipe: this.pipes) {
+				pipe.spill();
+			}
+			this.flushWrites();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Create the scratch file if not already done
+	 * @throws IOException
+	 */
+	private void open() throws IOException {
+		if (this.channel != null) {
+			return;
+		}
+		this.file = File.createTempFile("jypec", ".bits");
+		this.file.deleteOnExit();
+		this.raf = new RandomAccessFile(this.file, "rw");
+		this.channel = this.raf.getChannel();
+		this.writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+	}
+
+	/**
+	 * @return the position at which the next word will be written
+	 */
+	long getWritePosition() {
+		return this.writePosition;
+	}
+
+	/**
+	 * Appends a word to the scratch file
+	 * @param word
+	 * @throws IOException
+	 */
+	void writeWord(long word) throws IOException {
+		if (!this.writeBuffer.hasRemaining()) {
+			this.flushWrites();
+		}
+		this.writeBuffer.putLong(word);
+		this.writePosition += Long.BYTES;
+	}
+
+	private void flushWrites() throws IOException {
+		this.writeBuffer.flip();
+		while (this.writeBuffer.hasRemaining()) {
+			this.channel.write(this.writeBuffer);
+		}
+		this.writeBuffer.clear();
+	}
+
+	/**
+	 * Reads words back from the scratch file
+	 * @param position where the first word is in the file
+	 * @param buffer where to read the words into. It is read up to its limit
+	 */
+	void readWords(long position, ByteBuffer buffer) {
+		try {
+			while (buffer.hasRemaining()) {
+				int read = this.channel.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("Scratch file ended unexpectedly");
+				}
+				position += read;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Release the scratch file, if any. Pipes with spilled bits
+	 * cannot be read after this
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (this.channel == null) {
+			return;
+		}
+		this.raf.close();
+		this.channel = null;
+		this.file.delete();
+	}
+
+}
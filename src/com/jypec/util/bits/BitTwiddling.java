@@ -91,4 +91,28 @@ public class BitTwiddling {
 		return b;
 	}
 	
+	/**
+	 * Puts the given int in the array, starting with its most significant byte
+	 * @param value
+	 * @param array
+	 * @param offset index where the first byte goes
+	 */
+	public static void putInt(int value, byte[] array, int offset) {
+		array[offset] = (byte) (value >> 24);
+		array[offset + 1] = (byte) (value >> 16);
+		array[offset + 2] = (byte) (value >> 8);
+		array[offset + 3] = (byte) value;
+	}
+	
+	/**
+	 * Puts the given long in the array, starting with its most significant byte
+	 * @param value
+	 * @param array
+	 * @param offset index where the first byte goes
+	 */
+	public static void putLong(long value, byte[] array, int offset) {
+		putInt((int) (value >>> 32), array, offset);
+		putInt((int) value, array, offset + 4);
+	}
+	
 }
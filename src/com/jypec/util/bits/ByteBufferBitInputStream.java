@@ -0,0 +1,306 @@
+package com.jypec.util.bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link BitInputStream} that reads from a {@link ByteBuffer} (usually a
+ * {@link java.nio.MappedByteBuffer} over a compressed file) instead of
+ * an {@link java.io.InputStream}. <br>
+ * Bits are extracted a word at a time straight from the buffer instead of
+ * byte by byte, and byte-aligned reads (ints, floats, arrays) go directly
+ * through the buffer's bulk accessors. Results are exactly the same as
+ * those obtained with {@link BitInputStream}, including {@link #getLastReadBits()}
+ * and {@link #getBitsInput()}, and {@link #mark(int)} / {@link #reset()} are
+ * always supported (the read limit is ignored since the whole buffer is available)
+ * @author Daniel
+ * @see BitInputStream
+ */
+public class ByteBufferBitInputStream extends BitInputStream {
+
+	private ByteBuffer source;
+	/** index of the first byte of the stream within the buffer */
+	private int start;
+	/** index (exclusive) of the last byte of the stream within the buffer */
+	private int limit;
+	/** absolute position in bits of the next bit to be read */
+	private long bitPosition, markedBitPosition;
+	private int lastBitsRead, markedLastBitsRead;
+
+
+	/**
+	 * Create a stream that reads from the given buffer, from its current position
+	 * up to its limit. The buffer's position is not modified when reading
+	 * @param source
+	 */
+	public ByteBufferBitInputStream(ByteBuffer source) {
+		super(null);
+		//big endian so that words are read in the same order as bits
+		this.source = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+		this.start = source.position();
+		this.limit = source.limit();
+		this.bitPosition = ((long) this.start) << 3;
+		this.lastBitsRead = 0;
+	}
+
+	/**
+	 * Create a stream that reads from the given file, mapping it in memory.
+	 * The file cannot be longer than {@link Integer#MAX_VALUE} bytes, since it is mapped in a single buffer
+	 * @param fileName
+	 * @return the stream reading from the file
+	 * @throws IOException if the file cannot be read or is too long
+	 */
+	public static ByteBufferBitInputStream fromFile(String fileName) throws IOException {
+		File f = new File(fileName);
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File " + fileName + " is too long (" + channel.size() + " bytes) to be mapped in a single buffer");
+			}
+			//the mapping stays valid after closing the channel
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ByteBufferBitInputStream(buf);
+		} finally {
+			raf.close();
+		}
+	}
+
+
+	@Override
+	public int available() {
+		return this.limit - (int) ((this.bitPosition + 7) >>> 3);
+	}
+
+	@Override
+	public void close() {
+		//nothing to close, the buffer is released when no longer referenced
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		this.markedBitPosition = this.bitPosition;
+		this.markedLastBitsRead = this.lastBitsRead;
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.bitPosition = this.markedBitPosition;
+		this.lastBitsRead = this.markedLastBitsRead;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		len = Math.min(len, this.available());
+		if (len <= 0) {
+			return -1;
+		}
+		this.readBytes(b, off, len);
+		return len;
+	}
+
+	@Override
+	public long skip(long n) {
+		if (n <= 0) {
+			return 0;
+		}
+		n = Math.min(n, this.available());
+		this.bitPosition += n << 3;
+		this.lastBitsRead = 0;
+		return n;
+	}
+
+
+	/**
+	 * Reads the given number of bits, leftmost first, from the buffer
+	 * @param quantity number of bits to be read (0 to 56)
+	 * @return the read bits in the LSBs of the result
+	 * @throws IOException if not enough bits are available
+	 */
+	private long extractBits(int quantity) throws IOException {
+		if (quantity == 0) {
+			return 0;
+		}
+		long endPosition = this.bitPosition + quantity;
+		if (endPosition > ((long) this.limit) << 3) {
+			throw new IOException("More bytes were requested than available!");
+		}
+		int index = (int) (this.bitPosition >>> 3);
+		int offset = (int) (this.bitPosition & 0x7);
+		long word;
+		if (index + Long.BYTES <= this.limit) {
+			word = this.source.getLong(index);
+		} else {
+			//near the end, build the word byte by byte
+			word = 0;
+			for (int i = 0; i < Long.BYTES; i++) {
+				word <<= 8;
+				if (index + i < this.limit) {
+					word |= this.source.get(index + i) & 0xff;
+				}
+			}
+		}
+		long result = (word << offset) >>> (Long.SIZE - quantity);
+		this.bitPosition = endPosition;
+		this.lastBitsRead = (int) ((((long) this.lastBitsRead) << quantity) | result);
+		return result;
+	}
+
+
+	@Override
+	public int readBitAsInt() throws IOException {
+		return (int) this.extractBits(1);
+	}
+
+	@Override
+	public long readLongBits(int quantity, BitStreamConstants ordering) throws IOException {
+		long result;
+		if (quantity > Integer.SIZE) {
+			result = (this.extractBits(quantity - Integer.SIZE) << Integer.SIZE) | this.extractBits(Integer.SIZE);
+		} else {
+			result = this.extractBits(quantity);
+		}
+		if (ordering == BitStreamConstants.ORDERING_RIGHTMOST_FIRST && quantity > 0) {
+			result = Long.reverse(result) >>> (Long.SIZE - quantity);
+		}
+		return result;
+	}
+
+	@Override
+	public int readNBitNumber(int quantity, BitStreamConstants ordering) throws IOException {
+		return (int) this.readLongBits(quantity, ordering);
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return (byte) this.extractBits(Byte.SIZE);
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return (short) this.extractBits(Short.SIZE);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return (int) this.extractBits(Integer.SIZE);
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return (this.extractBits(Integer.SIZE) << Integer.SIZE) | this.extractBits(Integer.SIZE);
+	}
+
+	/**
+	 * Checks that the given number of bytes can be read, assuming the stream is byte aligned
+	 * @param bytes
+	 * @return the index of the next byte in the buffer
+	 * @throws IOException if there are not enough bytes
+	 */
+	private int alignedIndexFor(int bytes) throws IOException {
+		int index = (int) (this.bitPosition >>> 3);
+		if (index + (long) bytes > this.limit) {
+			throw new IOException("More bytes were requested than available!");
+		}
+		return index;
+	}
+
+	/**
+	 * Updates the inner state after reading bytes directly from the buffer
+	 * @param index the index of the first byte read
+	 * @param bytes the number of bytes read
+	 */
+	private void advanceAligned(int index, int bytes) {
+		this.bitPosition += ((long) bytes) << 3;
+		//keep the last read bits consistent with the slow path
+		int lastIndex = index + bytes;
+		for (int i = Math.max(index, lastIndex - Integer.BYTES); i < lastIndex; i++) {
+			this.lastBitsRead = (this.lastBitsRead << 8) | (this.source.get(i) & 0xff);
+		}
+	}
+
+	/**
+	 * Read the given number of bytes into the array
+	 * @param b
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	private void readBytes(byte[] b, int off, int len) throws IOException {
+		if ((this.bitPosition & 0x7) == 0) {
+			int index = this.alignedIndexFor(len);
+			ByteBuffer view = this.source.duplicate();
+			view.position(index);
+			view.get(b, off, len);
+			this.advanceAligned(index, len);
+		} else {
+			for (int i = 0; i < len; i++) {
+				b[off + i] = this.readByte();
+			}
+		}
+	}
+
+	@Override
+	public byte[] readByteArray(int length) throws IOException {
+		byte[] res = new byte[length];
+		this.readBytes(res, 0, length);
+		return res;
+	}
+
+	@Override
+	public int[] readIntArray(int length) throws IOException {
+		int[] res = new int[length];
+		if ((this.bitPosition & 0x7) == 0) {
+			int index = this.alignedIndexFor(length * Integer.BYTES);
+			for (int i = 0; i < length; i++) {
+				res[i] = this.source.getInt(index + i * Integer.BYTES);
+			}
+			this.advanceAligned(index, length * Integer.BYTES);
+		} else {
+			for (int i = 0; i < length; i++) {
+				res[i] = this.readInt();
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public float[] readFloatArray(int length) throws IOException {
+		float[] res = new float[length];
+		if ((this.bitPosition & 0x7) == 0) {
+			int index = this.alignedIndexFor(length * Float.BYTES);
+			for (int i = 0; i < length; i++) {
+				res[i] = this.source.getFloat(index + i * Float.BYTES);
+			}
+			this.advanceAligned(index, length * Float.BYTES);
+		} else {
+			for (int i = 0; i < length; i++) {
+				res[i] = this.readFloat();
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public int getBitsInput() {
+		return (int) (this.bitPosition - (((long) this.start) << 3));
+	}
+
+	@Override
+	public int getLastReadBits() {
+		return this.lastBitsRead;
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.jypec.util.bits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * {@link BitPipe} whose older bits can be moved to the scratch file of a
+ * {@link BitPipeSpillArea}. Bits are still taken out in the same order they
+ * were put in: first those on disk, then those in memory
+ * @author Daniel
+ */
+public class SpillingBitPipe extends BitPipe {
+
+	/** Number of words read back from disk at once */
+	private static final int RELOAD_WORDS = 1 << 10;
+
+	private BitPipeSpillArea area;
+	/** spilled runs not yet read back, as {file position, number of words} */
+	private ArrayDeque<long[]> segments;
+	/** number of bits in {@link #segments} */
+	private long spilledBits;
+	/** bits already read back from disk but not yet taken out */
+	private BitPipe front;
+
+
+	/**
+	 * Create a pipe. Use {@link BitPipeSpillArea#createPipe()}
+	 * @param area
+	 */
+	SpillingBitPipe(BitPipeSpillArea area) {
+		this.area = area;
+		this.spilledBits = 0;
+	}
+
+	@Override
+	public void putBits(long bits, int quantity) {
+		if (quantity <= 0) {
+			return;
+		}
+		super.putBits(bits, quantity);
+		this.area.bitsBuffered(quantity);
+	}
+
+	@Override
+	public long getBits(int quantity) {
+		if (quantity <= 0) {
+			return 0;
+		}
+		if (!this.hasSpilledBits()) {
+			long bits = super.getBits(quantity);
+			this.area.bitsReleased(quantity);
+			return bits;
+		}
+		if (quantity > this.getNumberOfBits()) {
+			throw new IndexOutOfBoundsException();
+		}
+		long result = 0;
+		int remaining = quantity;
+		while (remaining > 0) {
+			if ((this.front == null || this.front.isEmpty()) && this.spilledBits > 0) {
+				this.reload();
+			}
+			int read;
+			long bits;
+			if (this.front != null && !this.front.isEmpty()) {
+				read = (int) Math.min(remaining, this.front.getNumberOfBits());
+				bits = this.front.getBits(read);
+			} else {
+				read = remaining;
+				bits = super.getBits(read);
+				this.area.bitsReleased(read);
+			}
+			result = read == Long.SIZE ? bits : (result << read) | bits;
+			remaining -= read;
+		}
+		if (this.front != null && this.front.isEmpty() && this.spilledBits == 0) {
+			this.front = null;
+		}
+		return result;
+	}
+
+	@Override
+	public long getNumberOfBits() {
+		long count = super.getNumberOfBits() + this.spilledBits;
+		if (this.front != null) {
+			count += this.front.getNumberOfBits();
+		}
+		return count;
+	}
+
+	@Override
+	public long getCapacity() {
+		long capacity = super.getCapacity();
+		if (this.front != null) {
+			capacity += this.front.getCapacity();
+		}
+		return capacity;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.getNumberOfBits() == 0;
+	}
+
+	/**
+	 * @return true if some of the bits in this pipe are not in memory
+	 */
+	private boolean hasSpilledBits() {
+		return this.spilledBits > 0 || this.front != null;
+	}
+
+	/**
+	 * Move all full words in memory to the scratch file
+	 * @throws IOException
+	 */
+	void spill() throws IOException {
+		long words = super.getNumberOfBits() / Long.SIZE;
+		if (words == 0) {
+			return;
+		}
+		if (this.segments == null) {
+			this.segments = new ArrayDeque<long[]>();
+		}
+		this.segments.add(new long[]{this.area.getWritePosition(), words});
+		for (long i = 0; i < words; i++) {
+			this.area.writeWord(super.getBits(Long.SIZE));
+		}
+		this.spilledBits += words * Long.SIZE;
+		this.area.bitsReleased(words * Long.SIZE);
+		//otherwise the memory of the spilled words would still be held
+		this.trimToSize();
+	}
+
+	/**
+	 * Read back the next spilled words into {@link #front}
+	 */
+	private void reload() {
+		long[] segment = this.segments.peek();
+		int words = (int) Math.min(RELOAD_WORDS, segment[1]);
+		ByteBuffer buffer = ByteBuffer.allocate(words * Long.BYTES);
+		this.area.readWords(segment[0], buffer);
+		buffer.flip();
+		if (this.front == null) {
+			this.front = new BitPipe();
+		}
+		for (int i = 0; i < words; i++) {
+			this.front.putBits(buffer.getLong(), Long.SIZE);
+		}
+		segment[0] += words * Long.BYTES;
+		segment[1] -= words;
+		if (segment[1] == 0) {
+			this.segments.poll();
+		}
+		this.spilledBits -= words * Long.SIZE;
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.jypec.util.datastructures;
+
+/**
+ * @author Daniel
+ * Implementation of the {@link IntegerMatrix} interface over a contiguous, row-major
+ * region of a one dimensional array, so that rows and blocks can be copied in bulk
+ */
+public class ArrayIntegerMatrix implements IntegerMatrix {
+	
+	private int[] data;
+	private int offset;
+	private int rows;
+	private int columns;
+	
+	
+	/**
+	 * Create a matrix over the given array
+	 * @param data where the samples are stored
+	 * @param offset position in <code>data</code> of the first sample of the matrix
+	 * @param rows
+	 * @param columns
+	 */
+	public ArrayIntegerMatrix(int[] data, int offset, int rows, int columns) {
+		if (offset < 0 || offset + rows * columns > data.length) {
+			throw new IllegalArgumentException("The matrix does not fit in the given array");
+		}
+		this.data = data;
+		this.offset = offset;
+		this.rows = rows;
+		this.columns = columns;
+	}
+	
+	
+	/**
+	 * Create a new IntegerMatrix allocating new memory for its internal storage
+	 * @param rows
+	 * @param columns
+	 * @return a brand new IntegerMatrix
+	 */
+	public static IntegerMatrix newMatrix(int rows, int columns) {
+		return new ArrayIntegerMatrix(new int[rows * columns], 0, rows, columns);
+	}
+	
+	@Override
+	public int getDataAt(int row, int column) {
+		return this.data[this.offset + row * this.columns + column];
+	}
+	
+	@Override
+	public void setDataAt(int data, int row, int column) {
+		this.data[this.offset + row * this.columns + column] = data;
+	}
+	
+	@Override
+	public void getRow(int row, int column, int length, int[] dst, int dstOffset) {
+		System.arraycopy(this.data, this.offset + row * this.columns + column, dst, dstOffset, length);
+	}
+	
+	@Override
+	public void setRow(int row, int column, int length, int[] src, int srcOffset) {
+		System.arraycopy(src, srcOffset, this.data, this.offset + row * this.columns + column, length);
+	}
+	
+	@Override
+	public void copyBlockTo(int row, int column, int height, int width, int[] dst) {
+		int position = this.offset + row * this.columns + column;
+		for (int i = 0; i < height; i++) {
+			System.arraycopy(this.data, position, dst, i * width, width);
+			position += this.columns;
+		}
+	}
+	
+	@Override
+	public int getRows() {
+		return this.rows;
+	}
+	
+	@Override
+	public int getColumns() {
+		return this.columns;
+	}
+
+}
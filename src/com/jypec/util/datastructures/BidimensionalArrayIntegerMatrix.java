@@ -44,6 +44,23 @@ public class BidimensionalArrayIntegerMatrix implements IntegerMatrix {
 		this.data[row][column] = data; 
 	}
 	
+	@Override
+	public void getRow(int row, int column, int length, int[] dst, int dstOffset) {
+		System.arraycopy(this.data[row], column, dst, dstOffset, length);
+	}
+	
+	@Override
+	public void setRow(int row, int column, int length, int[] src, int srcOffset) {
+		System.arraycopy(src, srcOffset, this.data[row], column, length);
+	}
+	
+	@Override
+	public void copyBlockTo(int row, int column, int height, int width, int[] dst) {
+		for (int i = 0; i < height; i++) {
+			System.arraycopy(this.data[row + i], column, dst, i * width, width);
+		}
+	}
+	
 	@Override
 	public int getRows() {
 		return this.rows;
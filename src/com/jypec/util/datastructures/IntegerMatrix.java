@@ -22,6 +22,36 @@ public interface IntegerMatrix {
 	 */
 	public void setDataAt(int data, int row, int column);
 	
+	/**
+	 * Copy a run of samples of the given row
+	 * @param row
+	 * @param column first column to copy
+	 * @param length number of samples to copy
+	 * @param dst where to copy them
+	 * @param dstOffset position in <code>dst</code> of the first sample
+	 */
+	public void getRow(int row, int column, int length, int[] dst, int dstOffset);
+	
+	/**
+	 * Overwrite a run of samples of the given row
+	 * @param row
+	 * @param column first column to overwrite
+	 * @param length number of samples to overwrite
+	 * @param src where to take them from
+	 * @param srcOffset position in <code>src</code> of the first sample
+	 */
+	public void setRow(int row, int column, int length, int[] src, int srcOffset);
+	
+	/**
+	 * Copy a block of this matrix into a dense array
+	 * @param row first row of the block
+	 * @param column first column of the block
+	 * @param height number of rows of the block
+	 * @param width number of columns of the block
+	 * @param dst where to put the block, row-major with <code>width</code> samples per row
+	 */
+	public void copyBlockTo(int row, int column, int height, int width, int[] dst);
+	
 	/**
 	 * @return the number of rows of this matrix
 	 */
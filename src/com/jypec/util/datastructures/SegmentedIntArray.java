@@ -0,0 +1,83 @@
+package com.jypec.util.datastructures;
+
+/**
+ * Integer array indexed with longs, so that it can hold more than
+ * {@link Integer#MAX_VALUE} elements. It is stored as a list of plain arrays
+ * (segments) of the same length (except for maybe the last one),
+ * which can be accessed directly for bulk operations
+ * @author Daniel
+ */
+public class SegmentedIntArray {
+
+	/** Maximum length of a segment, well below the limits of the JVM */
+	public static final int MAX_SEGMENT_LENGTH = 1 << 30;
+
+	private int[][] segments;
+	private int segmentLength;
+	private long length;
+
+	/**
+	 * Create a zero-filled array
+	 * @param length total number of elements
+	 * @param segmentLength number of elements per segment
+	 */
+	public SegmentedIntArray(long length, int segmentLength) {
+		if (length < 0 || segmentLength <= 0) {
+			throw new IllegalArgumentException("Invalid array dimensions");
+		}
+		this.length = length;
+		this.segmentLength = segmentLength;
+		int count = (int) ((length + segmentLength - 1) / segmentLength);
+		this.segments = new int[count][];
+		for (int i = 0; i < count; i++) {
+			this.segments[i] = new int[(int) Math.min(segmentLength, length - (long) i * segmentLength)];
+		}
+	}
+
+	/**
+	 * @param index
+	 * @return the element at the given index
+	 */
+	public int get(long index) {
+		return this.segments[(int) (index / this.segmentLength)][(int) (index % this.segmentLength)];
+	}
+
+	/**
+	 * @param index
+	 * @param value the new value of the element at the given index
+	 */
+	public void set(long index, int value) {
+		this.segments[(int) (index / this.segmentLength)][(int) (index % this.segmentLength)] = value;
+	}
+
+	/**
+	 * @param segment
+	 * @return the array backing the given segment, holding elements from
+	 * <code>segment * getSegmentLength()</code> on
+	 */
+	public int[] getSegment(int segment) {
+		return this.segments[segment];
+	}
+
+	/**
+	 * @return the number of segments
+	 */
+	public int getNumberOfSegments() {
+		return this.segments.length;
+	}
+
+	/**
+	 * @return the number of elements per segment
+	 */
+	public int getSegmentLength() {
+		return this.segmentLength;
+	}
+
+	/**
+	 * @return the total number of elements
+	 */
+	public long length() {
+		return this.length;
+	}
+
+}
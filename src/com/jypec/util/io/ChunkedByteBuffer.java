@@ -0,0 +1,144 @@
+package com.jypec.util.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Byte buffer that can be longer than {@link Integer#MAX_VALUE}, made of
+ * consecutive chunks (usually regions of a mapped file). Each chunk covers
+ * {@link #getChunkSize()} bytes, but also sees up to {@link #OVERLAP} bytes of the
+ * next one, so that any word starting in a chunk can be read or written through it alone.
+ * Chunks are big endian and start at position zero.
+ * @author Daniel
+ */
+public class ChunkedByteBuffer {
+
+	/** Default bytes per chunk. It is a multiple of all sample widths (1, 2, 3 and 4 bytes)
+	 * so that byte aligned samples never straddle two chunks */
+	public static final int DEFAULT_CHUNK_SIZE = 3 << 28;
+	/** Bytes of the following chunk that each chunk also covers */
+	public static final int OVERLAP = 8;
+
+	private ByteBuffer[] chunks;
+	private int chunkSize;
+	private long length;
+
+
+	private ChunkedByteBuffer(ByteBuffer[] chunks, int chunkSize, long length) {
+		this.chunks = chunks;
+		this.chunkSize = chunkSize;
+		this.length = length;
+	}
+
+	/**
+	 * @param bb buffer to wrap, from its position to its limit
+	 * @return a single chunk buffer sharing the contents of the given one
+	 */
+	public static ChunkedByteBuffer wrap(ByteBuffer bb) {
+		return new ChunkedByteBuffer(new ByteBuffer[] {bb.slice()}, Integer.MAX_VALUE, bb.remaining());
+	}
+
+	/**
+	 * @param bb buffer to wrap, from its position to its limit
+	 * @param chunkSize bytes per chunk
+	 * @return a buffer sharing the contents of the given one, split in chunks
+	 */
+	public static ChunkedByteBuffer wrap(ByteBuffer bb, int chunkSize) {
+		int length = bb.remaining();
+		int count = Math.max(1, (length + chunkSize - 1) / chunkSize);
+		ByteBuffer[] chunks = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			ByteBuffer dup = bb.duplicate();
+			int start = bb.position() + i * chunkSize;
+			dup.limit((int) Math.min(bb.limit(), (long) start + chunkSize + OVERLAP));
+			dup.position(start);
+			chunks[i] = dup.slice();
+		}
+		return new ChunkedByteBuffer(chunks, chunkSize, length);
+	}
+
+	/**
+	 * Same as {@link #map(FileChannel, MapMode, long, long, int)} with {@link #DEFAULT_CHUNK_SIZE}
+	 * @param channel
+	 * @param mode
+	 * @param offset
+	 * @param length
+	 * @return the mapped buffer
+	 * @throws IOException
+	 */
+	public static ChunkedByteBuffer map(FileChannel channel, MapMode mode, long offset, long length) throws IOException {
+		return map(channel, mode, offset, length, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Map a region of a file, one chunk at a time
+	 * @param channel file to map
+	 * @param mode see {@link FileChannel#map(MapMode, long, long)}
+	 * @param offset where the region starts within the file
+	 * @param length size of the region in bytes
+	 * @param chunkSize bytes per chunk
+	 * @return the mapped buffer
+	 * @throws IOException
+	 */
+	public static ChunkedByteBuffer map(FileChannel channel, MapMode mode, long offset, long length, int chunkSize) throws IOException {
+		int count = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+		ByteBuffer[] chunks = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long start = (long) i * chunkSize;
+			long size = Math.min(length - start, (long) chunkSize + OVERLAP);
+			chunks[i] = channel.map(mode, offset + start, Math.max(0, size));
+		}
+		return new ChunkedByteBuffer(chunks, chunkSize, length);
+	}
+
+	/**
+	 * @param index
+	 * @return the chunk with the given index
+	 */
+	public ByteBuffer getChunk(int index) {
+		return this.chunks[index];
+	}
+
+	/**
+	 * @param position
+	 * @return the index of the chunk that covers the given position
+	 */
+	public int getChunkIndex(long position) {
+		return (int) (position / this.chunkSize);
+	}
+
+	/**
+	 * @param position
+	 * @return where the given position is within its chunk
+	 */
+	public int getChunkOffset(long position) {
+		return (int) (position % this.chunkSize);
+	}
+
+	/**
+	 * @param position
+	 * @return the number of bytes from the given position to the end of its chunk,
+	 * not counting the overlap with the next one
+	 */
+	public long getRemainingInChunk(long position) {
+		long chunkStart = (position / this.chunkSize) * this.chunkSize;
+		return Math.min(this.chunkSize, this.length - chunkStart) - (position - chunkStart);
+	}
+
+	/**
+	 * @return the bytes covered by each chunk
+	 */
+	public int getChunkSize() {
+		return this.chunkSize;
+	}
+
+	/**
+	 * @return the total size in bytes
+	 */
+	public long length() {
+		return this.length;
+	}
+
+}
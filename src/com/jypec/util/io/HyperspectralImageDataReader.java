@@ -4,10 +4,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageMappedData;
+import com.jypec.img.ImageDataType;
 import com.jypec.img.ImageHeaderData;
 import com.jypec.util.io.headerio.enums.BandOrdering;
 import com.jypec.util.io.headerio.enums.ByteOrdering;
@@ -37,7 +38,8 @@ public class HyperspectralImageDataReader {
 			File f = new File(fileName);
 			in = new FileInputStream(f); 
 			FileChannel file = in.getChannel();
-			ByteBuffer buf = file.map(FileChannel.MapMode.READ_ONLY, offset, f.length());
+			//mapped in chunks, since a single mapping cannot go over 2GB
+			ChunkedByteBuffer buf = ChunkedByteBuffer.map(file, FileChannel.MapMode.READ_ONLY, offset, f.length() - offset);
 			
 			ImageDataReaderFactory.getReader(imageOrdering, byteOrdering, image.getDataType()).readFromBuffer(buf, image);
 
@@ -49,6 +51,36 @@ public class HyperspectralImageDataReader {
 		}	
 	}
 	
+	/**
+	 * Map the image data in the specified file, without reading it
+	 * @param fileName name of the file
+	 * @param offset where the image data starts within the file
+	 * @param type data type of the samples
+	 * @param bands
+	 * @param lines
+	 * @param samples
+	 * @param imageOrdering ordering of the image data (BSQ, BIP, BIL)
+	 * @param byteOrdering lil endian or big endian (only useful for data types where the data width is multiple of 8 bits
+	 * @return an image that decodes its samples from the file when they are requested
+	 */
+	public static HyperspectralImageMappedData mapImageData(String fileName, int offset, ImageDataType type, int bands, int lines, int samples, BandOrdering imageOrdering, ByteOrdering byteOrdering) {
+		FileInputStream in = null;
+		try {
+			File f = new File(fileName);
+			in = new FileInputStream(f); 
+			FileChannel file = in.getChannel();
+			//the mapping stays valid after the channel is closed
+			ChunkedByteBuffer buf = ChunkedByteBuffer.map(file, FileChannel.MapMode.READ_ONLY, offset, f.length() - offset);
+			file.close();
+			
+			return new HyperspectralImageMappedData(type, bands, lines, samples, buf, imageOrdering, byteOrdering);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			IOUtilities.safeClose(in);
+		}
+	}
+	
 	/**
 	 * Same as {@link #readImageData(String, int, HyperspectralImageData)} with an offset of zero
 	 * @param fileName
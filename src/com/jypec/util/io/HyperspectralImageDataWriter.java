@@ -2,12 +2,13 @@ package com.jypec.util.io;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.ImageDataType;
 import com.jypec.util.io.headerio.enums.BandOrdering;
 import com.jypec.util.io.headerio.enums.ByteOrdering;
+import com.jypec.util.io.imagedatawriting.ImageDataWriter;
 import com.jypec.util.io.imagedatawriting.ImageDataWriterFactory;
 
 /**
@@ -17,6 +18,9 @@ import com.jypec.util.io.imagedatawriting.ImageDataWriterFactory;
  *
  */
 public class HyperspectralImageDataWriter {
+	
+	/** Approximate number of samples in each piece when writing images a piece at a time */
+	public static final int PANEL_SAMPLES = 1 << 22;
 
 	/**
 	 * From
@@ -29,22 +33,57 @@ public class HyperspectralImageDataWriter {
 	 * @param byteOrdering lil endian or big endian
 	 */
 	public static void writeImageData(HyperspectralImageData hi, int offset, String fileName, BandOrdering imageOrdering, ByteOrdering byteOrdering) {
+		ChunkedByteBuffer buf = mapImageData(fileName, offset, hi.getBitSize());
+		ImageDataWriterFactory.getWriter(imageOrdering, byteOrdering, hi.getDataType()).writeToBuffer(hi, buf);
+	}
+	
+	/**
+	 * Map the region of the given file where image data goes, big enough for an image
+	 * of the given size in bits, so that the image can be written to it (maybe a piece at a time, see 
+	 * {@link ImageDataWriter#writeLinesToBuffer(HyperspectralImageData, int, int, ChunkedByteBuffer)})
+	 * @param fileName name of file where to write image
+	 * @param offset where the image starts within the file (useful if a header is present)
+	 * @param bitSize size in bits of the image, see {@link HyperspectralImageData#getBitSize()}
+	 * @return the mapped region
+	 */
+	public static ChunkedByteBuffer mapImageData(String fileName, int offset, long bitSize) {
 		RandomAccessFile out = null;
 		try {
 			out = new RandomAccessFile(fileName, "rw"); //need rw for the file.map function to work
 			FileChannel file = out.getChannel();
-			int expectedBytes = hi.getNumberOfBands() * hi.getNumberOfLines() * hi.getNumberOfSamples() * 2;
+			long expectedBytes = (bitSize + 7) / 8;
+			//drop whatever was left of a previous, longer file
+			out.setLength(offset + expectedBytes);
 			
-			ByteBuffer buf = file.map(FileChannel.MapMode.READ_WRITE, offset, expectedBytes);
-			ImageDataWriterFactory.getWriter(imageOrdering, byteOrdering, hi.getDataType()).writeToBuffer(hi, buf);
-
+			//mapped in chunks, since a single mapping cannot go over 2GB. The mapping stays valid after closing
+			ChunkedByteBuffer buf = ChunkedByteBuffer.map(file, FileChannel.MapMode.READ_WRITE, offset, expectedBytes);
 			file.close();
+			return buf;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		} finally {
 			IOUtilities.safeClose(out);
 		}
 	}
+	
+	/**
+	 * @param imageOrdering band ordering it is written in
+	 * @param bands
+	 * @param lines
+	 * @param samples
+	 * @return a number of lines for writing the image a piece at a time, with about {@link #PANEL_SAMPLES}
+	 * samples per piece, and so that all pieces start at byte boundaries. If that is not possible it 
+	 * is the number of lines of the image
+	 */
+	public static int getPanelLines(ImageDataType type, BandOrdering imageOrdering, int bands, int lines, int samples) {
+		if (imageOrdering == BandOrdering.BSQ && ((long) lines * samples * type.getBitDepth()) % 8 != 0) {
+			return lines;
+		}
+		int panelLines = PANEL_SAMPLES / Math.max(1, bands * samples);
+		//multiples of 8 lines always start at byte boundaries
+		panelLines = Math.max(8, panelLines & ~0x7);
+		return Math.min(panelLines, lines);
+	}
 
 
 
@@ -1,5 +1,6 @@
 package com.jypec.util.io;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -7,12 +8,16 @@ import java.io.IOException;
 import com.jypec.comdec.Decompressor;
 import com.jypec.img.HeaderConstants;
 import com.jypec.img.HyperspectralImage;
+import com.jypec.img.HyperspectralImageByteData;
 import com.jypec.img.HyperspectralImageData;
 import com.jypec.img.HyperspectralImageFloatData;
 import com.jypec.img.HyperspectralImageIntegerData;
+import com.jypec.img.HyperspectralImageMappedData;
+import com.jypec.img.HyperspectralImageShortData;
 import com.jypec.img.ImageDataType;
 import com.jypec.img.ImageHeaderData;
 import com.jypec.util.bits.BitInputStream;
+import com.jypec.util.bits.ByteBufferBitInputStream;
 import com.jypec.util.debug.Logger;
 import com.jypec.util.io.headerio.ImageHeaderReaderWriter;
 import com.jypec.util.io.headerio.enums.BandOrdering;
@@ -60,12 +65,34 @@ public class HyperspectralImageReader {
 	 * @throws IOException 
 	 */
 	public static HyperspectralImage read(String dataPath, String headerPath, boolean floatRep) throws IOException {
+		return HyperspectralImageReader.read(dataPath, headerPath, floatRep, false);
+	}
+	
+	/**
+	 * Same as {@link #read(String, String, boolean)}, but uncompressed images are not loaded
+	 * to memory. Their data is mapped and decoded on demand instead (see {@link HyperspectralImageMappedData}),
+	 * so the image is read only
+	 * @param dataPath where the image data is stored
+	 * @param headerPath where the image metadata is stored
+	 * @return the read image
+	 * @throws IOException
+	 */
+	public static HyperspectralImage readMapped(String dataPath, String headerPath) throws IOException {
+		return HyperspectralImageReader.read(dataPath, headerPath, false, true);
+	}
+	
+	private static HyperspectralImage read(String dataPath, String headerPath, boolean floatRep, boolean mapped) throws IOException {
 		/** Load header */
 		ImageHeaderData header = new ImageHeaderData();
 		String realHeaderPath = headerPath != null ? headerPath : dataPath;
-		BitInputStream bis = new BitInputStream(new FileInputStream(realHeaderPath)); 
 		Logger.getLogger().log("Reading image header: " + realHeaderPath);
-		int offset = ImageHeaderReaderWriter.loadFromStream(bis, header);
+		int offset;
+		BitInputStream headerStream = new BitInputStream(new BufferedInputStream(new FileInputStream(realHeaderPath)));
+		try {
+			offset = ImageHeaderReaderWriter.loadFromStream(headerStream, header);
+		} finally {
+			headerStream.close();
+		}
 		if (headerPath != null) {
 			offset = 0;
 		}
@@ -75,7 +102,7 @@ public class HyperspectralImageReader {
 		if (header.wasCompressed()) {	//load compressed
 			Logger.getLogger().log("Image was compressed. Uncompressing from: " + dataPath);
 			Decompressor d = new Decompressor();
-			data = d.decompress(header, bis);
+			data = d.decompress(header, HyperspectralImageReader.openCompressed(realHeaderPath, header));
 		} else {						//load uncompressed
 			Logger.getLogger().log("Image was not compressed. Reading raw data: " + dataPath);
 			int bands = (int) header.getOnce(HeaderConstants.HEADER_BANDS);
@@ -83,18 +110,55 @@ public class HyperspectralImageReader {
 			int samples = (int) header.getOnce(HeaderConstants.HEADER_SAMPLES);
 			Logger.getLogger().log("Image size is: " + bands + "bands x " + lines + "lines x " + samples + "samples");
 			ImageDataType type = ImageDataType.fromHeaderCode((byte) header.getOnce(HeaderConstants.HEADER_DATA_TYPE));
-			if (floatRep) {
-				data = new HyperspectralImageFloatData(type, bands, lines, samples);
+			BandOrdering bandOrdering = (BandOrdering) header.getOnce(HeaderConstants.HEADER_INTERLEAVE);
+			ByteOrdering byteOrdering = (ByteOrdering) header.getOnce(HeaderConstants.HEADER_BYTE_ORDER);
+			if (mapped) {
+				data = HyperspectralImageDataReader.mapImageData(dataPath, offset, type, bands, lines, samples, bandOrdering, byteOrdering);
+			} else if (floatRep) {
+				//decode the raw data straight into the float matrix
+				HyperspectralImageMappedData raw = HyperspectralImageDataReader.mapImageData(dataPath, offset, type, bands, lines, samples, bandOrdering, byteOrdering);
+				data = new HyperspectralImageFloatData(raw.tofloatMatrix(), type, bands, lines, samples);
+				raw.free();
 			} else {
-				data = new HyperspectralImageIntegerData(type, bands, lines, samples);
+				data = HyperspectralImageReader.allocateRaw(type, bands, lines, samples);
+				HyperspectralImageDataReader.readImageData(dataPath, offset, data, bandOrdering, byteOrdering);
 			}
-			HyperspectralImageDataReader.readImageData(dataPath, offset, data,
-					(BandOrdering) header.getOnce(HeaderConstants.HEADER_INTERLEAVE), 
-					(ByteOrdering) header.getOnce(HeaderConstants.HEADER_BYTE_ORDER));
 		}
 		
 		/** Return the hyperspectral image */
 		return new HyperspectralImage(data, header);
 	}
 	
+	/**
+	 * Map a compressed file and load its header again from the mapping, so that the
+	 * compressed data that follows is read straight from memory. Only for compressed
+	 * files, since the whole file is mapped (see {@link ByteBufferBitInputStream#fromFile(String)})
+	 * @param fileName the compressed file
+	 * @param header where to load the header
+	 * @return the stream, positioned right after the header
+	 * @throws IOException
+	 */
+	public static BitInputStream openCompressed(String fileName, ImageHeaderData header) throws IOException {
+		BitInputStream bis = ByteBufferBitInputStream.fromFile(fileName);
+		ImageHeaderReaderWriter.loadFromStream(bis, header);
+		return bis;
+	}
+	
+	/**
+	 * @param type
+	 * @param bands
+	 * @param lines
+	 * @param samples
+	 * @return an empty image storing its raw data in the smallest primitive type that fits it
+	 */
+	private static HyperspectralImageData allocateRaw(ImageDataType type, int bands, int lines, int samples) {
+		if (type.getBitDepth() <= 8) {
+			return new HyperspectralImageByteData(type, bands, lines, samples);
+		} else if (type.getBitDepth() <= 16) {
+			return new HyperspectralImageShortData(type, bands, lines, samples);
+		} else {
+			return new HyperspectralImageIntegerData(type, bands, lines, samples);
+		}
+	}
+	
 }
@@ -4,12 +4,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 
 import com.jypec.cli.InputArguments;
+import com.jypec.comdec.Decompressor;
+import com.jypec.comdec.PanelSink;
 import com.jypec.img.HeaderConstants;
 import com.jypec.img.HyperspectralImage;
+import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.ImageDataType;
+import com.jypec.img.ImageHeaderData;
+import com.jypec.util.bits.BitInputStream;
 import com.jypec.util.bits.BitOutputStream;
 import com.jypec.util.io.headerio.ImageHeaderReaderWriter;
 import com.jypec.util.io.headerio.enums.BandOrdering;
 import com.jypec.util.io.headerio.enums.ByteOrdering;
+import com.jypec.util.io.imagedatawriting.ImageDataWriter;
+import com.jypec.util.io.imagedatawriting.ImageDataWriterFactory;
 
 /**
  * Write hyperspectral images to files
@@ -24,6 +32,52 @@ public class HyperspectralImageWriter {
 	 * @throws IOException
 	 */
 	public static void write(HyperspectralImage hi, InputArguments args) throws IOException {
+		int byteOffset = HyperspectralImageWriter.writeHeader(hi.getHeader(), args);
+		
+		HyperspectralImageDataWriter.writeImageData(hi.getData(), byteOffset, args.output, 
+				(BandOrdering) hi.getHeader().getOnce(HeaderConstants.HEADER_INTERLEAVE), 
+				(ByteOrdering) hi.getHeader().getOnce(HeaderConstants.HEADER_BYTE_ORDER));		
+	}
+	
+	/**
+	 * Decompress an image straight into its output file. The image is never in memory as a whole: 
+	 * it is boosted back to its original dimension a panel at a time, and each panel is written 
+	 * to its final place in the output as soon as it is ready
+	 * @param header the header of the compressed image
+	 * @param compressed the compressed image data, right after the header
+	 * @param args the arguments with which to write it (output location and such)
+	 * @throws IOException
+	 */
+	public static void write(ImageHeaderData header, BitInputStream compressed, InputArguments args) throws IOException {
+		int byteOffset = HyperspectralImageWriter.writeHeader(header, args);
+		
+		final int bands = (int) header.getOnce(HeaderConstants.HEADER_BANDS);
+		final int lines = (int) header.getOnce(HeaderConstants.HEADER_LINES);
+		final int samples = (int) header.getOnce(HeaderConstants.HEADER_SAMPLES);
+		ImageDataType type = ImageDataType.fromHeaderCode((byte) header.getOnce(HeaderConstants.HEADER_DATA_TYPE));
+		BandOrdering bandOrdering = (BandOrdering) header.getOnce(HeaderConstants.HEADER_INTERLEAVE);
+		ByteOrdering byteOrdering = (ByteOrdering) header.getOnce(HeaderConstants.HEADER_BYTE_ORDER);
+		
+		final ChunkedByteBuffer buf = HyperspectralImageDataWriter.mapImageData(args.output, byteOffset, 
+				(long) bands * lines * samples * type.getBitDepth());
+		final ImageDataWriter writer = ImageDataWriterFactory.getWriter(bandOrdering, byteOrdering, type);
+		int panelLines = HyperspectralImageDataWriter.getPanelLines(type, bandOrdering, bands, lines, samples);
+		new Decompressor().decompress(header, compressed, panelLines, new PanelSink() {
+			@Override
+			public void receivePanel(HyperspectralImageData panel, int firstLine, int totalLines) {
+				writer.writeLinesToBuffer(panel, firstLine, totalLines, buf);
+			}
+		});
+	}
+	
+	/**
+	 * Write the header as the arguments say
+	 * @param header
+	 * @param args
+	 * @return where the image data starts in the output file
+	 * @throws IOException
+	 */
+	private static int writeHeader(ImageHeaderData header, InputArguments args) throws IOException {
 		BitOutputStream bos;
 		int byteOffset = 0;
 		
@@ -34,16 +88,13 @@ public class HyperspectralImageWriter {
 			} else {
 				bos = new BitOutputStream(new FileOutputStream(args.output));
 			}
-			byteOffset = ImageHeaderReaderWriter.saveToUncompressedStream(hi.getHeader(), bos, args.essentialHeader, args.outputHeader == null);
+			byteOffset = ImageHeaderReaderWriter.saveToUncompressedStream(header, bos, args.essentialHeader, args.outputHeader == null);
 			//if header is separate, byteoffset is too
 			if (args.outputHeader != null) {
 				byteOffset = 0;
 			}
 		}
-		
-		HyperspectralImageDataWriter.writeImageData(hi.getData(), byteOffset, args.output, 
-				(BandOrdering) hi.getHeader().getOnce(HeaderConstants.HEADER_INTERLEAVE), 
-				(ByteOrdering) hi.getHeader().getOnce(HeaderConstants.HEADER_BYTE_ORDER));		
+		return byteOffset;
 	}
 
 }
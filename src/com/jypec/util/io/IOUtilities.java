@@ -101,7 +101,7 @@ public class IOUtilities {
 		case 2:
 			return bb.getShort() << 16;
 		case 3:
-			return (bb.get() << 24) | (bb.getShort() << 8);
+			return (bb.get() << 24) | ((bb.getShort() & 0xffff) << 8);
 		case 4:
 			return bb.getInt();
 		default:
@@ -149,7 +149,7 @@ public class IOUtilities {
 		case 2:
 			return bb.getShort() & 0xffff;
 		case 3:
-			return ((bb.get() << 16) | bb.getShort()) & 0xffffff;
+			return ((bb.get() << 16) | (bb.getShort() & 0xffff)) & 0xffffff;
 		case 4:
 			return bb.getInt();
 		default:
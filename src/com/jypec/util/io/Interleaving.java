@@ -0,0 +1,128 @@
+package com.jypec.util.io;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Conversions between the interleaved line layouts found in image files (BIP, BIL)
+ * and the band sequential layout that {@link com.jypec.img.HyperspectralImageData} uses
+ * in memory, plus a way of spreading work over line ranges of the image across threads
+ * @author Daniel
+ */
+public class Interleaving {
+
+	/** Side of the square tiles in which BIP lines are transposed, so that
+	 * both the line and the rows of the bands stay in cache */
+	public static final int TILE = 64;
+	/** Minimum number of samples handled by each task of {@link #forEachLineRange} */
+	public static final int DEFAULT_THRESHOLD = 1 << 15;
+
+	/**
+	 * Work done over a range of lines of the image
+	 */
+	public interface LineRangeProcessor {
+		/**
+		 * @param fromLine first line to process
+		 * @param toLine last line to process (exclusive)
+		 */
+		public void process(int fromLine, int toLine);
+	}
+
+	/**
+	 * Split the lines of the image in ranges and process them in the common {@link ForkJoinPool}.
+	 * Ranges are disjoint, so processors only need to be careful with their own state
+	 * @param lines number of lines of the image
+	 * @param lineSamples number of samples in each line (over all bands)
+	 * @param processor what to do with each range
+	 */
+	public static void forEachLineRange(int lines, int lineSamples, LineRangeProcessor processor) {
+		int minLines = Math.max(1, DEFAULT_THRESHOLD / Math.max(1, lineSamples));
+		if (lines <= minLines) {
+			processor.process(0, lines);
+		} else {
+			ForkJoinPool.commonPool().invoke(new LineRangeTask(processor, 0, lines, minLines));
+		}
+	}
+
+	/**
+	 * Move a BIP line (pixel after pixel, each with all of its bands) to its place in band sequential memory
+	 * @param line the BIP line, with <code>samples * bands</code> elements
+	 * @param bandArrays array where each band is stored
+	 * @param bandOffsets position of each band within its array. Bands are stored row-major
+	 * @param lineIndex which line of the image this is
+	 * @param samples number of samples per line
+	 */
+	public static void bipLineToBsq(int[] line, int[][] bandArrays, int[] bandOffsets, int lineIndex, int samples) {
+		int bands = bandArrays.length;
+		int lineOffset = lineIndex * samples;
+		for (int s0 = 0; s0 < samples; s0 += TILE) {
+			int s1 = Math.min(samples, s0 + TILE);
+			for (int b0 = 0; b0 < bands; b0 += TILE) {
+				int b1 = Math.min(bands, b0 + TILE);
+				for (int b = b0; b < b1; b++) {
+					int[] band = bandArrays[b];
+					int base = bandOffsets[b] + lineOffset;
+					for (int s = s0; s < s1; s++) {
+						band[base + s] = line[s * bands + b];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inverse of {@link #bipLineToBsq(int[], int[][], int[], int, int)}
+	 * @param bandArrays array where each band is stored
+	 * @param bandOffsets position of each band within its array. Bands are stored row-major
+	 * @param lineIndex which line of the image to take
+	 * @param samples number of samples per line
+	 * @param line where to put the BIP line, with <code>samples * bands</code> elements
+	 */
+	public static void bsqToBipLine(int[][] bandArrays, int[] bandOffsets, int lineIndex, int samples, int[] line) {
+		int bands = bandArrays.length;
+		int lineOffset = lineIndex * samples;
+		for (int s0 = 0; s0 < samples; s0 += TILE) {
+			int s1 = Math.min(samples, s0 + TILE);
+			for (int b0 = 0; b0 < bands; b0 += TILE) {
+				int b1 = Math.min(bands, b0 + TILE);
+				for (int b = b0; b < b1; b++) {
+					int[] band = bandArrays[b];
+					int base = bandOffsets[b] + lineOffset;
+					for (int s = s0; s < s1; s++) {
+						line[s * bands + b] = band[base + s];
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Splits line ranges in half until they are small enough
+	 */
+	@SuppressWarnings("serial")
+	private static class LineRangeTask extends RecursiveAction {
+		private LineRangeProcessor processor;
+		private int fromLine, toLine, minLines;
+
+		public LineRangeTask(LineRangeProcessor processor, int fromLine, int toLine, int minLines) {
+			this.processor = processor;
+			this.fromLine = fromLine;
+			this.toLine = toLine;
+			this.minLines = minLines;
+		}
+
+		@Override
+		protected void compute() {
+			int lines = toLine - fromLine;
+			if (lines < 2 * minLines) {
+				processor.process(fromLine, toLine);
+				return;
+			}
+			int middle = fromLine + lines / 2;
+			invokeAll(new LineRangeTask(processor, fromLine, middle, minLines),
+					new LineRangeTask(processor, middle, toLine, minLines));
+		}
+	}
+
+}
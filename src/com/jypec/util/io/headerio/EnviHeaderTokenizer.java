@@ -0,0 +1,143 @@
+package com.jypec.util.io.headerio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits an ENVI header into its <code>key = value</code> entries in a single pass
+ * over the stream. Values are either the rest of the line, or everything between a pair
+ * of braces (lists, which can span multiple lines). Lines without an '=' sign are skipped
+ * @author Daniel
+ */
+class EnviHeaderTokenizer {
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private InputStream stream;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position, limit;
+	/** bytes consumed so far, and how many can be consumed at most */
+	private long consumed, maxConsumed = Long.MAX_VALUE;
+
+	private byte[] token = new byte[256];
+	private int tokenLength;
+	private String key, value;
+
+	/**
+	 * @param stream where to read the header from
+	 */
+	public EnviHeaderTokenizer(InputStream stream) {
+		this.stream = stream;
+	}
+
+	/**
+	 * Stop reading once the given number of bytes have been read, e.g: when the image
+	 * data comes after the header
+	 * @param maxConsumed
+	 */
+	public void setLimit(long maxConsumed) {
+		this.maxConsumed = maxConsumed;
+	}
+
+	/**
+	 * Move on to the next entry
+	 * @return true if there was one, false if the header is over
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			/** key, up to the '=' sign */
+			this.tokenLength = 0;
+			int c = this.read();
+			while (c != -1 && c != '=' && c != '\n' && c != '\r') {
+				this.append(c);
+				c = this.read();
+			}
+			if (c == -1) {
+				return false;
+			} else if (c != '=') {
+				continue;
+			}
+			this.key = this.tokenAsString();
+
+			/** value, which might start in the following lines */
+			c = this.read();
+			while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+				c = this.read();
+			}
+			this.tokenLength = 0;
+			if (c == '{') {
+				while (c != -1 && c != '}') {
+					this.append(c);
+					c = this.read();
+				}
+				if (c == -1) {
+					return false; //unclosed list
+				}
+				this.append(c);
+				//ignore the rest of the line
+				while (c != -1 && c != '\n') {
+					c = this.read();
+				}
+			} else {
+				while (c != -1 && c != '\n') {
+					this.append(c);
+					c = this.read();
+				}
+			}
+			this.value = this.tokenAsString();
+
+			if (!this.key.isEmpty() && !this.value.isEmpty()) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the key of the current entry, trimmed
+	 */
+	public String getKey() {
+		return this.key;
+	}
+
+	/**
+	 * @return the value of the current entry, trimmed. Lists keep their braces
+	 */
+	public String getValue() {
+		return this.value;
+	}
+
+	/**
+	 * @return the next byte, or -1 if there are no more to read
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		if (this.consumed >= this.maxConsumed) {
+			return -1;
+		}
+		if (this.position == this.limit) {
+			this.limit = this.stream.read(this.buffer, 0, this.buffer.length);
+			this.position = 0;
+			if (this.limit <= 0) {
+				this.limit = 0;
+				return -1;
+			}
+		}
+		this.consumed++;
+		return this.buffer[this.position++] & 0xff;
+	}
+
+	private void append(int c) {
+		if (this.tokenLength == this.token.length) {
+			this.token = Arrays.copyOf(this.token, this.token.length * 2);
+		}
+		this.token[this.tokenLength++] = (byte) c;
+	}
+
+	private String tokenAsString() {
+		return new String(this.token, 0, this.tokenLength, StandardCharsets.UTF_8).trim();
+	}
+
+}
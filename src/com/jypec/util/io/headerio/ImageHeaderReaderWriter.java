@@ -6,9 +6,6 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Map.Entry;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.jypec.img.HeaderConstants;
 import com.jypec.img.ImageHeaderData;
@@ -27,8 +24,6 @@ public class ImageHeaderReaderWriter {
 	private static final byte CODE_JYPEC_HEADER = (byte) 0xff;
 	
 
-	private static final String DATA_PATTERN = "^([^=\\n\\r]+?)\\s+=\\s+([^\\{].*?|\\{.*?\\})\\s*$";
-
 	/**
 	 * Checks whether the data is compressed or uncompressed then 
 	 * loads it into this object
@@ -61,37 +56,22 @@ public class ImageHeaderReaderWriter {
 	 */
 	private static int loadFromUncompressedStream(InputStream stream, ImageHeaderData ihd) throws IOException {
 		ihd.clear();
-		Scanner scn = new Scanner(stream);
-		int horizon = 0; //for now no limit. If we find the "header offset" keyword, set the horizon to it
-		while (true) {
-			//find the next within horizon
-			String s = scn.findWithinHorizon(Pattern.compile(DATA_PATTERN, Pattern.MULTILINE | Pattern.DOTALL), horizon);
-			if (s == null) {
-				break;
-			}
-			//split into individual parts and create the parameter
-			Matcher m = Pattern.compile(DATA_PATTERN, Pattern.MULTILINE | Pattern.DOTALL).matcher(s);
-			m.find(); //should always work since s is this pattern, we only use this to split it
-			ParameterReaderWriter prw = new ParameterReaderWriter(m.group(1).trim());
-			prw.parseData(m.group(2).trim());
-			//if it is the offset, set the new horizon
+		EnviHeaderTokenizer tokenizer = new EnviHeaderTokenizer(stream);
+		int offset = 0; //for now no limit. If we find the "header offset" keyword, stop reading there
+		while (tokenizer.next()) {
+			ParameterReaderWriter prw = new ParameterReaderWriter(tokenizer.getKey());
+			prw.parseData(tokenizer.getValue());
+			//if it is the offset, the header ends there
 			if (prw.getHeaderConstant() == HeaderConstants.HEADER_OFFSET) {
-				/** 
-				 * Note that setting the horizon this way will probably make the scanner go past
-				 * the header limit, maybe with some other data structures this can be fixed so 
-				 * that this function returns the input stream in the exact position it needs to be
-				 * for the data to start to be read
-				 */
-				horizon = (int) prw.getData();
-			} else if (prw.getHeaderConstant() == HeaderConstants.HEADER_UNKNOWN) { //otherwise save it. Do not save the offset since it'll probably change
-				ihd.put(prw.getHeaderConstant(), prw.getData());
-				//ignore
-			} else {
+				offset = (int) prw.getData();
+				if (offset > 0) { //data comes after the header in the same stream
+					tokenizer.setLimit(offset - 1); //the header code byte was already read
+				}
+			} else { //otherwise save it. Do not save the offset since it'll probably change
 				ihd.put(prw.getHeaderConstant(), prw.getData());
 			}
 		}
-		scn.close();
-		return horizon;
+		return offset;
 	}
 
 	/**
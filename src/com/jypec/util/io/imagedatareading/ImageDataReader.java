@@ -3,6 +3,7 @@ package com.jypec.util.io.imagedatareading;
 import java.nio.ByteBuffer;
 
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.util.io.ChunkedByteBuffer;
 
 /**
  * Interface to define image data readers
@@ -16,5 +17,12 @@ public interface ImageDataReader {
 	 * @param hi
 	 */
 	public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi);
+	
+	/**
+	 * Reads a hyperspectral image from a buffer that might be over 2GB
+	 * @param cb
+	 * @param hi
+	 */
+	public void readFromBuffer(ChunkedByteBuffer cb, HyperspectralImageData hi);
 
 }
@@ -1,10 +1,17 @@
 package com.jypec.util.io.imagedatareading;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageIntegerData;
 import com.jypec.img.ImageDataType;
+import com.jypec.util.io.ChunkedByteBuffer;
 import com.jypec.util.io.IOUtilities;
+import com.jypec.util.io.Interleaving;
 import com.jypec.util.io.headerio.enums.BandOrdering;
 import com.jypec.util.io.headerio.enums.ByteOrdering;
 
@@ -14,202 +21,514 @@ import com.jypec.util.io.headerio.enums.ByteOrdering;
  */
 public class ImageDataReaderFactory {
 
-	
+
 	/**
-	 * @param imgOrdering 
-	 * @param byteOrdering 
-	 * @param type 
+	 * @param imgOrdering
+	 * @param byteOrdering
+	 * @param type
 	 * @return the imageWriter of your liking
 	 */
 	public static ImageDataReader getReader(BandOrdering imgOrdering, ByteOrdering byteOrdering, ImageDataType type) {
-		
+		SampleFormat format = getFormat(byteOrdering, type);
+
 		switch(imgOrdering) {
 		case BIL:
-			if (type.getBitDepth() % 8 == 0) {
-				return new BILByteImageReader(byteOrdering, type.getByteDepth());
-			} else {
-				return new BILBitImageReader(type.getBitDepth());
-			}
+			return new BILImageReader(format);
 		case BIP:
-			if (type.getBitDepth() % 8 == 0) {
-				return new BIPByteImageReader(byteOrdering, type.getByteDepth());
-			} else {
-				return new BIPBitImageReader(type.getBitDepth());
-			}
+			return new BIPImageReader(format);
 		case BSQ:
-			if (type.getBitDepth() % 8 == 0) {
-				return new BSQByteImageReader(byteOrdering, type.getByteDepth());
-			} else {
-				return new BSQBitImageReader(type.getBitDepth());
-			}
+			return new BSQImageReader(format);
 		}
-		
+
 		throw new UnsupportedOperationException("The type of writer you requested is not implemented");
 	}
 	
+	/**
+	 * @param byteOrdering
+	 * @param type
+	 * @param cb buffer holding the samples, in any band ordering
+	 * @return a reader that decodes runs of samples from anywhere in the given buffer
+	 */
+	public static SampleRunReader getRunReader(ByteOrdering byteOrdering, ImageDataType type, final ChunkedByteBuffer cb) {
+		final SampleFormat format = getFormat(byteOrdering, type);
+		return new SampleRunReader() {
+			@Override
+			public void readRun(long firstSample, int[] dst, int offset, int length) {
+				format.sourceAt(cb, firstSample).read(dst, offset, length);
+			}
+		};
+	}
 	
+	private static SampleFormat getFormat(ByteOrdering byteOrdering, ImageDataType type) {
+		if (type.getBitDepth() % 8 == 0) {
+			return new ByteSampleFormat(byteOrdering, type.getByteDepth());
+		} else {
+			return new BitSampleFormat(type.getBitDepth());
+		}
+	}
+
+
 	/**
-	 * Useful class frame for writing images which type bit depth is a multiple of 8
+	 * How samples are laid out in the buffer
 	 * @author Daniel
-	 *  * @see {@link BitImageReader}
 	 */
-	private static abstract class ByteImageReader implements ImageDataReader {
-		protected ByteOrdering byteOrdering;
-		protected int dataBytes;
-		
-		public ByteImageReader(ByteOrdering byteOrdering, int dataBytes) {
-			this.byteOrdering = byteOrdering;
-			this.dataBytes = dataBytes;
-		}
+	private static abstract class SampleFormat {
+		/**
+		 * @param cb buffer holding the image
+		 * @param firstSample index (in samples, not bytes) of the first sample to read
+		 * @return a new source reading samples from the given one on
+		 */
+		public abstract SampleSource sourceAt(ChunkedByteBuffer cb, long firstSample);
+
+		/**
+		 * @param samples
+		 * @return the number of bytes that the given number of samples occupy
+		 */
+		public abstract long byteLength(long samples);
 	}
-	
-	private static class BIPByteImageReader extends ByteImageReader {
-		public BIPByteImageReader(ByteOrdering byteOrdering, int dataBytes) {
-			super(byteOrdering, dataBytes);
+
+	/**
+	 * Reads runs of consecutive samples. Each source has its own position,
+	 * so many can be used at once over the same buffer
+	 * @author Daniel
+	 */
+	private static abstract class SampleSource {
+		/**
+		 * Read the next samples from the buffer
+		 * @param dst where to put them
+		 * @param offset position of dst where the first sample goes
+		 * @param length number of samples to read
+		 */
+		public abstract void read(int[] dst, int offset, int length);
+	}
+
+
+	/**
+	 * Useful class frame for reading images in any band ordering.
+	 * Samples are transferred in bulk by {@link SampleSource}s, and copied straight into
+	 * the bands of {@link HyperspectralImageIntegerData}
+	 * @author Daniel
+	 */
+	private static abstract class BulkImageReader implements ImageDataReader {
+		protected SampleFormat format;
+		protected ChunkedByteBuffer source;
+
+		public BulkImageReader(SampleFormat format) {
+			this.format = format;
 		}
 
 		@Override
 		public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-					for (int i = 0; i < hi.getNumberOfBands(); i++) {
-						hi.setDataAt(IOUtilities.getBytes(this.byteOrdering, this.dataBytes, bb), i, j, k);
-					}
+			this.readFromBuffer(ChunkedByteBuffer.wrap(bb), hi);
+			bb.position(bb.position() + (int) this.format.byteLength(hi.getTotalNumberOfSamples()));
+		}
+
+		@Override
+		public void readFromBuffer(ChunkedByteBuffer cb, HyperspectralImageData hi) {
+			this.source = cb;
+			int[][] bandArrays = null;
+			int[] bandOffsets = null;
+			if (hi instanceof HyperspectralImageIntegerData) {
+				HyperspectralImageIntegerData hid = (HyperspectralImageIntegerData) hi;
+				bandArrays = new int[hi.getNumberOfBands()][];
+				bandOffsets = new int[hi.getNumberOfBands()];
+				for (int i = 0; i < hi.getNumberOfBands(); i++) {
+					bandArrays[i] = hid.getBandArray(i);
+					bandOffsets[i] = hid.getBandOffset(i);
 				}
 			}
+			this.readImage(hi, bandArrays, bandOffsets);
+		}
+
+		/**
+		 * Read the whole image in this reader's band ordering
+		 * @param hi where to store the samples
+		 * @param bandArrays array backing each band of hi, or null if it has none, in which
+		 * case samples are to be set in runs through hi
+		 * @param bandOffsets position of each band within its array
+		 */
+		protected abstract void readImage(HyperspectralImageData hi, int[][] bandArrays, int[] bandOffsets);
+
+		/**
+		 * @param firstSample index (in samples, not bytes) of the first sample to read
+		 * @return a new source over the buffer being read
+		 */
+		protected SampleSource sourceAt(long firstSample) {
+			return this.format.sourceAt(this.source, firstSample);
 		}
 	}
-	
-	private static class BILByteImageReader extends ByteImageReader {
-		public BILByteImageReader(ByteOrdering byteOrdering, int dataBytes) {
-			super(byteOrdering, dataBytes);
+
+	private static class BIPImageReader extends BulkImageReader {
+		public BIPImageReader(SampleFormat format) {
+			super(format);
 		}
 
 		@Override
-		public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int i = 0; i < hi.getNumberOfBands(); i++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						hi.setDataAt(IOUtilities.getBytes(this.byteOrdering, this.dataBytes, bb), i, j, k);
+		protected void readImage(final HyperspectralImageData hi, final int[][] bandArrays, final int[] bandOffsets) {
+			final int bands = hi.getNumberOfBands(), lines = hi.getNumberOfLines(), samples = hi.getNumberOfSamples();
+			Interleaving.forEachLineRange(lines, samples * bands, new Interleaving.LineRangeProcessor() {
+				@Override
+				public void process(int fromLine, int toLine) {
+					SampleSource source = sourceAt((long) fromLine * samples * bands);
+					int[] line = new int[samples * bands];
+					//without band arrays, the line is transposed in tiles to a row per band, then set in runs
+					int[][] rows = bandArrays == null ? new int[bands][samples] : null;
+					int[] rowOffsets = new int[bands];
+					for (int j = fromLine; j < toLine; j++) {
+						source.read(line, 0, line.length);
+						if (bandArrays != null) {
+							Interleaving.bipLineToBsq(line, bandArrays, bandOffsets, j, samples);
+						} else {
+							Interleaving.bipLineToBsq(line, rows, rowOffsets, 0, samples);
+							for (int i = 0; i < bands; i++) {
+								hi.setDataRun(i, j * samples, rows[i], 0, samples);
+							}
+						}
 					}
 				}
-			}
+			});
 		}
 	}
-	
-	private static class BSQByteImageReader extends ByteImageReader {
-		public BSQByteImageReader(ByteOrdering byteOrdering, int dataBytes) {
-			super(byteOrdering, dataBytes);
+
+	private static class BILImageReader extends BulkImageReader {
+		public BILImageReader(SampleFormat format) {
+			super(format);
 		}
 
 		@Override
-		public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi) {
+		protected void readImage(final HyperspectralImageData hi, final int[][] bandArrays, final int[] bandOffsets) {
+			final int bands = hi.getNumberOfBands(), lines = hi.getNumberOfLines(), samples = hi.getNumberOfSamples();
+			//each band of a BIL line is already contiguous in band sequential memory
+			Interleaving.forEachLineRange(lines, samples * bands, new Interleaving.LineRangeProcessor() {
+				@Override
+				public void process(int fromLine, int toLine) {
+					SampleSource source = sourceAt((long) fromLine * samples * bands);
+					int[] row = new int[samples];
+					for (int j = fromLine; j < toLine; j++) {
+						for (int i = 0; i < bands; i++) {
+							if (bandArrays != null) {
+								source.read(bandArrays[i], bandOffsets[i] + j * samples, samples);
+							} else {
+								source.read(row, 0, samples);
+								hi.setDataRun(i, j * samples, row, 0, samples);
+							}
+						}
+					}
+				}
+			});
+		}
+	}
+
+	private static class BSQImageReader extends BulkImageReader {
+		public BSQImageReader(SampleFormat format) {
+			super(format);
+		}
+
+		@Override
+		protected void readImage(HyperspectralImageData hi, int[][] bandArrays, int[] bandOffsets) {
+			SampleSource source = this.sourceAt(0);
+			int bandElements = hi.getNumberOfLines() * hi.getNumberOfSamples();
+			if (bandArrays != null) {
+				for (int i = 0; i < hi.getNumberOfBands(); i++) {
+					source.read(bandArrays[i], bandOffsets[i], bandElements);
+				}
+				return;
+			}
+			int[] row = new int[hi.getNumberOfSamples()];
 			for (int i = 0; i < hi.getNumberOfBands(); i++) {
 				for (int j = 0; j < hi.getNumberOfLines(); j++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						hi.setDataAt(IOUtilities.getBytes(this.byteOrdering, this.dataBytes, bb), i, j, k);
+					source.read(row, 0, row.length);
+					hi.setDataRun(i, j * row.length, row, 0, row.length);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Format for types which bit depth is a multiple of 8. Samples are read
+	 * through a view of each chunk in the right byte order
+	 * @author Daniel
+	 * @see {@link BitSampleFormat}
+	 */
+	private static class ByteSampleFormat extends SampleFormat {
+		protected ByteOrdering byteOrdering;
+		protected int dataBytes;
+
+		public ByteSampleFormat(ByteOrdering byteOrdering, int dataBytes) {
+			this.byteOrdering = byteOrdering;
+			this.dataBytes = dataBytes;
+		}
+
+		@Override
+		public SampleSource sourceAt(ChunkedByteBuffer cb, long firstSample) {
+			return new ByteSampleSource(cb, this.byteOrdering, this.dataBytes, firstSample);
+		}
+
+		@Override
+		public long byteLength(long samples) {
+			return samples * this.dataBytes;
+		}
+	}
+
+	private static class ByteSampleSource extends SampleSource {
+		/** samples converted at once when widening bytes and shorts */
+		private static final int CHUNK = 4096;
+
+		private ChunkedByteBuffer cb;
+		private ByteOrdering byteOrdering;
+		private ByteOrder order;
+		private int dataBytes;
+		/** byte position of the next sample */
+		private long position;
+		/** chunk the views are over */
+		private int chunk = -1;
+		private ByteBuffer bytes;
+		private ShortBuffer shorts;
+		private IntBuffer ints;
+		private byte[] byteChunk;
+		private short[] shortChunk;
+
+		public ByteSampleSource(ChunkedByteBuffer cb, ByteOrdering byteOrdering, int dataBytes, long firstSample) {
+			this.cb = cb;
+			this.byteOrdering = byteOrdering;
+			this.order = byteOrdering == ByteOrdering.LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			this.dataBytes = dataBytes;
+			this.position = firstSample * dataBytes;
+			if (dataBytes == 1) {
+				this.byteChunk = new byte[CHUNK];
+			} else if (dataBytes == 2) {
+				this.shortChunk = new short[CHUNK];
+			}
+		}
+
+		@Override
+		public void read(int[] dst, int offset, int length) {
+			while (length > 0) {
+				int n = (int) Math.min(length, this.cb.getRemainingInChunk(this.position) / this.dataBytes);
+				if (n <= 0) {
+					throw new BufferUnderflowException();
+				}
+				this.selectChunk();
+				this.readFromChunk(dst, offset, n);
+				this.position += (long) n * this.dataBytes;
+				offset += n;
+				length -= n;
+			}
+		}
+
+		/**
+		 * Place the views over the chunk containing the current position
+		 */
+		private void selectChunk() {
+			int index = this.cb.getChunkIndex(this.position);
+			if (index != this.chunk) {
+				ByteBuffer bb = this.cb.getChunk(index).duplicate().order(this.order);
+				switch (this.dataBytes) {
+				case 2:
+					this.shorts = bb.asShortBuffer();
+					break;
+				case 4:
+					this.ints = bb.asIntBuffer();
+					break;
+				default: //IOUtilities takes care of the ordering for 3 bytes
+					this.bytes = bb.order(ByteOrder.BIG_ENDIAN);
+				}
+				this.chunk = index;
+			}
+			int inChunk = this.cb.getChunkOffset(this.position);
+			switch (this.dataBytes) {
+			case 2:
+				this.shorts.position(inChunk >> 1);
+				break;
+			case 4:
+				this.ints.position(inChunk >> 2);
+				break;
+			default:
+				this.bytes.position(inChunk);
+			}
+		}
+
+		private void readFromChunk(int[] dst, int offset, int length) {
+			switch (this.dataBytes) {
+			case 1:
+				while (length > 0) {
+					int n = Math.min(length, CHUNK);
+					this.bytes.get(this.byteChunk, 0, n);
+					for (int i = 0; i < n; i++) {
+						dst[offset + i] = this.byteChunk[i] & 0xff;
+					}
+					offset += n;
+					length -= n;
+				}
+				break;
+			case 2:
+				while (length > 0) {
+					int n = Math.min(length, CHUNK);
+					this.shorts.get(this.shortChunk, 0, n);
+					for (int i = 0; i < n; i++) {
+						dst[offset + i] = this.shortChunk[i] & 0xffff;
 					}
+					offset += n;
+					length -= n;
+				}
+				break;
+			case 4:
+				this.ints.get(dst, offset, length);
+				break;
+			default:
+				for (int i = 0; i < length; i++) {
+					dst[offset + i] = IOUtilities.getBytes(this.byteOrdering, this.dataBytes, this.bytes);
 				}
 			}
 		}
 	}
-	
-	
+
+
 	/**
-	 * Useful class frame for implementing image readers which bit depth
-	 * is NOT a multiple of 8 
+	 * Format for types which bit depth is NOT a multiple of 8. Samples are packed
+	 * one after the other, most significant bit first, with no padding except
+	 * for the zeroes that complete the last byte
 	 * @author Daniel
-	 * @see {@link ByteImageReader}
+	 * @see {@link ByteSampleFormat}
 	 */
-	private static abstract class BitImageReader implements ImageDataReader {
-		
+	private static class BitSampleFormat extends SampleFormat {
 		protected int dataBits;
-		protected int dataMask;
-		protected int acc;
-		protected int accBitsLeft;
-		
-		public BitImageReader(int dataBits) {
+
+		public BitSampleFormat(int dataBits) {
 			if (dataBits < 1 || dataBits > 25) { //25+7=32 more wont fit in an integer
 				throw new IllegalArgumentException("Cannot work with that size");
 			}
 			this.dataBits = dataBits;
-			this.dataMask = (-1) >>> (32 - this.dataBits);
-			this.accBitsLeft = 32;
 		}
-	}
-	
-	private static class BIPBitImageReader extends BitImageReader {
-		public BIPBitImageReader(int dataBits) {
-			super(dataBits);
+
+		@Override
+		public SampleSource sourceAt(ChunkedByteBuffer cb, long firstSample) {
+			return new BitSampleSource(cb, this.dataBits, firstSample * this.dataBits);
 		}
-		
+
 		@Override
-		public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-					for (int i = 0; i < hi.getNumberOfBands(); i++) {
-						hi.setDataAt(getBits(this, bb), i, j, k);
-					}
-				}
-			}
+		public long byteLength(long samples) {
+			return (samples * this.dataBits + 7) >> 3;
 		}
 	}
-	
-	private static class BILBitImageReader extends BitImageReader {
-		public BILBitImageReader(int dataBits) {
-			super(dataBits);
+
+	/**
+	 * Unpacks samples a 64 bit word at a time. Whenever the current position is
+	 * byte aligned, a word is read and all the samples that fit in a whole number
+	 * of its bytes are extracted from it at once (e.g: 4 samples from
+	 * 6 bytes for 12 bit samples). Samples are taken one by one only to reach
+	 * alignment and near the end of each chunk
+	 * @author Daniel
+	 */
+	private static class BitSampleSource extends SampleSource {
+		private ChunkedByteBuffer cb;
+		private int dataBits;
+		private int dataMask;
+		private long bitPosition;
+		/** bytes and samples in each word read, or zero if the depth does not allow it */
+		private int groupBytes, groupSamples;
+
+		public BitSampleSource(ChunkedByteBuffer cb, int dataBits, long firstBit) {
+			this.cb = cb;
+			this.dataBits = dataBits;
+			this.dataMask = (-1) >>> (32 - dataBits);
+			this.bitPosition = firstBit;
+			//smallest run of whole bytes holding whole samples
+			int groupBits = dataBits;
+			while (groupBits % 8 != 0) {
+				groupBits += dataBits;
+			}
+			if (groupBits <= 64) {
+				this.groupSamples = (64 / groupBits) * (groupBits / dataBits);
+				this.groupBytes = this.groupSamples * dataBits / 8;
+			}
 		}
-		
+
 		@Override
-		public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int i = 0; i < hi.getNumberOfBands(); i++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						hi.setDataAt(getBits(this, bb), i, j, k);
+		public void read(int[] dst, int offset, int length) {
+			while (length > 0) {
+				if (this.groupSamples > 0 && length >= this.groupSamples && (this.bitPosition & 0x7) == 0) {
+					long byteIndex = this.bitPosition >>> 3;
+					ByteBuffer chunk = this.cb.getChunk(this.cb.getChunkIndex(byteIndex));
+					int index = this.cb.getChunkOffset(byteIndex);
+					//the last word read must be fully within the chunk
+					int room = chunk.limit() - 8 - index;
+					int groups = room < 0 ? 0 : Math.min(length / this.groupSamples, room / this.groupBytes + 1);
+					if (groups > 0) {
+						this.unpackGroups(chunk, dst, offset, index, groups);
+						offset += groups * this.groupSamples;
+						length -= groups * this.groupSamples;
+						this.bitPosition += (long) groups * this.groupBytes * 8;
+						continue;
 					}
 				}
+				//not aligned, near the end of the run or near the end of the chunk
+				dst[offset++] = this.readOne();
+				length--;
 			}
 		}
-	}
-	
-	private static class BSQBitImageReader extends BitImageReader {
-		public BSQBitImageReader(int dataBits) {
-			super(dataBits);
-		}
-		
-		@Override
-		public void readFromBuffer(ByteBuffer bb, HyperspectralImageData hi) {
-			for (int i = 0; i < hi.getNumberOfBands(); i++) {
-				for (int j = 0; j < hi.getNumberOfLines(); j++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						hi.setDataAt(getBits(this, bb), i, j, k);
+
+		/**
+		 * Unpack the given number of groups, starting at the given byte of the chunk
+		 */
+		private void unpackGroups(ByteBuffer chunk, int[] dst, int offset, int index, int groups) {
+			switch (this.dataBits) {
+			case 10:
+				for (int g = 0; g < groups; g++, index += 5, offset += 4) {
+					long word = chunk.getLong(index);
+					dst[offset]     = (int) (word >>> 54) & 0x3ff;
+					dst[offset + 1] = (int) (word >>> 44) & 0x3ff;
+					dst[offset + 2] = (int) (word >>> 34) & 0x3ff;
+					dst[offset + 3] = (int) (word >>> 24) & 0x3ff;
+				}
+				break;
+			case 12:
+				for (int g = 0; g < groups; g++, index += 6, offset += 4) {
+					long word = chunk.getLong(index);
+					dst[offset]     = (int) (word >>> 52) & 0xfff;
+					dst[offset + 1] = (int) (word >>> 40) & 0xfff;
+					dst[offset + 2] = (int) (word >>> 28) & 0xfff;
+					dst[offset + 3] = (int) (word >>> 16) & 0xfff;
+				}
+				break;
+			case 14:
+				for (int g = 0; g < groups; g++, index += 7, offset += 4) {
+					long word = chunk.getLong(index);
+					dst[offset]     = (int) (word >>> 50) & 0x3fff;
+					dst[offset + 1] = (int) (word >>> 36) & 0x3fff;
+					dst[offset + 2] = (int) (word >>> 22) & 0x3fff;
+					dst[offset + 3] = (int) (word >>> 8) & 0x3fff;
+				}
+				break;
+			default:
+				for (int g = 0; g < groups; g++, index += this.groupBytes) {
+					long word = chunk.getLong(index);
+					int shift = 64;
+					for (int s = 0; s < this.groupSamples; s++) {
+						shift -= this.dataBits;
+						dst[offset++] = (int) (word >>> shift) & this.dataMask;
 					}
 				}
 			}
 		}
-	}
-	
-	
-	/**
-	 * Gets the next set of bits from the bytebuffer and returns it.
-	 * This is limited by implementation to reading a max of 25 bit
-	 * words. If more are needed the implementation has to change, though
-	 * right now (c.2017) i don't know of any hyperspectral images with
-	 * bit depths that high.
-	 * @param bir
-	 * @param bb
-	 * @return the newly read sample. bir's accumulator is updated so that
-	 * future reads remain consistent
-	 */
-	private static int getBits(BitImageReader bir, ByteBuffer bb) {
-		int toRead = Math.min(4 - (bir.accBitsLeft / 8), bb.remaining());
-		bir.accBitsLeft -= toRead << 3;
-		int read = IOUtilities.getLeftBytes(toRead, bb);
-		bir.acc |= read >>> (32 - bir.accBitsLeft);
-		int result = bir.acc >>> (32 - bir.dataBits);
-		bir.acc <<= bir.dataBits;
-		bir.accBitsLeft += bir.dataBits;
-		return result & bir.dataMask;
+
+		/**
+		 * @return the sample at the current position, which is then advanced
+		 */
+		private int readOne() {
+			long byteIndex = this.bitPosition >>> 3;
+			ByteBuffer chunk = this.cb.getChunk(this.cb.getChunkIndex(byteIndex));
+			int index = this.cb.getChunkOffset(byteIndex);
+			int shift = (int) (this.bitPosition & 0x7);
+			int needed = (shift + this.dataBits + 7) >> 3;
+			long window = 0;
+			for (int b = 0; b < needed; b++) {
+				window = (window << 8) | (chunk.get(index + b) & 0xff);
+			}
+			this.bitPosition += this.dataBits;
+			return (int) (window >>> (needed * 8 - shift - this.dataBits)) & this.dataMask;
+		}
 	}
 
 }
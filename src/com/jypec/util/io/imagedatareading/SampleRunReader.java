@@ -0,0 +1,18 @@
+package com.jypec.util.io.imagedatareading;
+
+/**
+ * Decodes runs of consecutive samples from a buffer holding raw image data,
+ * in the order they are stored in (so whatever band ordering the buffer has)
+ * @author Daniel
+ */
+public interface SampleRunReader {
+	
+	/**
+	 * @param firstSample index (in samples, not bytes) of the first sample to read
+	 * @param dst where to put the samples
+	 * @param offset position of dst where the first sample goes
+	 * @param length number of samples to read
+	 */
+	public void readRun(long firstSample, int[] dst, int offset, int length);
+
+}
@@ -3,6 +3,7 @@ package com.jypec.util.io.imagedatawriting;
 import java.nio.ByteBuffer;
 
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.util.io.ChunkedByteBuffer;
 import com.jypec.util.io.HyperspectralImageDataWriter;
 
 /**
@@ -20,5 +21,24 @@ public interface ImageDataWriter {
 	 */
 	public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb);
 	
+	/**
+	 * Same as {@link #writeToBuffer(HyperspectralImageData, ByteBuffer)} for 
+	 * buffers that might be over 2GB
+	 * @param hi
+	 * @param cb
+	 */
+	public void writeToBuffer(HyperspectralImageData hi, ChunkedByteBuffer cb);
+	
+	/**
+	 * Write some consecutive lines of a bigger image to their place in the buffer,
+	 * so that images can be written a piece at a time. The lines must start at a byte boundary,
+	 * which any multiple of 8 does. For BSQ ordering, bands must also start at byte boundaries.
+	 * @param hi image with the lines to write, with all the bands and samples of the whole image
+	 * @param firstLine index of the first line of hi within the whole image
+	 * @param totalLines number of lines of the whole image
+	 * @param cb buffer holding the whole image
+	 */
+	public void writeLinesToBuffer(HyperspectralImageData hi, int firstLine, int totalLines, ChunkedByteBuffer cb);
+	
 	
 }
@@ -1,10 +1,17 @@
 package com.jypec.util.io.imagedatawriting;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageIntegerData;
 import com.jypec.img.ImageDataType;
+import com.jypec.util.io.ChunkedByteBuffer;
 import com.jypec.util.io.IOUtilities;
+import com.jypec.util.io.Interleaving;
 import com.jypec.util.io.headerio.enums.BandOrdering;
 import com.jypec.util.io.headerio.enums.ByteOrdering;
 
@@ -13,222 +20,576 @@ import com.jypec.util.io.headerio.enums.ByteOrdering;
  * @author Daniel
  *
  */
-public class ImageDataWriterFactory {	
-	
+public class ImageDataWriterFactory {
+
 	/**
-	 * @param imgOrdering 
-	 * @param byteOrdering 
-	 * @param type 
+	 * @param imgOrdering
+	 * @param byteOrdering
+	 * @param type
 	 * @return the imageWriter of your liking
 	 */
 	public static ImageDataWriter getWriter(BandOrdering imgOrdering, ByteOrdering byteOrdering, ImageDataType type) {
-		
+		SampleFormat format;
+		if (type.getBitDepth() % 8 == 0) {
+			format = new ByteSampleFormat(byteOrdering, type.getByteDepth());
+		} else {
+			format = new BitSampleFormat(type.getBitDepth());
+		}
+
 		switch(imgOrdering) {
 		case BIL:
-			if (type.getBitDepth() % 8 == 0) {
-				return new BILByteImageWriter(byteOrdering, type.getByteDepth());
-			} else {
-				return new BILBitImageWriter(type.getBitDepth());
-			}
+			return new BILImageWriter(format);
 		case BIP:
-			if (type.getBitDepth() % 8 == 0) {
-				return new BIPByteImageWriter(byteOrdering, type.getByteDepth());
-			} else {
-				return new BIPBitImageWriter(type.getBitDepth());
-			}
+			return new BIPImageWriter(format);
 		case BSQ:
-			if (type.getBitDepth() % 8 == 0) {
-				return new BSQByteImageWriter(byteOrdering, type.getByteDepth());
-			} else {
-				return new BSQBitImageWriter(type.getBitDepth());
-			}
+			return new BSQImageWriter(format);
 		}
-		
+
 		throw new UnsupportedOperationException("The type of writer you requested is not implemented");
 	}
-	
+
+
 	/**
-	 * Useful class frame for writing images which type bit depth is a multiple of 8
+	 * How samples are laid out in the buffer
 	 * @author Daniel
-	 *  * @see {@link BitImageWriter}
 	 */
-	private static abstract class ByteImageWriter implements ImageDataWriter {
-		protected ByteOrdering byteOrdering;
-		protected int dataBytes;
-		
-		public ByteImageWriter(ByteOrdering byteOrdering, int dataBytes) {
-			this.byteOrdering = byteOrdering;
-			this.dataBytes = dataBytes;
-		}
+	private static abstract class SampleFormat {
+		/**
+		 * @param cb buffer where the image goes
+		 * @param firstSample index (in samples, not bytes) of the first sample to write.
+		 * It must start at a byte boundary
+		 * @return a new sink writing samples from the given one on
+		 */
+		public abstract SampleSink sinkAt(ChunkedByteBuffer cb, long firstSample);
+
+		/**
+		 * @param samples
+		 * @return the number of bytes that the given number of samples occupy
+		 */
+		public abstract long byteLength(long samples);
+
+		/**
+		 * @param samples
+		 * @return true if the given number of samples fill a whole number of bytes,
+		 * so that runs of that size can be written independently
+		 */
+		public abstract boolean fillsBytes(int samples);
 	}
-	
-	private static class BIPByteImageWriter extends ByteImageWriter {
-		public BIPByteImageWriter(ByteOrdering byteOrdering, int dataBytes) {
-			super(byteOrdering, dataBytes);
+
+	/**
+	 * Writes runs of consecutive samples. Each sink has its own position,
+	 * so many can be used at once over disjoint parts of the same buffer
+	 * @author Daniel
+	 */
+	private static abstract class SampleSink {
+		/**
+		 * Write the next samples to the buffer
+		 * @param src where to take them from
+		 * @param offset position of src where the first sample is
+		 * @param length number of samples to write
+		 */
+		public abstract void write(int[] src, int offset, int length);
+
+		/**
+		 * Write whatever is left pending, completing the last byte with zeroes
+		 */
+		public abstract void flush();
+	}
+
+
+	/**
+	 * Useful class frame for writing images in any band ordering.
+	 * Samples are transferred in bulk by {@link SampleSink}s, straight from
+	 * the bands of {@link HyperspectralImageIntegerData}
+	 * @author Daniel
+	 */
+	private static abstract class BulkImageWriter implements ImageDataWriter {
+		protected SampleFormat format;
+		protected ChunkedByteBuffer target;
+		/** where the lines being written go within the whole image */
+		protected int firstLine, totalLines;
+
+		public BulkImageWriter(SampleFormat format) {
+			this.format = format;
 		}
-		
+
 		@Override
 		public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-					for (int i = 0; i < hi.getNumberOfBands(); i++) {
-						IOUtilities.putBytes(hi.getDataAt(i, j, k), this.byteOrdering, this.dataBytes, bb);
-					}
+			this.writeToBuffer(hi, ChunkedByteBuffer.wrap(bb));
+			bb.position(bb.position() + (int) this.format.byteLength(hi.getTotalNumberOfSamples()));
+		}
+
+		@Override
+		public void writeToBuffer(HyperspectralImageData hi, ChunkedByteBuffer cb) {
+			this.writeLinesToBuffer(hi, 0, hi.getNumberOfLines(), cb);
+		}
+
+		@Override
+		public void writeLinesToBuffer(HyperspectralImageData hi, int firstLine, int totalLines, ChunkedByteBuffer cb) {
+			if (firstLine < 0 || firstLine + hi.getNumberOfLines() > totalLines) {
+				throw new IllegalArgumentException("The lines do not fit in the image");
+			}
+			this.target = cb;
+			this.firstLine = firstLine;
+			this.totalLines = totalLines;
+			int[][] bandArrays = null;
+			int[] bandOffsets = null;
+			if (hi instanceof HyperspectralImageIntegerData) {
+				HyperspectralImageIntegerData hid = (HyperspectralImageIntegerData) hi;
+				bandArrays = new int[hi.getNumberOfBands()][];
+				bandOffsets = new int[hi.getNumberOfBands()];
+				for (int i = 0; i < hi.getNumberOfBands(); i++) {
+					bandArrays[i] = hid.getBandArray(i);
+					bandOffsets[i] = hid.getBandOffset(i);
 				}
 			}
+			this.writeImage(hi, bandArrays, bandOffsets);
+		}
+
+		/**
+		 * Write the lines of the given image to their place in the whole one, in this writer's band ordering
+		 * @param hi where to take the samples from
+		 * @param bandArrays array backing each band of hi, or null if it has none, in which
+		 * case samples are to be taken in runs through hi
+		 * @param bandOffsets position of each band within its array
+		 */
+		protected abstract void writeImage(HyperspectralImageData hi, int[][] bandArrays, int[] bandOffsets);
+
+		/**
+		 * @param firstSample index (in samples, not bytes) of the first sample to write
+		 * @return a new sink over the buffer being written
+		 */
+		protected SampleSink sinkAt(long firstSample) {
+			return this.format.sinkAt(this.target, firstSample);
+		}
+
+		/**
+		 * @param lineSamples
+		 * @return the index of the first sample of the lines being written, for orderings where lines are contiguous
+		 */
+		protected long linesStart(int lineSamples) {
+			if (this.firstLine % 8 != 0 && !this.format.fillsBytes(lineSamples)) {
+				throw new IllegalArgumentException("The lines do not start at a byte boundary");
+			}
+			return (long) this.firstLine * lineSamples;
+		}
+
+		/**
+		 * Process the lines of the image across threads if they end at byte boundaries,
+		 * otherwise all at once
+		 */
+		protected void forEachLineRange(int lines, int lineSamples, Interleaving.LineRangeProcessor processor) {
+			if (this.format.fillsBytes(lineSamples)) {
+				Interleaving.forEachLineRange(lines, lineSamples, processor);
+			} else {
+				processor.process(0, lines);
+			}
 		}
 	}
-	
-	private static class BILByteImageWriter extends ByteImageWriter {
-		public BILByteImageWriter(ByteOrdering byteOrdering, int dataBytes) {
-			super(byteOrdering, dataBytes);
+
+	private static class BIPImageWriter extends BulkImageWriter {
+		public BIPImageWriter(SampleFormat format) {
+			super(format);
 		}
-		
+
 		@Override
-		public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int i = 0; i < hi.getNumberOfBands(); i++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						IOUtilities.putBytes(hi.getDataAt(i, j, k), this.byteOrdering, this.dataBytes, bb);
+		protected void writeImage(final HyperspectralImageData hi, final int[][] bandArrays, final int[] bandOffsets) {
+			final int bands = hi.getNumberOfBands(), lines = hi.getNumberOfLines(), samples = hi.getNumberOfSamples();
+			final long start = this.linesStart(samples * bands);
+			this.forEachLineRange(lines, samples * bands, new Interleaving.LineRangeProcessor() {
+				@Override
+				public void process(int fromLine, int toLine) {
+					SampleSink sink = sinkAt(start + (long) fromLine * samples * bands);
+					int[] line = new int[samples * bands];
+					//without band arrays, rows of the line are gathered first so that it is still transposed in tiles
+					int[][] rows = bandArrays == null ? new int[bands][samples] : null;
+					int[] rowOffsets = new int[bands];
+					for (int j = fromLine; j < toLine; j++) {
+						if (bandArrays != null) {
+							Interleaving.bsqToBipLine(bandArrays, bandOffsets, j, samples, line);
+						} else {
+							for (int i = 0; i < bands; i++) {
+								hi.getDataRun(i, j * samples, rows[i], 0, samples);
+							}
+							Interleaving.bsqToBipLine(rows, rowOffsets, 0, samples, line);
+						}
+						sink.write(line, 0, line.length);
 					}
+					sink.flush();
 				}
-			}
+			});
 		}
 	}
-	
-	private static class BSQByteImageWriter extends ByteImageWriter {
-		public BSQByteImageWriter(ByteOrdering byteOrdering, int dataBytes) {
-			super(byteOrdering, dataBytes);
+
+	private static class BILImageWriter extends BulkImageWriter {
+		public BILImageWriter(SampleFormat format) {
+			super(format);
 		}
-		
+
 		@Override
-		public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb) {
+		protected void writeImage(final HyperspectralImageData hi, final int[][] bandArrays, final int[] bandOffsets) {
+			final int bands = hi.getNumberOfBands(), lines = hi.getNumberOfLines(), samples = hi.getNumberOfSamples();
+			final long start = this.linesStart(samples * bands);
+			//each band of a BIL line is already contiguous in band sequential memory
+			this.forEachLineRange(lines, samples * bands, new Interleaving.LineRangeProcessor() {
+				@Override
+				public void process(int fromLine, int toLine) {
+					SampleSink sink = sinkAt(start + (long) fromLine * samples * bands);
+					int[] row = new int[samples];
+					for (int j = fromLine; j < toLine; j++) {
+						for (int i = 0; i < bands; i++) {
+							if (bandArrays != null) {
+								sink.write(bandArrays[i], bandOffsets[i] + j * samples, samples);
+							} else {
+								hi.getDataRun(i, j * samples, row, 0, samples);
+								sink.write(row, 0, samples);
+							}
+						}
+					}
+					sink.flush();
+				}
+			});
+		}
+	}
+
+	private static class BSQImageWriter extends BulkImageWriter {
+		public BSQImageWriter(SampleFormat format) {
+			super(format);
+		}
+
+		@Override
+		protected void writeImage(HyperspectralImageData hi, int[][] bandArrays, int[] bandOffsets) {
+			int bandElements = hi.getNumberOfLines() * hi.getNumberOfSamples();
+			if (this.firstLine == 0 && hi.getNumberOfLines() == this.totalLines) {
+				//whole image, all in one go
+				SampleSink sink = this.sinkAt(0);
+				for (int i = 0; i < hi.getNumberOfBands(); i++) {
+					this.writeBand(hi, bandArrays, bandOffsets, i, bandElements, sink);
+				}
+				sink.flush();
+				return;
+			}
+			
+			//the lines of each band go to a different place
+			long totalBandElements = (long) this.totalLines * hi.getNumberOfSamples();
+			if (!this.format.fillsBytes((int) (totalBandElements & 0x7))) { //only the remainder modulo 8 matters
+				throw new IllegalArgumentException("The bands do not start at byte boundaries");
+			}
+			long start = this.linesStart(hi.getNumberOfSamples());
 			for (int i = 0; i < hi.getNumberOfBands(); i++) {
+				SampleSink sink = this.sinkAt(i * totalBandElements + start);
+				this.writeBand(hi, bandArrays, bandOffsets, i, bandElements, sink);
+				sink.flush();
+			}
+		}
+		
+		private void writeBand(HyperspectralImageData hi, int[][] bandArrays, int[] bandOffsets, int band, int bandElements, SampleSink sink) {
+			if (bandArrays != null) {
+				sink.write(bandArrays[band], bandOffsets[band], bandElements);
+			} else {
+				int[] row = new int[hi.getNumberOfSamples()];
 				for (int j = 0; j < hi.getNumberOfLines(); j++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						IOUtilities.putBytes(hi.getDataAt(i, j, k), this.byteOrdering, this.dataBytes, bb);
-					}
+					hi.getDataRun(band, j * row.length, row, 0, row.length);
+					sink.write(row, 0, row.length);
 				}
 			}
 		}
 	}
-	
+
+
 	/**
-	 * Useful class frame for implementing image writers which bit depth
-	 * is NOT a multiple of 8 
+	 * Format for types which bit depth is a multiple of 8. Samples are written
+	 * through a view of each chunk in the right byte order
 	 * @author Daniel
-	 * @see {@link ByteImageWriter}
+	 * @see {@link BitSampleFormat}
 	 */
-	private static abstract class BitImageWriter implements ImageDataWriter {
-		
-		protected int dataBits;
-		protected int dataMask;
-		protected int acc;
-		protected int accBits;
-		
-		public BitImageWriter(int dataBits) {
-			if (dataBits < 1 || dataBits > 25) { //25+7=32 more wont fit in an integer
-				throw new IllegalArgumentException("Cannot work with that size");
-			}
-			this.dataBits = dataBits;
-			this.dataMask = (-1) >>> (32 - this.dataBits);
+	private static class ByteSampleFormat extends SampleFormat {
+		protected ByteOrdering byteOrdering;
+		protected int dataBytes;
+
+		public ByteSampleFormat(ByteOrdering byteOrdering, int dataBytes) {
+			this.byteOrdering = byteOrdering;
+			this.dataBytes = dataBytes;
 		}
-	}
-	
-	private static class BIPBitImageWriter extends BitImageWriter {
-		public BIPBitImageWriter(int dataBits) {
-			super(dataBits);
+
+		@Override
+		public SampleSink sinkAt(ChunkedByteBuffer cb, long firstSample) {
+			return new ByteSampleSink(cb, this.byteOrdering, this.dataBytes, firstSample);
 		}
-		
+
 		@Override
-		public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-					for (int i = 0; i < hi.getNumberOfBands(); i++) {
-						putBits(this, hi.getDataAt(i, j, k), bb);
-					}
-				}
-			}
-			emptyBuffer(this, bb);
+		public long byteLength(long samples) {
+			return samples * this.dataBytes;
+		}
+
+		@Override
+		public boolean fillsBytes(int samples) {
+			return true;
 		}
 	}
 
-	
-	private static class BILBitImageWriter extends BitImageWriter {
-		public BILBitImageWriter(int dataBits) {
-			super(dataBits);
+	private static class ByteSampleSink extends SampleSink {
+		/** samples converted at once when narrowing to bytes and shorts */
+		private static final int CHUNK = 4096;
+
+		private ChunkedByteBuffer cb;
+		private ByteOrdering byteOrdering;
+		private ByteOrder order;
+		private int dataBytes;
+		/** byte position of the next sample */
+		private long position;
+		/** chunk the views are over */
+		private int chunk = -1;
+		private ByteBuffer bytes;
+		private ShortBuffer shorts;
+		private IntBuffer ints;
+		private byte[] byteChunk;
+		private short[] shortChunk;
+
+		public ByteSampleSink(ChunkedByteBuffer cb, ByteOrdering byteOrdering, int dataBytes, long firstSample) {
+			this.cb = cb;
+			this.byteOrdering = byteOrdering;
+			this.order = byteOrdering == ByteOrdering.LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			this.dataBytes = dataBytes;
+			this.position = firstSample * dataBytes;
+			if (dataBytes == 1) {
+				this.byteChunk = new byte[CHUNK];
+			} else if (dataBytes == 2) {
+				this.shortChunk = new short[CHUNK];
+			}
 		}
-		
+
 		@Override
-		public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb) {
-			for (int j = 0; j < hi.getNumberOfLines(); j++) {
-				for (int i = 0; i < hi.getNumberOfBands(); i++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						putBits(this, hi.getDataAt(i, j, k), bb);
-					}
+		public void write(int[] src, int offset, int length) {
+			while (length > 0) {
+				int n = (int) Math.min(length, this.cb.getRemainingInChunk(this.position) / this.dataBytes);
+				if (n <= 0) {
+					throw new BufferOverflowException();
 				}
+				this.selectChunk();
+				this.writeToChunk(src, offset, n);
+				this.position += (long) n * this.dataBytes;
+				offset += n;
+				length -= n;
 			}
-			emptyBuffer(this, bb);
 		}
-	}
-	
-	private static class BSQBitImageWriter extends BitImageWriter {
-		
-		public BSQBitImageWriter(int dataBits) {
-			super(dataBits);
+
+		/**
+		 * Place the views over the chunk containing the current position
+		 */
+		private void selectChunk() {
+			int index = this.cb.getChunkIndex(this.position);
+			if (index != this.chunk) {
+				ByteBuffer bb = this.cb.getChunk(index).duplicate().order(this.order);
+				switch (this.dataBytes) {
+				case 2:
+					this.shorts = bb.asShortBuffer();
+					break;
+				case 4:
+					this.ints = bb.asIntBuffer();
+					break;
+				default: //IOUtilities takes care of the ordering for 3 bytes
+					this.bytes = bb.order(ByteOrder.BIG_ENDIAN);
+				}
+				this.chunk = index;
+			}
+			int inChunk = this.cb.getChunkOffset(this.position);
+			switch (this.dataBytes) {
+			case 2:
+				this.shorts.position(inChunk >> 1);
+				break;
+			case 4:
+				this.ints.position(inChunk >> 2);
+				break;
+			default:
+				this.bytes.position(inChunk);
+			}
 		}
-		
-		@Override
-		public void writeToBuffer(HyperspectralImageData hi, ByteBuffer bb) {
-			for (int i = 0; i < hi.getNumberOfBands(); i++) {
-				for (int j = 0; j < hi.getNumberOfLines(); j++) {
-					for (int k = 0; k < hi.getNumberOfSamples(); k++) {
-						putBits(this, hi.getDataAt(i, j, k), bb);
+
+		private void writeToChunk(int[] src, int offset, int length) {
+			switch (this.dataBytes) {
+			case 1:
+				while (length > 0) {
+					int n = Math.min(length, CHUNK);
+					for (int i = 0; i < n; i++) {
+						this.byteChunk[i] = (byte) src[offset + i];
 					}
+					this.bytes.put(this.byteChunk, 0, n);
+					offset += n;
+					length -= n;
+				}
+				break;
+			case 2:
+				while (length > 0) {
+					int n = Math.min(length, CHUNK);
+					for (int i = 0; i < n; i++) {
+						this.shortChunk[i] = (short) src[offset + i];
+					}
+					this.shorts.put(this.shortChunk, 0, n);
+					offset += n;
+					length -= n;
+				}
+				break;
+			case 4:
+				this.ints.put(src, offset, length);
+				break;
+			default:
+				for (int i = 0; i < length; i++) {
+					IOUtilities.putBytes(src[offset + i], this.byteOrdering, this.dataBytes, this.bytes);
 				}
 			}
-			emptyBuffer(this, bb);
+		}
+
+		@Override
+		public void flush() {
+			//nothing is ever pending
 		}
 	}
-	
+
+
 	/**
-	 * Empties the specified number of bits from the accumulator
-	 * into the buffer, filling with zeroes if necessary
-	 * @param acc
-	 * @param accBits
-	 * @param bb
+	 * Format for types which bit depth is NOT a multiple of 8. Samples are packed
+	 * one after the other, most significant bit first, with no padding except
+	 * for the zeroes that complete the last byte
+	 * @author Daniel
+	 * @see {@link ByteSampleFormat}
 	 */
-	private static void emptyBuffer(BitImageWriter biw, ByteBuffer bb) {
-		if (biw.accBits > 0) {
-			IOUtilities.putLeftBytes(biw.acc, (biw.accBits + 7) % 8, bb);
+	private static class BitSampleFormat extends SampleFormat {
+		protected int dataBits;
+
+		public BitSampleFormat(int dataBits) {
+			if (dataBits < 1 || dataBits > 25) { //keep the same limits as the reader
+				throw new IllegalArgumentException("Cannot work with that size");
+			}
+			this.dataBits = dataBits;
+		}
+
+		@Override
+		public SampleSink sinkAt(ChunkedByteBuffer cb, long firstSample) {
+			long firstBit = firstSample * this.dataBits;
+			if ((firstBit & 0x7) != 0) {
+				throw new IllegalArgumentException("Packed samples can only be written from a byte boundary");
+			}
+			return new BitSampleSink(cb, this.dataBits, firstBit >>> 3);
+		}
+
+		@Override
+		public long byteLength(long samples) {
+			return (samples * this.dataBits + 7) >> 3;
+		}
+
+		@Override
+		public boolean fillsBytes(int samples) {
+			return ((long) samples * this.dataBits & 0x7) == 0;
 		}
-		biw.acc = 0;
-		biw.accBits = 0;
 	}
-	
+
 	/**
-	 * Take the bits from the accumulator (has accBits in it), append the bits 
-	 * from the value (has dataBits in it), and drop any fully completed bytes into 
-	 * the given buffer. The resulting accumulator is returned. The number of bits 
-	 * left in the accumulator is equal to (accBits + dataBits) & 0x7, since any full
-	 * bytes are sent to the buffer. The number of bytes that the accumulator has to be
-	 * shifted right by is, for the same reason, (accBits + dataBits) & 0xf8; 
-	 * All of this values are update in the given bitImageWriter
-	 * @param biw
-	 * @param val
-	 * @param bb
+	 * Packs samples into a 64 bit accumulator that is written a whole word at a time.
+	 * Runs of samples that fill a whole number of bytes (e.g: 4 samples in
+	 * 6 bytes for 12 bit samples) are assembled first and then added to the
+	 * accumulator at once
+	 * @author Daniel
 	 */
-	private static void putBits(BitImageWriter biw, int val, ByteBuffer bb) {
-		biw.acc |= (val & biw.dataMask) << (32 - biw.dataBits - biw.accBits);
-		biw.accBits += biw.dataBits;
-		int accBytes = biw.accBits >> 3;
-		if (accBytes > 0) {
-			IOUtilities.putLeftBytes(biw.acc, accBytes, bb);
-		}
-		int bitsLost = (biw.accBits + biw.dataBits) & 0xf8;
-		biw.acc <<= bitsLost;
-		biw.accBits -= bitsLost;
-	}
+	private static class BitSampleSink extends SampleSink {
+		private ChunkedByteBuffer cb;
+		/** where the accumulator goes when full */
+		private long index;
+		private int dataBits;
+		private int dataMask;
+		/** bits pending to be written, left aligned */
+		private long acc;
+		private int accBits;
+		/** samples in each group, or zero if the depth does not allow it */
+		private int groupSamples;
 
+		public BitSampleSink(ChunkedByteBuffer cb, int dataBits, long firstByte) {
+			this.cb = cb;
+			this.index = firstByte;
+			this.dataBits = dataBits;
+			this.dataMask = (-1) >>> (32 - dataBits);
+			//smallest run of whole bytes holding whole samples
+			int groupBits = dataBits;
+			while (groupBits % 8 != 0) {
+				groupBits += dataBits;
+			}
+			if (groupBits <= 64) {
+				this.groupSamples = (64 / groupBits) * (groupBits / dataBits);
+			}
+		}
+
+		@Override
+		public void write(int[] src, int offset, int length) {
+			int end = offset + length;
+			if (this.groupSamples > 0) {
+				int groupEnd = offset + (length / this.groupSamples) * this.groupSamples;
+				int groupBits = this.groupSamples * this.dataBits;
+				switch (this.dataBits) {
+				case 10:
+					for (; offset < groupEnd; offset += 4) {
+						this.append(((long) (src[offset] & 0x3ff) << 30) | ((long) (src[offset + 1] & 0x3ff) << 20)
+								| ((src[offset + 2] & 0x3ff) << 10) | (src[offset + 3] & 0x3ff), 40);
+					}
+					break;
+				case 12:
+					for (; offset < groupEnd; offset += 4) {
+						this.append(((long) (src[offset] & 0xfff) << 36) | ((long) (src[offset + 1] & 0xfff) << 24)
+								| ((src[offset + 2] & 0xfff) << 12) | (src[offset + 3] & 0xfff), 48);
+					}
+					break;
+				case 14:
+					for (; offset < groupEnd; offset += 4) {
+						this.append(((long) (src[offset] & 0x3fff) << 42) | ((long) (src[offset + 1] & 0x3fff) << 28)
+								| ((long) (src[offset + 2] & 0x3fff) << 14) | (src[offset + 3] & 0x3fff), 56);
+					}
+					break;
+				default:
+					while (offset < groupEnd) {
+						long group = 0;
+						for (int s = 0; s < this.groupSamples; s++) {
+							group = (group << this.dataBits) | (src[offset++] & this.dataMask);
+						}
+						this.append(group, groupBits);
+					}
+				}
+			}
+			while (offset < end) {
+				this.append(src[offset++] & this.dataMask, this.dataBits);
+			}
+		}
+
+		/**
+		 * Add bits to the accumulator, writing it out when full
+		 * @param bits right aligned bits, with nothing above them
+		 * @param count how many bits there are (up to 64)
+		 */
+		private void append(long bits, int count) {
+			int room = 64 - this.accBits;
+			if (count < room) {
+				this.acc |= bits << (room - count);
+				this.accBits += count;
+				return;
+			}
+			int left = count - room;
+			this.acc |= bits >>> left;
+			//the chunk where the word starts also covers where it ends
+			this.cb.getChunk(this.cb.getChunkIndex(this.index)).putLong(this.cb.getChunkOffset(this.index), this.acc);
+			this.index += 8;
+			this.acc = left == 0 ? 0 : bits << (64 - left);
+			this.accBits = left;
+		}
+
+		@Override
+		public void flush() {
+			while (this.accBits > 0) {
+				this.cb.getChunk(this.cb.getChunkIndex(this.index)).put(this.cb.getChunkOffset(this.index), (byte) (this.acc >>> 56));
+				this.index++;
+				this.acc <<= 8;
+				this.accBits -= 8;
+			}
+			this.acc = 0;
+			this.accBits = 0;
+		}
+	}
 
 }
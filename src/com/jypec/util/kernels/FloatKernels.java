@@ -0,0 +1,87 @@
+package com.jypec.util.kernels;
+
+/**
+ * Innermost numeric loops of the compressor, gathered so that they can be swapped
+ * for faster implementations depending on the running JVM (see {@link Kernels}). <br>
+ * Every implementation must give exactly the same results as {@link ScalarFloatKernels},
+ * since the output of the compressor must not depend on the machine it runs on
+ * @author Daniel
+ */
+public interface FloatKernels {
+
+	/**
+	 * Lifting predict step over interleaved signals: odd samples are added
+	 * <code>coeff</code> times the sum of their neighbours, mirroring at the end
+	 * @param s where the signals are stored, sample i of signal k being at <code>i*lanes + k</code>
+	 * @param n length of the signals
+	 * @param lanes number of signals
+	 * @param coeff lifting coefficient
+	 */
+	public void predict(float[] s, int n, int lanes, float coeff);
+
+	/**
+	 * Same as {@link #predict(float[], int, int, float)} for even samples, mirroring at both ends
+	 * @param s
+	 * @param n
+	 * @param lanes
+	 * @param coeff
+	 */
+	public void update(float[] s, int n, int lanes, float coeff);
+
+	/**
+	 * Map <code>[min, min + range]</code> to <code>[targetMin, targetMin + targetRange]</code> in place
+	 * @param s the samples
+	 * @param offset first sample
+	 * @param length number of samples
+	 * @param min
+	 * @param range
+	 * @param targetMin
+	 * @param targetRange
+	 */
+	public void normalize(float[] s, int offset, int length, float min, float range, float targetMin, float targetRange);
+
+	/**
+	 * Update the given minimum and maximum with the samples
+	 * @param s the samples
+	 * @param offset first sample
+	 * @param length number of samples
+	 * @param minMax array holding the minimum and maximum found so far, in that order
+	 */
+	public void minMax(float[] s, int offset, int length, float[] minMax);
+
+	/**
+	 * Normalize and quantize the samples as {@link com.jypec.quantization.Quantizer#normalizeAndQuantize(float)}
+	 * @param src samples to quantize
+	 * @param srcOffset first sample
+	 * @param dst where to put the sign-magnitude results
+	 * @param dstOffset where the first result goes
+	 * @param length number of samples
+	 * @param lowerLimit lower limit of the samples
+	 * @param intervalLength length of the interval of the samples
+	 * @param lowerGuard lowest normalized value allowed
+	 * @param upperGuard highest normalized value allowed
+	 * @param delta quantization step
+	 * @param maxMagnitude largest magnitude allowed
+	 * @param signBit bit to set for negative values
+	 */
+	public void quantize(float[] src, int srcOffset, int[] dst, int dstOffset, int length,
+			float lowerLimit, float intervalLength, float lowerGuard, float upperGuard, float delta, int maxMagnitude, int signBit);
+
+	/**
+	 * Revert {@link #quantize(float[], int, int[], int, int, float, float, float, float, float, int, int)}
+	 * as {@link com.jypec.quantization.Quantizer#deQuantizeAndDenormalize(int)} does
+	 * @param src sign-magnitude samples
+	 * @param srcOffset first sample
+	 * @param dst where to put the results
+	 * @param dstOffset where the first result goes
+	 * @param length number of samples
+	 * @param lowerLimit lower limit of the samples
+	 * @param intervalLength length of the interval of the samples
+	 * @param delta quantization step
+	 * @param reconstructionOffset offset added to the magnitudes when reconstructing
+	 * @param signBit bit set for negative values
+	 */
+	public void dequantize(int[] src, int srcOffset, float[] dst, int dstOffset, int length,
+			float lowerLimit, float intervalLength, float delta, float reconstructionOffset, int signBit);
+
+}
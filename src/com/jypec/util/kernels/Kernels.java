@@ -0,0 +1,39 @@
+package com.jypec.util.kernels;
+
+/**
+ * Selects the {@link FloatKernels} implementation to use. <br>
+ * If the SIMD kernels built from the <code>vector</code> module are in the classpath and the
+ * JVM was started with <code>--add-modules jdk.incubator.vector</code>, those are used.
+ * Otherwise (or if the system property {@link #PROPERTY} is set to <code>scalar</code>)
+ * {@link ScalarFloatKernels} is used
+ * @author Daniel
+ */
+public class Kernels {
+
+	/** System property used to force a given implementation */
+	public static final String PROPERTY = "jypec.kernels";
+	/** Class implementing the SIMD kernels, not part of this build */
+	private static final String VECTOR_KERNELS = "com.jypec.util.kernels.VectorFloatKernels";
+
+	private static final FloatKernels KERNELS = load();
+
+
+	/**
+	 * @return the kernels to use in this JVM
+	 */
+	public static FloatKernels get() {
+		return KERNELS;
+	}
+
+	private static FloatKernels load() {
+		if (!"scalar".equals(System.getProperty(PROPERTY))) {
+			try {
+				return (FloatKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+				//not available in this JVM, keep the scalar version
+			}
+		}
+		return new ScalarFloatKernels();
+	}
+
+}
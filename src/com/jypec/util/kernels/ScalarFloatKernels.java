@@ -0,0 +1,108 @@
+package com.jypec.util.kernels;
+
+/**
+ * Plain java implementation of the {@link FloatKernels}, used as the reference
+ * and as the fallback when nothing better is available
+ * @author Daniel
+ */
+public class ScalarFloatKernels implements FloatKernels {
+
+	@Override
+	public void predict(float[] s, int n, int lanes, float coeff) {
+		for (int i = 1; i < n - 1; i += 2) {
+			int base = i * lanes;
+			for (int k = base; k < base + lanes; k++) {
+				s[k] += coeff * (s[k - lanes] + s[k + lanes]);
+			}
+		}
+		if (n % 2 == 0 && n > 1) {
+			int base = (n - 1) * lanes;
+			for (int k = base; k < base + lanes; k++) {
+				s[k] += 2*coeff*s[k - lanes];
+			}
+		}
+	}
+
+	@Override
+	public void update(float[] s, int n, int lanes, float coeff) {
+		if (n > 1) {
+			for (int k = 0; k < lanes; k++) {
+				s[k] += 2*coeff*s[k + lanes];
+			}
+		}
+		for (int i = 2; i < n - 1; i += 2) {
+			int base = i * lanes;
+			for (int k = base; k < base + lanes; k++) {
+				s[k] += coeff * (s[k - lanes] + s[k + lanes]);
+			}
+		}
+		if (n % 2 != 0 && n > 1) {
+			int base = (n - 1) * lanes;
+			for (int k = base; k < base + lanes; k++) {
+				s[k] += 2*coeff*s[k - lanes];
+			}
+		}
+	}
+
+	@Override
+	public void normalize(float[] s, int offset, int length, float min, float range, float targetMin, float targetRange) {
+		for (int i = offset; i < offset + length; i++) {
+			float value = s[i];
+			value = ((value - min) / range);			//value is in [0, 1]
+			value = value * targetRange + targetMin;	//value is in targetMin, targetMax
+			s[i] = value;
+		}
+	}
+
+	@Override
+	public void minMax(float[] s, int offset, int length, float[] minMax) {
+		float min = minMax[0], max = minMax[1];
+		for (int i = offset; i < offset + length; i++) {
+			float sample = s[i];
+			if (min > sample) {
+				min = sample;
+			}
+			if (max < sample) {
+				max = sample;
+			}
+		}
+		minMax[0] = min;
+		minMax[1] = max;
+	}
+
+	@Override
+	public void quantize(float[] src, int srcOffset, int[] dst, int dstOffset, int length,
+			float lowerLimit, float intervalLength, float lowerGuard, float upperGuard, float delta, int maxMagnitude, int signBit) {
+		for (int i = 0; i < length; i++) {
+			float input = src[srcOffset + i];
+			input -= lowerLimit;
+			input /= intervalLength;
+			input -= 0.5f;
+			input = Math.max(Math.min(input, upperGuard), lowerGuard);
+			int sign = input >= 0.0f ? 0 : signBit;
+			//input is not negative so truncating is the same as flooring
+			int magnitude = Math.min(maxMagnitude, (int) (Math.abs(input) / delta));
+			dst[dstOffset + i] = magnitude | sign;
+		}
+	}
+
+	@Override
+	public void dequantize(int[] src, int srcOffset, float[] dst, int dstOffset, int length,
+			float lowerLimit, float intervalLength, float delta, float reconstructionOffset, int signBit) {
+		for (int i = 0; i < length; i++) {
+			int input = src[srcOffset + i];
+			float result = 0;
+			if (input != 0) {
+				result = ((float) (input & ~signBit) + reconstructionOffset) * delta;
+				if ((input & signBit) != 0) {
+					result = -result;
+				}
+			}
+			result += 0.5f;
+			result *= intervalLength;
+			result += lowerLimit;
+			dst[dstOffset + i] = result;
+		}
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.jypec.wavelet;
+
+/**
+ * @author Daniel
+ * Specifies a bidimensional wavelet interface over integer samples, for transforms
+ * that map integers to integers and can be exactly reversed
+ */
+public interface IntegerBidimensionalWavelet {
+
+	/**
+	 * Applies a wavelet transform along both axes of the top-left region of the given matrix.
+	 * First along the rows, then along the columns. s is modified to include the results
+	 * @param s the matrix, stored in row major order
+	 * @param stride number of columns of the matrix
+	 * @param height
+	 * @param width
+	 */
+	public void forwardTransform(int[] s, int stride, int height, int width);
+
+	/**
+	 * Reverts the process made by {@link #forwardTransform(int[], int, int, int)}
+	 * @param s
+	 * @param stride
+	 * @param height
+	 * @param width
+	 */
+	public void reverseTransform(int[] s, int stride, int height, int width);
+
+}
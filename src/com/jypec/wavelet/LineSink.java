@@ -0,0 +1,21 @@
+package com.jypec.wavelet;
+
+/**
+ * @author Daniel
+ * Receives the coefficients output by a line based wavelet transform as soon
+ * as they are final
+ */
+public interface LineSink {
+
+	/**
+	 * Receive a run of final coefficients
+	 * @param row row of the transformed band where the coefficients go
+	 * @param column column of the transformed band where the first coefficient goes
+	 * @param line array holding the coefficients. It is reused by the caller, so
+	 * its contents must be copied if needed after returning
+	 * @param offset position in <code>line</code> of the first coefficient
+	 * @param length number of coefficients
+	 */
+	public void receiveLine(int row, int column, float[] line, int offset, int length);
+
+}
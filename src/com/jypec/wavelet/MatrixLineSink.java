@@ -0,0 +1,33 @@
+package com.jypec.wavelet;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * @author Daniel
+ * {@link LineSink} that stores the received coefficients in a matrix,
+ * leaving it as a {@link BidimensionalWavelet} would have
+ */
+public class MatrixLineSink implements LineSink {
+
+	private FMatrixRMaj target;
+
+	/**
+	 * @param target where to store the coefficients
+	 */
+	public MatrixLineSink(FMatrixRMaj target) {
+		this.target = target;
+	}
+
+	@Override
+	public void receiveLine(int row, int column, float[] line, int offset, int length) {
+		System.arraycopy(line, offset, this.target.getData(), row * this.target.getNumCols() + column, length);
+	}
+
+	/**
+	 * @return the matrix where coefficients are being stored
+	 */
+	public FMatrixRMaj getTarget() {
+		return this.target;
+	}
+
+}
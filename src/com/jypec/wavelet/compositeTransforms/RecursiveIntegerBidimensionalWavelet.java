@@ -0,0 +1,44 @@
+package com.jypec.wavelet.compositeTransforms;
+
+import com.jypec.util.Stepper;
+import com.jypec.util.debug.Profiler;
+import com.jypec.wavelet.IntegerBidimensionalWavelet;
+
+/**
+ * @author Daniel
+ * Same as {@link RecursiveBidimensionalWavelet}, for {@link IntegerBidimensionalWavelet}s
+ */
+public class RecursiveIntegerBidimensionalWavelet implements IntegerBidimensionalWavelet {
+	
+	private IntegerBidimensionalWavelet bdw;
+	private int steps;
+	
+	/**
+	 * @param bdw
+	 * @param steps
+	 */
+	public RecursiveIntegerBidimensionalWavelet(IntegerBidimensionalWavelet bdw, int steps) {
+		this.bdw = bdw;
+		this.steps = steps;
+	}
+
+	@Override
+	public void forwardTransform(int[] s, int stride, int height, int width) {
+		Profiler.getProfiler().profileStart();
+		int[] widths = Stepper.getStepSizes(width, this.steps);
+		int[] heights = Stepper.getStepSizes(height, this.steps);
+		for (int i = 0; i < steps; i++) {
+			this.bdw.forwardTransform(s, stride, heights[i], widths[i]);
+		}
+		Profiler.getProfiler().profileEnd();
+	}
+
+	@Override
+	public void reverseTransform(int[] s, int stride, int height, int width) {
+		int[] widths = Stepper.getStepSizes(width, this.steps);
+		int[] heights = Stepper.getStepSizes(height, this.steps);
+		for (int i = steps - 1; i >= 0; i--) {
+			this.bdw.reverseTransform(s, stride, heights[i], widths[i]);
+		}
+	}
+}
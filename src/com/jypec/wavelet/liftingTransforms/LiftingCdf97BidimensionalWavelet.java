@@ -0,0 +1,221 @@
+package com.jypec.wavelet.liftingTransforms;
+
+import org.ejml.data.FMatrixRMaj;
+
+import com.jypec.util.kernels.FloatKernels;
+import com.jypec.util.kernels.Kernels;
+import com.jypec.wavelet.BidimensionalWavelet;
+
+/**
+ * Two dimensional CDF 9 7 wavelet, giving the same results as extending a
+ * {@link LiftingCdf97WaveletTransform} with a
+ * {@link com.jypec.wavelet.compositeTransforms.OneDimensionalWaveletExtender}. <br>
+ * Works directly over the data array of the matrix instead of extracting rows
+ * and transposing it: rows are lifted one by one, and columns are lifted in strips of
+ * {@link #STRIP_WIDTH} columns at once, so that memory is always traversed row-wise.
+ * Scratch space is allocated once and reused between calls, so an instance
+ * must not be shared between threads
+ * @author Daniel
+ */
+public class LiftingCdf97BidimensionalWavelet implements BidimensionalWavelet {
+
+	/** Number of columns lifted together in the vertical pass */
+	public static final int STRIP_WIDTH = 16;
+	private static final FloatKernels KERNELS = Kernels.get();
+
+	private float[] line = new float[0];
+	private float[] strip = new float[0];
+
+
+	@Override
+	public void forwardTransform(FMatrixRMaj s, int height, int width) {
+		this.line = ensureSize(this.line, width);
+		forwardRows(s, 0, height, width, this.line);
+		this.strip = ensureSize(this.strip, height * STRIP_WIDTH);
+		forwardColumns(s, height, 0, width, this.strip);
+	}
+
+	@Override
+	public void reverseTransform(FMatrixRMaj s, int height, int width) {
+		this.line = ensureSize(this.line, width);
+		reverseRows(s, 0, height, width, this.line);
+		this.strip = ensureSize(this.strip, height * STRIP_WIDTH);
+		reverseColumns(s, height, 0, width, this.strip);
+	}
+
+
+	/**
+	 * Apply the horizontal pass of the forward transform over the given rows
+	 * @param s the matrix
+	 * @param fromRow first row (inclusive)
+	 * @param toRow last row (exclusive)
+	 * @param width number of samples of each row to transform
+	 * @param line scratch space of at least <code>width</code> samples
+	 */
+	static void forwardRows(FMatrixRMaj s, int fromRow, int toRow, int width, float[] line) {
+		int cols = s.getNumCols();
+		float[] data = s.getData();
+		for (int i = fromRow; i < toRow; i++) {
+			int offset = i * cols;
+			System.arraycopy(data, offset, line, 0, width);
+			forwardLift(line, width, 1);
+			pack(line, width, 1, data, offset, 1);
+		}
+	}
+
+	/**
+	 * Apply the vertical pass of the forward transform over the given columns,
+	 * a strip at a time
+	 * @param s the matrix
+	 * @param height number of samples of each column to transform
+	 * @param fromCol first column (inclusive)
+	 * @param toCol last column (exclusive)
+	 * @param strip scratch space of at least <code>height * {@link #STRIP_WIDTH}</code> samples
+	 */
+	static void forwardColumns(FMatrixRMaj s, int height, int fromCol, int toCol, float[] strip) {
+		int cols = s.getNumCols();
+		float[] data = s.getData();
+		for (int j = fromCol; j < toCol; j += STRIP_WIDTH) {
+			int lanes = Math.min(STRIP_WIDTH, toCol - j);
+			for (int i = 0; i < height; i++) {
+				System.arraycopy(data, i * cols + j, strip, i * lanes, lanes);
+			}
+			forwardLift(strip, height, lanes);
+			pack(strip, height, lanes, data, j, cols);
+		}
+	}
+
+	/**
+	 * Reverts {@link #forwardRows(FMatrixRMaj, int, int, int, float[])}
+	 * @param s
+	 * @param fromRow
+	 * @param toRow
+	 * @param width
+	 * @param line
+	 */
+	static void reverseRows(FMatrixRMaj s, int fromRow, int toRow, int width, float[] line) {
+		int cols = s.getNumCols();
+		float[] data = s.getData();
+		for (int i = fromRow; i < toRow; i++) {
+			int offset = i * cols;
+			unpack(data, offset, 1, line, width, 1);
+			reverseLift(line, width, 1);
+			System.arraycopy(line, 0, data, offset, width);
+		}
+	}
+
+	/**
+	 * Reverts {@link #forwardColumns(FMatrixRMaj, int, int, int, float[])}
+	 * @param s
+	 * @param height
+	 * @param fromCol
+	 * @param toCol
+	 * @param strip
+	 */
+	static void reverseColumns(FMatrixRMaj s, int height, int fromCol, int toCol, float[] strip) {
+		int cols = s.getNumCols();
+		float[] data = s.getData();
+		for (int j = fromCol; j < toCol; j += STRIP_WIDTH) {
+			int lanes = Math.min(STRIP_WIDTH, toCol - j);
+			unpack(data, j, cols, strip, height, lanes);
+			reverseLift(strip, height, lanes);
+			for (int i = 0; i < height; i++) {
+				System.arraycopy(strip, i * lanes, data, i * cols + j, lanes);
+			}
+		}
+	}
+
+	static float[] ensureSize(float[] array, int size) {
+		if (array.length < size) {
+			return new float[size];
+		}
+		return array;
+	}
+
+	/**
+	 * Applies the lifting steps (without scaling or packing) to the
+	 * given interleaved signals
+	 * @param s where the signals are stored, sample i of signal k being at <code>i*lanes + k</code>
+	 * @param n length of the signals
+	 * @param lanes number of signals
+	 */
+	static void forwardLift(float[] s, int n, int lanes) {
+		predict(s, n, lanes, LiftingCdf97WaveletTransform.COEFF_PREDICT_1);
+		update(s, n, lanes, LiftingCdf97WaveletTransform.COEFF_UPDATE_1);
+		predict(s, n, lanes, LiftingCdf97WaveletTransform.COEFF_PREDICT_2);
+		update(s, n, lanes, LiftingCdf97WaveletTransform.COEFF_UPDATE_2);
+	}
+
+	/**
+	 * Reverts {@link #forwardLift(float[], int, int)}
+	 * @param s
+	 * @param n
+	 * @param lanes
+	 */
+	static void reverseLift(float[] s, int n, int lanes) {
+		update(s, n, lanes, -LiftingCdf97WaveletTransform.COEFF_UPDATE_2);
+		predict(s, n, lanes, -LiftingCdf97WaveletTransform.COEFF_PREDICT_2);
+		update(s, n, lanes, -LiftingCdf97WaveletTransform.COEFF_UPDATE_1);
+		predict(s, n, lanes, -LiftingCdf97WaveletTransform.COEFF_PREDICT_1);
+	}
+
+	/**
+	 * Same as {@link LiftingCdf97WaveletTransform}'s predict, over interleaved signals
+	 */
+	private static void predict(float[] s, int n, int lanes, float coeff) {
+		KERNELS.predict(s, n, lanes, coeff);
+	}
+
+	/**
+	 * Same as {@link LiftingCdf97WaveletTransform}'s update, over interleaved signals
+	 */
+	private static void update(float[] s, int n, int lanes, float coeff) {
+		KERNELS.update(s, n, lanes, coeff);
+	}
+
+	/**
+	 * Scales the lifted signals and stores them in the destination, low frequencies first,
+	 * high frequencies last
+	 * @param s interleaved lifted signals
+	 * @param n length of the signals
+	 * @param lanes number of signals
+	 * @param dst where to store them
+	 * @param dstOffset where the first sample of the first signal goes
+	 * @param dstStride distance in the destination between consecutive samples of the same signal
+	 */
+	static void pack(float[] s, int n, int lanes, float[] dst, int dstOffset, int dstStride) {
+		int lowCount = (n + 1) / 2;
+		for (int i = 0; i < n; i++) {
+			int position = (i % 2 == 0) ? i / 2 : lowCount + i / 2;
+			float k = (i % 2 == 0) ? LiftingCdf97WaveletTransform.COEFF_K0 : LiftingCdf97WaveletTransform.COEFF_K1;
+			int d = dstOffset + position * dstStride;
+			int base = i * lanes;
+			for (int l = 0; l < lanes; l++) {
+				dst[d + l] = s[base + l] * k;
+			}
+		}
+	}
+
+	/**
+	 * Reverts {@link #pack(float[], int, int, float[], int, int)}
+	 * @param src
+	 * @param srcOffset
+	 * @param srcStride
+	 * @param s
+	 * @param n
+	 * @param lanes
+	 */
+	static void unpack(float[] src, int srcOffset, int srcStride, float[] s, int n, int lanes) {
+		int lowCount = (n + 1) / 2;
+		for (int i = 0; i < n; i++) {
+			int position = (i % 2 == 0) ? i / 2 : lowCount + i / 2;
+			float k = (i % 2 == 0) ? 1/LiftingCdf97WaveletTransform.COEFF_K0 : 1/LiftingCdf97WaveletTransform.COEFF_K1;
+			int d = srcOffset + position * srcStride;
+			int base = i * lanes;
+			for (int l = 0; l < lanes; l++) {
+				s[base + l] = src[d + l] * k;
+			}
+		}
+	}
+
+}
@@ -13,14 +13,14 @@ import com.jypec.wavelet.kernelTransforms.cdf97.KernelCdf97WaveletTransform;
  */
 public class LiftingCdf97WaveletTransform implements Wavelet {
 	
-	private static final float COEFF_PREDICT_1 = -1.586134342f;
-	private static final float COEFF_PREDICT_2 = 0.8829110762f; 
-	private static final float COEFF_UPDATE_1= -0.05298011854f;
-	private static final float COEFF_UPDATE_2 = 0.4435068522f;
+	static final float COEFF_PREDICT_1 = -1.586134342f;
+	static final float COEFF_PREDICT_2 = 0.8829110762f; 
+	static final float COEFF_UPDATE_1= -0.05298011854f;
+	static final float COEFF_UPDATE_2 = 0.4435068522f;
 
-	private static final float COEFF_K = 1.230174105f;
-	private static final float COEFF_K0 = 1.0f/COEFF_K;
-	private static final float COEFF_K1 = COEFF_K/2.0f;
+	static final float COEFF_K = 1.230174105f;
+	static final float COEFF_K0 = 1.0f/COEFF_K;
+	static final float COEFF_K1 = COEFF_K/2.0f;
 	
 	/**
 	 * Adds to each odd indexed sample its neighbors multiplied by the given coefficient
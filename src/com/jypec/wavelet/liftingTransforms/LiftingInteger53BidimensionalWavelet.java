@@ -0,0 +1,149 @@
+package com.jypec.wavelet.liftingTransforms;
+
+import com.jypec.wavelet.IntegerBidimensionalWavelet;
+
+/**
+ * Reversible integer LeGall 5/3 wavelet (the one used by lossless JPEG2000), lifted as: <br>
+ * d[i] = x[i] - floor((x[i-1] + x[i+1]) / 2) for odd i <br>
+ * s[i] = x[i] + floor((d[i-1] + d[i+1] + 2) / 4) for even i <br>
+ * with the signal mirrored at the ends, and low frequencies packed first. Since every step
+ * only adds a function of other samples, it is undone exactly by subtracting it back. <br>
+ * Works in place like {@link LiftingCdf97BidimensionalWavelet}: rows one by one and columns
+ * in strips of {@link #STRIP_WIDTH}. Samples should not exceed 29 bits of magnitude so
+ * that intermediate sums do not overflow. An instance must not be shared between threads
+ * @author Daniel
+ */
+public class LiftingInteger53BidimensionalWavelet implements IntegerBidimensionalWavelet {
+
+	/** Number of columns lifted together in the vertical pass */
+	public static final int STRIP_WIDTH = 16;
+
+	private int[] line = new int[0];
+	private int[] strip = new int[0];
+
+
+	@Override
+	public void forwardTransform(int[] s, int stride, int height, int width) {
+		if (this.line.length < width) {
+			this.line = new int[width];
+		}
+		if (this.strip.length < height * STRIP_WIDTH) {
+			this.strip = new int[height * STRIP_WIDTH];
+		}
+		for (int i = 0; i < height; i++) {
+			int offset = i * stride;
+			System.arraycopy(s, offset, this.line, 0, width);
+			predict(this.line, width, 1, -1);
+			update(this.line, width, 1, 1);
+			pack(this.line, width, 1, s, offset, 1);
+		}
+		for (int j = 0; j < width; j += STRIP_WIDTH) {
+			int lanes = Math.min(STRIP_WIDTH, width - j);
+			for (int i = 0; i < height; i++) {
+				System.arraycopy(s, i * stride + j, this.strip, i * lanes, lanes);
+			}
+			predict(this.strip, height, lanes, -1);
+			update(this.strip, height, lanes, 1);
+			pack(this.strip, height, lanes, s, j, stride);
+		}
+	}
+
+	@Override
+	public void reverseTransform(int[] s, int stride, int height, int width) {
+		if (this.line.length < width) {
+			this.line = new int[width];
+		}
+		if (this.strip.length < height * STRIP_WIDTH) {
+			this.strip = new int[height * STRIP_WIDTH];
+		}
+		//rounding makes passes not commute, so undo them in reverse order
+		for (int j = 0; j < width; j += STRIP_WIDTH) {
+			int lanes = Math.min(STRIP_WIDTH, width - j);
+			unpack(s, j, stride, this.strip, height, lanes);
+			update(this.strip, height, lanes, -1);
+			predict(this.strip, height, lanes, 1);
+			for (int i = 0; i < height; i++) {
+				System.arraycopy(this.strip, i * lanes, s, i * stride + j, lanes);
+			}
+		}
+		for (int i = 0; i < height; i++) {
+			int offset = i * stride;
+			unpack(s, offset, 1, this.line, width, 1);
+			update(this.line, width, 1, -1);
+			predict(this.line, width, 1, 1);
+			System.arraycopy(this.line, 0, s, offset, width);
+		}
+	}
+
+
+	/**
+	 * Adds (sign = 1) or subtracts (sign = -1) to each odd sample the floor of the
+	 * mean of its neighbors, over interleaved signals
+	 * @param s where the signals are stored, sample i of signal k being at <code>i*lanes + k</code>
+	 * @param n length of the signals
+	 * @param lanes number of signals
+	 * @param sign
+	 */
+	private static void predict(int[] s, int n, int lanes, int sign) {
+		for (int i = 1; i < n; i += 2) {
+			int base = i * lanes;
+			//mirror at the end
+			int next = i + 1 < n ? base + lanes : base - lanes;
+			for (int k = 0; k < lanes; k++) {
+				s[base + k] += sign * ((s[base - lanes + k] + s[next + k]) >> 1);
+			}
+		}
+	}
+
+	/**
+	 * Adds (sign = 1) or subtracts (sign = -1) to each even sample a quarter of
+	 * the sum of its neighbors (rounded), over interleaved signals
+	 * @param s
+	 * @param n
+	 * @param lanes
+	 * @param sign
+	 */
+	private static void update(int[] s, int n, int lanes, int sign) {
+		if (n < 2) {
+			return;
+		}
+		for (int i = 0; i < n; i += 2) {
+			int base = i * lanes;
+			//mirror at both ends
+			int prev = i > 0 ? base - lanes : base + lanes;
+			int next = i + 1 < n ? base + lanes : base - lanes;
+			for (int k = 0; k < lanes; k++) {
+				s[base + k] += sign * ((s[prev + k] + s[next + k] + 2) >> 2);
+			}
+		}
+	}
+
+	/**
+	 * Stores the lifted signals in the destination, low frequencies first
+	 * @param s interleaved lifted signals
+	 * @param n length of the signals
+	 * @param lanes number of signals
+	 * @param dst where to store them
+	 * @param dstOffset where the first sample of the first signal goes
+	 * @param dstStride distance in the destination between consecutive samples of the same signal
+	 */
+	private static void pack(int[] s, int n, int lanes, int[] dst, int dstOffset, int dstStride) {
+		int lowCount = (n + 1) / 2;
+		for (int i = 0; i < n; i++) {
+			int position = (i % 2 == 0) ? i / 2 : lowCount + i / 2;
+			System.arraycopy(s, i * lanes, dst, dstOffset + position * dstStride, lanes);
+		}
+	}
+
+	/**
+	 * Reverts {@link #pack(int[], int, int, int[], int, int)}
+	 */
+	private static void unpack(int[] src, int srcOffset, int srcStride, int[] s, int n, int lanes) {
+		int lowCount = (n + 1) / 2;
+		for (int i = 0; i < n; i++) {
+			int position = (i % 2 == 0) ? i / 2 : lowCount + i / 2;
+			System.arraycopy(src, srcOffset + position * srcStride, s, i * lanes, lanes);
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.jypec.wavelet.liftingTransforms;
+
+import com.jypec.util.Stepper;
+import com.jypec.wavelet.LineSink;
+
+/**
+ * Line based (sliding window) version of the recursive two dimensional CDF 9 7
+ * wavelet. Instead of transforming a whole band at once, lines are fed one
+ * by one with {@link #pushLine(float[], int)}, and the final coefficients are sent to a
+ * {@link LineSink} as soon as no more input can change them. <br>
+ * Only {@link #WINDOW_LINES} lines are kept per decomposition level, so memory does
+ * not depend on the height of the band. The output is exactly the same as with
+ * {@link com.jypec.wavelet.compositeTransforms.RecursiveBidimensionalWavelet} over
+ * {@link LiftingCdf97BidimensionalWavelet}
+ * @author Daniel
+ */
+public class LineBasedLiftingCdf97Wavelet {
+
+	/** Lines buffered per level. Lifting line i needs lines up to i + 4,
+	 * and lines down to i - 1 must still be there when lifting line i */
+	public static final int WINDOW_LINES = 8;
+	private static final int WINDOW_MASK = WINDOW_LINES - 1;
+	/** predict, update, predict, update */
+	private static final int STAGES = 4;
+	private static final float[] STAGE_COEFFS = {
+			LiftingCdf97WaveletTransform.COEFF_PREDICT_1,
+			LiftingCdf97WaveletTransform.COEFF_UPDATE_1,
+			LiftingCdf97WaveletTransform.COEFF_PREDICT_2,
+			LiftingCdf97WaveletTransform.COEFF_UPDATE_2};
+
+	private LineSink sink;
+	private Level[] levels;
+	private int width;
+	private int linesPushed;
+
+
+	/**
+	 * @param height number of lines of the band
+	 * @param width number of samples per line
+	 * @param steps number of decomposition levels
+	 * @param sink where to send the results
+	 */
+	public LineBasedLiftingCdf97Wavelet(int height, int width, int steps, LineSink sink) {
+		this.sink = sink;
+		this.width = width;
+		this.linesPushed = 0;
+		int[] heights = Stepper.getStepSizes(height, steps);
+		int[] widths = Stepper.getStepSizes(width, steps);
+		this.levels = new Level[steps];
+		for (int i = 0; i < steps; i++) {
+			this.levels[i] = new Level(i, heights[i], widths[i], widths[i + 1]);
+		}
+	}
+
+	/**
+	 * Feed the next line of the band
+	 * @param line array containing the line
+	 * @param offset where the line starts within the array
+	 */
+	public void pushLine(float[] line, int offset) {
+		if (this.levels.length == 0) {
+			this.sink.receiveLine(this.linesPushed, 0, line, offset, this.width);
+		} else {
+			this.levels[0].push(line, offset);
+		}
+		this.linesPushed++;
+	}
+
+	/**
+	 * @return the number of lines fed so far
+	 */
+	public int getLinesPushed() {
+		return this.linesPushed;
+	}
+
+
+	/**
+	 * State of one decomposition level
+	 */
+	private class Level {
+		private int index, height, width, lowWidth;
+		/** last lines received, line i being stored in i & {@link #WINDOW_MASK} */
+		private float[][] window;
+		/** number of lines that have gone through each lifting stage.
+		 * reached[0] is the number of lines received */
+		private int[] reached;
+		private float[] scratch, output;
+
+		public Level(int index, int height, int width, int lowWidth) {
+			this.index = index;
+			this.height = height;
+			this.width = width;
+			this.lowWidth = lowWidth;
+			this.window = new float[WINDOW_LINES][width];
+			this.reached = new int[STAGES + 1];
+			this.scratch = new float[width];
+			this.output = new float[width];
+		}
+
+		/**
+		 * Receive the next line of this level, transform it horizontally and
+		 * advance the vertical lifting as far as possible
+		 */
+		public void push(float[] line, int offset) {
+			int i = this.reached[0];
+			if (i >= this.height) {
+				throw new IllegalStateException("Too many lines for this wavelet level");
+			}
+			System.arraycopy(line, offset, this.scratch, 0, this.width);
+			LiftingCdf97BidimensionalWavelet.forwardLift(this.scratch, this.width, 1);
+			LiftingCdf97BidimensionalWavelet.pack(this.scratch, this.width, 1, this.window[i & WINDOW_MASK], 0, 1);
+			this.reached[0]++;
+
+			boolean advanced;
+			do {
+				advanced = false;
+				for (int k = 1; k <= STAGES; k++) {
+					while (this.canAdvance(this.reached[k], k)) {
+						this.advance(this.reached[k], k);
+						this.reached[k]++;
+						advanced = true;
+					}
+				}
+			} while (advanced);
+		}
+
+		/**
+		 * @return true if line i can go through stage k
+		 */
+		private boolean canAdvance(int i, int k) {
+			if (i >= this.reached[k - 1]) {
+				return false;
+			}
+			//odd lines are predicted in odd stages, even lines updated in even stages
+			boolean lifted = (i % 2 == 1) == (k % 2 == 1);
+			return !lifted || i + 1 >= this.height || i + 1 < this.reached[k - 1];
+		}
+
+		/**
+		 * Take line i through stage k, mirroring at the borders
+		 */
+		private void advance(int i, int k) {
+			if ((i % 2 == 1) == (k % 2 == 1)) {
+				float coeff = STAGE_COEFFS[k - 1];
+				float[] s = this.window[i & WINDOW_MASK];
+				boolean hasPrev = i > 0, hasNext = i + 1 < this.height;
+				if (hasPrev && hasNext) {
+					float[] prev = this.window[(i - 1) & WINDOW_MASK];
+					float[] next = this.window[(i + 1) & WINDOW_MASK];
+					for (int j = 0; j < this.width; j++) {
+						s[j] += coeff * (prev[j] + next[j]);
+					}
+				} else if (hasPrev || hasNext) {
+					float[] other = this.window[(hasPrev ? i - 1 : i + 1) & WINDOW_MASK];
+					for (int j = 0; j < this.width; j++) {
+						s[j] += 2*coeff*other[j];
+					}
+				}
+			}
+			if (k == STAGES) {
+				this.emit(i);
+			}
+		}
+
+		/**
+		 * Scale a final line and send it where it goes: the low pass part of
+		 * even lines to the next level, the rest to the sink
+		 */
+		private void emit(int i) {
+			boolean low = i % 2 == 0;
+			float scale = low ? LiftingCdf97WaveletTransform.COEFF_K0 : LiftingCdf97WaveletTransform.COEFF_K1;
+			float[] s = this.window[i & WINDOW_MASK];
+			for (int j = 0; j < this.width; j++) {
+				this.output[j] = s[j] * scale;
+			}
+			int row = low ? i / 2 : (this.height + 1) / 2 + i / 2;
+			boolean last = this.index == levels.length - 1;
+			if (!low || last) {
+				sink.receiveLine(row, 0, this.output, 0, this.width);
+			} else {
+				if (this.width > this.lowWidth) {
+					sink.receiveLine(row, this.lowWidth, this.output, this.lowWidth, this.width - this.lowWidth);
+				}
+				levels[this.index + 1].push(this.output, 0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.jypec.wavelet.liftingTransforms;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.ejml.data.FMatrixRMaj;
+
+import com.jypec.wavelet.BidimensionalWavelet;
+
+/**
+ * Same transform as {@link LiftingCdf97BidimensionalWavelet}, but splitting the
+ * horizontal pass by rows and the vertical pass by column strips across a
+ * {@link ForkJoinPool}. Since rows (and columns) are independent within each pass,
+ * the result is exactly the same as the sequential one. Regions with less than
+ * {@link #DEFAULT_THRESHOLD} samples are transformed sequentially, since
+ * splitting them would cost more than it saves
+ * @author Daniel
+ */
+public class ParallelLiftingCdf97BidimensionalWavelet implements BidimensionalWavelet {
+
+	/** Default minimum number of samples per task */
+	public static final int DEFAULT_THRESHOLD = 1 << 15;
+
+	private ForkJoinPool pool;
+	private int threshold;
+	private LiftingCdf97BidimensionalWavelet sequential;
+
+
+	/**
+	 * Create a parallel wavelet running in the common pool with the default threshold
+	 */
+	public ParallelLiftingCdf97BidimensionalWavelet() {
+		this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param pool where to run the transform
+	 * @param threshold minimum number of samples that a task must process.
+	 * Smaller regions are not split
+	 */
+	public ParallelLiftingCdf97BidimensionalWavelet(ForkJoinPool pool, int threshold) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("Threshold must be positive");
+		}
+		this.pool = pool;
+		this.threshold = threshold;
+		this.sequential = new LiftingCdf97BidimensionalWavelet();
+	}
+
+
+	@Override
+	public void forwardTransform(FMatrixRMaj s, int height, int width) {
+		if ((long) height * width < 2 * (long) this.threshold) {
+			this.sequential.forwardTransform(s, height, width);
+			return;
+		}
+		this.pool.invoke(new RowTask(s, 0, height, width, true));
+		this.pool.invoke(new ColumnTask(s, height, 0, width, true));
+	}
+
+	@Override
+	public void reverseTransform(FMatrixRMaj s, int height, int width) {
+		if ((long) height * width < 2 * (long) this.threshold) {
+			this.sequential.reverseTransform(s, height, width);
+			return;
+		}
+		this.pool.invoke(new RowTask(s, 0, height, width, false));
+		this.pool.invoke(new ColumnTask(s, height, 0, width, false));
+	}
+
+
+	/**
+	 * Transforms a range of rows, splitting it in halves while big enough
+	 */
+	@SuppressWarnings("serial")
+	private class RowTask extends RecursiveAction {
+		private FMatrixRMaj s;
+		private int fromRow, toRow, width;
+		private boolean forward;
+
+		public RowTask(FMatrixRMaj s, int fromRow, int toRow, int width, boolean forward) {
+			this.s = s;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.width = width;
+			this.forward = forward;
+		}
+
+		@Override
+		protected void compute() {
+			int rows = toRow - fromRow;
+			if (rows < 2 || (long) rows * width < 2 * (long) threshold) {
+				float[] line = new float[width];
+				if (forward) {
+					LiftingCdf97BidimensionalWavelet.forwardRows(s, fromRow, toRow, width, line);
+				} else {
+					LiftingCdf97BidimensionalWavelet.reverseRows(s, fromRow, toRow, width, line);
+				}
+				return;
+			}
+			int middle = fromRow + rows / 2;
+			invokeAll(new RowTask(s, fromRow, middle, width, forward),
+					new RowTask(s, middle, toRow, width, forward));
+		}
+	}
+
+	/**
+	 * Transforms a range of columns, splitting it in halves (at strip boundaries)
+	 * while big enough
+	 */
+	@SuppressWarnings("serial")
+	private class ColumnTask extends RecursiveAction {
+		private FMatrixRMaj s;
+		private int height, fromCol, toCol;
+		private boolean forward;
+
+		public ColumnTask(FMatrixRMaj s, int height, int fromCol, int toCol, boolean forward) {
+			this.s = s;
+			this.height = height;
+			this.fromCol = fromCol;
+			this.toCol = toCol;
+			this.forward = forward;
+		}
+
+		@Override
+		protected void compute() {
+			int cols = toCol - fromCol;
+			int strips = (cols + LiftingCdf97BidimensionalWavelet.STRIP_WIDTH - 1) / LiftingCdf97BidimensionalWavelet.STRIP_WIDTH;
+			if (strips < 2 || (long) cols * height < 2 * (long) threshold) {
+				float[] strip = new float[height * LiftingCdf97BidimensionalWavelet.STRIP_WIDTH];
+				if (forward) {
+					LiftingCdf97BidimensionalWavelet.forwardColumns(s, height, fromCol, toCol, strip);
+				} else {
+					LiftingCdf97BidimensionalWavelet.reverseColumns(s, height, fromCol, toCol, strip);
+				}
+				return;
+			}
+			int middle = fromCol + (strips / 2) * LiftingCdf97BidimensionalWavelet.STRIP_WIDTH;
+			invokeAll(new ColumnTask(s, height, fromCol, middle, forward),
+					new ColumnTask(s, height, middle, toCol, forward));
+		}
+	}
+
+}
@@ -13,11 +13,16 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
 	TestEBCodec.class,
 	TestWaveletTransform.class,
+	TestBidimensionalWaveletTransform.class,
 	TestQuantizer.class,
 	TestBitStreamReaderWriter.class,
 	TestComParametersRecovery.class,
 	TestPCARecovery.class,
-	TestLowKeyHashMap.class
+	TestLowKeyHashMap.class,
+	TestOutliers.class,
+	TestImageDataIO.class,
+	TestImageHeaderIO.class,
+	TestLosslessCompression.class
 })
 
 
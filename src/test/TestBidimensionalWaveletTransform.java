@@ -0,0 +1,153 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Test;
+
+import com.jypec.comdec.BlockAssemblingLineSink;
+import com.jypec.comdec.BlockAssemblingLineSink.BlockListener;
+import com.jypec.comdec.Blocker;
+import com.jypec.ebc.data.CodingBlock;
+import com.jypec.img.HyperspectralBandData;
+import com.jypec.img.ImageDataType;
+import com.jypec.wavelet.BidimensionalWavelet;
+import com.jypec.wavelet.IntegerBidimensionalWavelet;
+import com.jypec.wavelet.MatrixLineSink;
+import com.jypec.wavelet.compositeTransforms.OneDimensionalWaveletExtender;
+import com.jypec.wavelet.compositeTransforms.RecursiveBidimensionalWavelet;
+import com.jypec.wavelet.compositeTransforms.RecursiveIntegerBidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.LineBasedLiftingCdf97Wavelet;
+import com.jypec.wavelet.liftingTransforms.LiftingInteger53BidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.LiftingCdf97BidimensionalWavelet;
+import com.jypec.wavelet.liftingTransforms.LiftingCdf97WaveletTransform;
+import com.jypec.wavelet.liftingTransforms.ParallelLiftingCdf97BidimensionalWavelet;
+
+import test.generic.TestHelpers;
+
+/**
+ * @author Daniel
+ * Test that optimized bidimensional wavelets give the same results as extending
+ * the one dimensional ones
+ */
+public class TestBidimensionalWaveletTransform {
+
+	/**
+	 * Checks that the given wavelet matches the extended {@link LiftingCdf97WaveletTransform}
+	 * when transforming subregions of matrices of different sizes, and that
+	 * it recovers the original matrix
+	 * @param testWavelet
+	 */
+	private void testAgainstReference(BidimensionalWavelet testWavelet) {
+		BidimensionalWavelet reference = new OneDimensionalWaveletExtender(new LiftingCdf97WaveletTransform());
+		Random r = new Random();
+		for (int rows = 1; rows < 40; rows += 3) {
+			for (int cols = 1; cols < 70; cols += 7) {
+				FMatrixRMaj s = new FMatrixRMaj(rows, cols);
+				TestHelpers.randomGaussianFillArray(s.data, rows*cols, r, 1000, 0);
+				int height = 1 + r.nextInt(rows);
+				int width = 1 + r.nextInt(cols);
+				FMatrixRMaj expected = new FMatrixRMaj(s);
+				FMatrixRMaj result = new FMatrixRMaj(s);
+				
+				reference.forwardTransform(expected, height, width);
+				testWavelet.forwardTransform(result, height, width);
+				assertArrayEquals(expected.data, result.data, 0.001f);
+				
+				reference.reverseTransform(expected, height, width);
+				testWavelet.reverseTransform(result, height, width);
+				assertArrayEquals(expected.data, result.data, 0.001f);
+				assertArrayEquals(s.data, result.data, 0.01f);
+			}
+		}
+	}
+	
+	/**
+	 * Test the in place lifting wavelet
+	 */
+	@Test
+	public void testLiftingCdf97Bidimensional() {
+		testAgainstReference(new LiftingCdf97BidimensionalWavelet());
+	}
+	
+	
+	/**
+	 * Test the parallel lifting wavelet, with a low threshold so that work is split
+	 */
+	@Test
+	public void testParallelLiftingCdf97Bidimensional() {
+		testAgainstReference(new ParallelLiftingCdf97BidimensionalWavelet(ForkJoinPool.commonPool(), 16));
+		testAgainstReference(new ParallelLiftingCdf97BidimensionalWavelet());
+	}
+	
+	
+	/**
+	 * Test that the line based wavelet gives the same results as the recursive one,
+	 * and that it reports blocks only once all of their coefficients are final
+	 */
+	@Test
+	public void testLineBasedLiftingCdf97() {
+		Random r = new Random();
+		for (int steps = 0; steps < 5; steps++) {
+			for (int rows = 1; rows < 90; rows += 11) {
+				for (int cols = 1; cols < 90; cols += 13) {
+					final FMatrixRMaj expected = new FMatrixRMaj(rows, cols);
+					TestHelpers.randomGaussianFillArray(expected.data, rows*cols, r, 1000, 0);
+					FMatrixRMaj input = new FMatrixRMaj(expected);
+					new RecursiveBidimensionalWavelet(new LiftingCdf97BidimensionalWavelet(), steps).forwardTransform(expected, rows, cols);
+					
+					final FMatrixRMaj result = new FMatrixRMaj(rows, cols);
+					Blocker blocker = new Blocker(HyperspectralBandData.generateRogueBand(ImageDataType.UNSIGNED_BYTE, rows, cols), steps, 16, 32);
+					BlockAssemblingLineSink sink = new BlockAssemblingLineSink(new MatrixLineSink(result), blocker, new BlockListener() {
+						@Override
+						public void blockReady(CodingBlock block) {
+							for (int i = block.getRowOffset(); i < block.getRowOffset() + block.getHeight(); i++) {
+								for (int j = block.getColumnOffset(); j < block.getColumnOffset() + block.getWidth(); j++) {
+									assertEquals(expected.get(i, j), result.get(i, j), 0f);
+								}
+							}
+						}
+					});
+					LineBasedLiftingCdf97Wavelet lbw = new LineBasedLiftingCdf97Wavelet(rows, cols, steps, sink);
+					for (int i = 0; i < rows; i++) {
+						lbw.pushLine(input.data, i * cols);
+					}
+					assertArrayEquals(expected.data, result.data, 0f);
+					assertEquals(0, sink.getPendingBlocks());
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Test that the integer 5/3 wavelet recovers the original samples exactly,
+	 * at several decomposition levels and over subregions
+	 */
+	@Test
+	public void testLiftingInteger53Recovery() {
+		Random r = new Random();
+		for (int steps = 1; steps < 5; steps++) {
+			IntegerBidimensionalWavelet bdw = new RecursiveIntegerBidimensionalWavelet(new LiftingInteger53BidimensionalWavelet(), steps);
+			for (int rows = 1; rows < 70; rows += 9) {
+				for (int cols = 1; cols < 70; cols += 11) {
+					int[] s = new int[rows * cols];
+					for (int i = 0; i < s.length; i++) {
+						s[i] = r.nextInt(1 << 16) - (1 << 15);
+					}
+					int[] res = s.clone();
+					int height = 1 + r.nextInt(rows);
+					int width = 1 + r.nextInt(cols);
+					bdw.forwardTransform(res, cols, height, width);
+					bdw.reverseTransform(res, cols, height, width);
+					assertArrayEquals(s, res);
+				}
+			}
+		}
+	}
+
+}
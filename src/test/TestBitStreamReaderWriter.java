@@ -1,16 +1,26 @@
 package test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Random;
 
 import org.junit.Test;
 
 import com.jypec.util.bits.BitInputStream;
 import com.jypec.util.bits.BitOutputStream;
+import com.jypec.util.bits.BitOutputStreamTree;
+import com.jypec.util.bits.BitPipe;
+import com.jypec.util.bits.BitPipeSpillArea;
+import com.jypec.util.bits.BitStreamConstants;
+import com.jypec.util.bits.ByteBufferBitInputStream;
+import com.jypec.util.bits.SpillingBitPipe;
 
 /**
  * @author Daniel
@@ -179,4 +189,248 @@ public class TestBitStreamReaderWriter {
 
 	}
 	
+	/**
+	 * Test that reading from a {@link ByteBufferBitInputStream} gives the same results
+	 * as reading from a regular {@link BitInputStream}, aligned and unaligned
+	 * @throws IOException 
+	 */
+	@Test
+	public void testByteBufferInputStream() throws IOException {
+		Random r = new Random();
+		byte[] data = new byte[4096];
+		r.nextBytes(data);
+		
+		BitInputStream reference = new BitInputStream(new ByteArrayInputStream(data));
+		BitInputStream buffered = new ByteBufferBitInputStream(ByteBuffer.wrap(data));
+		
+		while (reference.available() > 160) {
+			int bits = r.nextInt(33);
+			switch (r.nextInt(8)) {
+			case 0:
+				assertEquals(reference.readBitAsInt(), buffered.readBitAsInt());
+				break;
+			case 1:
+				assertEquals(reference.readNBitNumber(bits), buffered.readNBitNumber(bits));
+				break;
+			case 2:
+				assertEquals(reference.readNBitNumber(bits, BitStreamConstants.ORDERING_RIGHTMOST_FIRST), 
+						buffered.readNBitNumber(bits, BitStreamConstants.ORDERING_RIGHTMOST_FIRST));
+				break;
+			case 3:
+				assertEquals(reference.readLongBits(bits * 2, BitStreamConstants.ORDERING_RIGHTMOST_FIRST), 
+						buffered.readLongBits(bits * 2, BitStreamConstants.ORDERING_RIGHTMOST_FIRST));
+				break;
+			case 4:
+				assertEquals(reference.readInt(), buffered.readInt());
+				break;
+			case 5:
+				assertEquals(reference.readByte(), buffered.readByte());
+				break;
+			case 6:
+				assertArrayEquals(reference.readFloatArray(bits), buffered.readFloatArray(bits), 0f);
+				break;
+			case 7:
+				assertEquals(reference.readVLPInt(), buffered.readVLPInt());
+				break;
+			}
+			assertEquals(reference.getLastReadBits(), buffered.getLastReadBits());
+			assertEquals(reference.getBitsInput(), buffered.getBitsInput());
+			assertEquals(reference.available(), buffered.available());
+		}
+		
+		//mark and reset
+		buffered.mark(0);
+		int first = buffered.readNBitNumber(13);
+		long second = buffered.readLong();
+		buffered.reset();
+		assertEquals(first, buffered.readNBitNumber(13));
+		assertEquals(second, buffered.readLong());
+		
+		reference.close();
+		buffered.close();
+	}
+	
+	/**
+	 * Test that a buffered {@link BitOutputStream} produces the same output as
+	 * one writing through, for aligned and unaligned writes of all kinds
+	 * @throws IOException 
+	 */
+	@Test
+	public void testBufferedOutputStream() throws IOException {
+		Random r = new Random();
+		ByteArrayOutputStream throughBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream bufferedBytes = new ByteArrayOutputStream();
+		BitOutputStream through = new BitOutputStream(throughBytes);
+		BitOutputStream buffered = new BitOutputStream(bufferedBytes, 100);
+		
+		for (int i = 0; i < 2000; i++) {
+			int bits = r.nextInt(65);
+			long value = r.nextLong();
+			float[] floats = {r.nextFloat(), Float.NaN, -r.nextFloat()};
+			byte[] bytes = new byte[r.nextInt(300)];
+			r.nextBytes(bytes);
+			for (BitOutputStream bos: new BitOutputStream[]{through, buffered}) {
+				switch (i % 6) {
+				case 0:
+					bos.writeBits(value, bits, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
+					break;
+				case 1:
+					bos.writeBits(value, bits, BitStreamConstants.ORDERING_RIGHTMOST_FIRST);
+					break;
+				case 2:
+					bos.writeBit((int) (value & 0x1));
+					break;
+				case 3:
+					bos.writeFloatArray(floats, floats.length);
+					break;
+				case 4:
+					bos.writeByteArray(bytes, bytes.length);
+					break;
+				case 5:
+					bos.writeInt((int) value);
+					break;
+				}
+			}
+			assertEquals(through.getBitsOutput(), buffered.getBitsOutput());
+		}
+		through.paddingFlush();
+		buffered.paddingFlush();
+		assertArrayEquals(throughBytes.toByteArray(), bufferedBytes.toByteArray());
+		
+		//read back what was written bit by bit
+		BitInputStream input = new BitInputStream(new ByteArrayInputStream(bufferedBytes.toByteArray()));
+		assertEquals(input.available() * 8l, (buffered.getBitsOutput() + 7) / 8 * 8);
+		through.close();
+		buffered.close();
+		input.close();
+	}
+	
+	/**
+	 * Test that {@link BitPipe} returns the bits in the same order they were put,
+	 * when mixing single and multiple bit operations, while it grows and wraps around
+	 * @throws IOException 
+	 */
+	@Test
+	public void testBitPipe() throws IOException {
+		Random r = new Random();
+		BitPipe pipe = new BitPipe();
+		ArrayDeque<Integer> reference = new ArrayDeque<Integer>();
+		
+		for (int i = 0; i < 20000; i++) {
+			//more puts than gets at first so that the pipe grows, then drain it
+			boolean put = i < 15000 ? r.nextInt(3) > 0 : r.nextInt(3) == 0;
+			int quantity = r.nextInt(65);
+			if (put) {
+				long bits = r.nextLong();
+				pipe.putBits(bits, quantity);
+				for (int j = quantity - 1; j >= 0; j--) {
+					reference.addLast((int) ((bits >>> j) & 0x1));
+				}
+			} else {
+				quantity = Math.min(quantity, reference.size());
+				long bits = pipe.getBits(quantity);
+				for (int j = quantity - 1; j >= 0; j--) {
+					assertEquals((long) reference.removeFirst(), (bits >>> j) & 0x1);
+				}
+			}
+			assertEquals(reference.size(), pipe.getNumberOfBits());
+		}
+		
+		//transfer what is left to another pipe, and then to a stream
+		BitPipe other = new BitPipe();
+		other.putBit(1);
+		reference.addFirst(1);
+		pipe.transferTo(other);
+		assertTrue(pipe.isEmpty());
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(baos);
+		int size = reference.size();
+		other.transferTo(bos);
+		bos.paddingFlush();
+		BitInputStream input = new BitInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		for (int i = 0; i < size; i++) {
+			assertEquals((int) reference.removeFirst(), input.readBitAsInt());
+		}
+		bos.close();
+		input.close();
+	}
+	
+	
+	/**
+	 * Test that a tree spilling its bits to disk dumps the same as one keeping them in memory
+	 * @throws IOException
+	 */
+	@Test
+	public void testSpillingTree() throws IOException {
+		Random r = new Random();
+		BitOutputStreamTree memory = new BitOutputStreamTree("root", true);
+		BitOutputStreamTree spilling = new BitOutputStreamTree("root", true, 1000);
+		BitOutputStreamTree[] memoryNodes = new BitOutputStreamTree[8];
+		BitOutputStreamTree[] spillingNodes = new BitOutputStreamTree[8];
+		for (int i = 0; i < memoryNodes.length; i++) {
+			memoryNodes[i] = memory.addChild("node" + i);
+			spillingNodes[i] = spilling.addChild("node" + i);
+		}
+		
+		//interleave writes so that nodes are spilled at different points
+		for (int i = 0; i < 20000; i++) {
+			int node = r.nextInt(memoryNodes.length);
+			int quantity = r.nextInt(65);
+			long bits = r.nextLong();
+			memoryNodes[node].writeBits(bits, quantity, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
+			spillingNodes[node].writeBits(bits, quantity, BitStreamConstants.ORDERING_LEFTMOST_FIRST);
+		}
+		assertEquals(memory.layoutTreeStructure(null), spilling.layoutTreeStructure(null));
+		
+		//read some bits back from one node so that both disk and memory bits are used
+		for (int i = 0; i < 100; i++) {
+			int quantity = r.nextInt(65);
+			assertEquals(memoryNodes[0].getBis().readLongBits(quantity, BitStreamConstants.ORDERING_LEFTMOST_FIRST), 
+					spillingNodes[0].getBis().readLongBits(quantity, BitStreamConstants.ORDERING_LEFTMOST_FIRST));
+		}
+		
+		ByteArrayOutputStream memoryOutput = new ByteArrayOutputStream();
+		ByteArrayOutputStream spillingOutput = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(memoryOutput);
+		memory.dumpInBitOutputStream(bos);
+		bos.paddingFlush();
+		bos.close();
+		bos = new BitOutputStream(spillingOutput);
+		spilling.dumpInBitOutputStream(bos);
+		bos.paddingFlush();
+		bos.close();
+		assertArrayEquals(memoryOutput.toByteArray(), spillingOutput.toByteArray());
+		assertEquals(0, spilling.getTreeBits());
+		memory.close();
+		spilling.close();
+	}
+	
+	
+	/**
+	 * Test that spilling releases the memory of the spilled bits, so that a pipe
+	 * never holds much more memory than the threshold no matter how many bits go through it
+	 * @throws IOException
+	 */
+	@Test
+	public void testSpillingReleasesMemory() throws IOException {
+		long threshold = 1 << 20;
+		BitPipeSpillArea area = new BitPipeSpillArea(threshold);
+		SpillingBitPipe pipe = area.createPipe();
+		long maxCapacity = 0;
+		for (int i = 0; i < (1 << 26) / Long.SIZE; i++) {
+			pipe.putBits(i, Long.SIZE);
+			maxCapacity = Math.max(maxCapacity, pipe.getCapacity());
+		}
+		assertTrue(area.getSpilledBytes() > 0);
+		//the buffer grows in powers of two, so it can reach twice the threshold before spilling
+		assertTrue("Pipe held " + maxCapacity + " bits", maxCapacity <= 2 * threshold + 2 * Long.SIZE);
+		
+		for (int i = 0; i < (1 << 26) / Long.SIZE; i++) {
+			assertEquals(i, pipe.getBits(Long.SIZE));
+			assertTrue(pipe.getCapacity() <= 2 * threshold + 2 * Long.SIZE);
+		}
+		assertTrue(pipe.isEmpty());
+		area.close();
+	}
+
 }
@@ -11,6 +11,11 @@ import com.jypec.ebc.EBCoder;
 import com.jypec.ebc.EBDecoder;
 import com.jypec.ebc.SubBand;
 import com.jypec.ebc.data.CodingBlock;
+import com.jypec.img.HyperspectralBandData;
+import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageFloatData;
+import com.jypec.img.HyperspectralImageIntegerData;
+import com.jypec.img.ImageDataType;
 import com.jypec.temp.ClassLogger;
 import com.jypec.util.bits.BitInputStream;
 import com.jypec.util.bits.BitOutputStreamTree;
@@ -35,6 +40,22 @@ public class TestEBCodec {
 	 * @return true if the test was passed
 	 */
 	private boolean testEncoding(IntegerMatrix data, int width, int height, int depth, SubBand band) {
+		return this.testEncoding(data, width, height, depth, band, new EBCoder(), new EBDecoder());
+	}
+	
+	/**
+	 * Tests if the encoding and then decoding of the given data produces the same result back,
+	 * using the given coder and decoder
+	 * @param data
+	 * @param width
+	 * @param height
+	 * @param depth
+	 * @param band
+	 * @param coder
+	 * @param decoder
+	 * @return true if the test was passed
+	 */
+	private boolean testEncoding(IntegerMatrix data, int width, int height, int depth, SubBand band, EBCoder coder, EBDecoder decoder) {
 		ClassLogger.logger().log(this, "Testing: " + height + "x" + width + "x" + depth + " (" + band.toString() + ")");
 		
 		//Code it
@@ -42,7 +63,6 @@ public class TestEBCodec {
 		BitOutputStreamTree bost = new BitOutputStreamTree();
 		
 		
-		EBCoder coder = new EBCoder();
 		try {
 			coder.code(block, bost);
 		} catch (IOException e) {
@@ -52,7 +72,6 @@ public class TestEBCodec {
 		
 		//decode it
 		CodingBlock blockOut = new CodingBlock(height, width, depth, band);
-		EBDecoder decoder = new EBDecoder();
 		
 		BitInputStream input = bost.getBis();
 		try {
@@ -161,6 +180,58 @@ public class TestEBCodec {
 
 	}
 	
-
+	/**
+	 * Test that reusing the same coder and decoder for blocks of different shapes 
+	 * (so that their inner workspaces are recycled) does not affect the results
+	 */
+	@Test
+	public void testCoderReuse() {
+		Random r = new Random();
+		
+		int[] widths = {64, 1, 64, 4, 50, 59, 1024, 20, 4, 12, 36, 64};
+		int[] heights = {64, 64, 4, 64, 60, 2, 4, 4, 1024, 59, 7, 64};
+		int[] depths = {16, 4, 4, 4, 2, 25, 21, 3, 12, 7, 16, 32};
+		IntegerMatrix data = BidimensionalArrayIntegerMatrix.newMatrix(1024, 1024);
+		EBCoder coder = new EBCoder();
+		EBDecoder decoder = new EBDecoder();
+		for (int i = 0; i < widths.length; i++) {
+			TestHelpers.randomizeMatrix(r, data, widths[i], heights[i], depths[i]);
+			assertTrue("Failed reusing coder for " + heights[i] + "x" + widths[i], 
+					this.testEncoding(data, widths[i], heights[i], depths[i], SubBand.HL, coder, decoder));
+		}
+	}
+	
+	
+	/**
+	 * Test coding blocks placed inside bands, both over integer images (array backed)
+	 * and float images (accessed through the image), so that the local copies of the
+	 * blocks are taken from and stored to the right place
+	 * @throws IOException 
+	 */
+	@Test
+	public void testBlocksWithinBands() throws IOException {
+		Random r = new Random(4);
+		ImageDataType type = new ImageDataType(12, true);
+		HyperspectralImageData[] sources = {new HyperspectralImageIntegerData(type, 3, 40, 70), new HyperspectralImageFloatData(type, 3, 40, 70)};
+		for (HyperspectralImageData source: sources) {
+			HyperspectralBandData band = source.getBand(1);
+			TestHelpers.randomizeMatrix(r, band, 70, 40, 12);
+			HyperspectralImageData target = new HyperspectralImageIntegerData(type, 3, 40, 70);
+			
+			CodingBlock block = band.extractBlock(5, 9, 31, 43, SubBand.LH);
+			BitOutputStreamTree bost = new BitOutputStreamTree();
+			new EBCoder().code(block, bost);
+			new EBDecoder().decode(bost.getBis(), target.getBand(1).extractBlock(5, 9, 31, 43, SubBand.LH));
+			
+			for (int i = 0; i < 40; i++) {
+				for (int j = 0; j < 70; j++) {
+					int expected = block.isEncoding(i, j) ? source.getDataAt(1, i, j) : 0;
+					assertEquals("Failed @" + i + "," + j, expected, target.getDataAt(1, i, j));
+					assertEquals(0, target.getDataAt(0, i, j));
+					assertEquals(0, target.getDataAt(2, i, j));
+				}
+			}
+		}
+	}
 
 }
@@ -0,0 +1,372 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jypec.img.HyperspectralImageByteData;
+import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageFloatData;
+import com.jypec.img.HyperspectralImageIntegerData;
+import com.jypec.img.HyperspectralImageMappedData;
+import com.jypec.img.HyperspectralImageShortData;
+import com.jypec.img.ImageDataType;
+import com.jypec.util.bits.BitOutputStream;
+import com.jypec.util.io.ChunkedByteBuffer;
+import com.jypec.util.io.HyperspectralImageDataReader;
+import com.jypec.util.io.HyperspectralImageDataWriter;
+import com.jypec.util.io.IOUtilities;
+import com.jypec.util.io.headerio.enums.BandOrdering;
+import com.jypec.util.io.headerio.enums.ByteOrdering;
+import com.jypec.util.io.imagedatareading.ImageDataReaderFactory;
+import com.jypec.util.io.imagedatawriting.ImageDataWriterFactory;
+
+/**
+ * @author Daniel
+ * Test that raw image data survives being written and read back
+ * in every band and byte ordering
+ */
+public class TestImageDataIO {
+
+	private static final ImageDataType[] TYPES = {
+			ImageDataType.UNSIGNED_BYTE, 
+			ImageDataType.SIGNED_TWO_BYTE, 
+			ImageDataType.UNSIGNED_TWO_BYTE, 
+			new ImageDataType(24, false),
+			ImageDataType.SIGNED_FOUR_BYTE};
+	
+	/**
+	 * Write and read random images of all byte aligned types
+	 */
+	@Test
+	public void testByteAlignedRoundTrip() {
+		Random r = new Random(41);
+		for (ImageDataType type: TYPES) {
+			for (BandOrdering bo: BandOrdering.values()) {
+				for (ByteOrdering byo: ByteOrdering.values()) {
+					int bands = r.nextInt(6) + 1, lines = r.nextInt(20) + 1, samples = r.nextInt(20) + 1;
+					HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+					ByteBuffer bb = write(src, bo, byo, type.getByteDepth());
+					
+					HyperspectralImageIntegerData intDst = new HyperspectralImageIntegerData(type, bands, lines, samples);
+					ImageDataReaderFactory.getReader(bo, byo, type).readFromBuffer(bb.duplicate(), intDst);
+					assertSameData(src, intDst, type + " " + bo + " " + byo);
+					
+					if (type.getBitDepth() <= 16) {
+						HyperspectralImageFloatData floatDst = new HyperspectralImageFloatData(type, bands, lines, samples);
+						ByteBuffer dup = bb.duplicate();
+						ImageDataReaderFactory.getReader(bo, byo, type).readFromBuffer(dup, floatDst);
+						assertSameData(src, floatDst, type + " " + bo + " " + byo + " (float)");
+						assertEquals(bb.limit(), dup.position());
+					}
+				}
+			}
+		}
+	}
+	
+	
+	private static HyperspectralImageIntegerData randomImage(Random r, ImageDataType type, int bands, int lines, int samples) {
+		HyperspectralImageIntegerData img = new HyperspectralImageIntegerData(type, bands, lines, samples);
+		int mask = type.getBitDepth() == 32 ? -1 : (1 << type.getBitDepth()) - 1;
+		for (int i = 0; i < bands; i++) {
+			for (int j = 0; j < lines; j++) {
+				for (int k = 0; k < samples; k++) {
+					img.setDataAt(r.nextInt() & mask, i, j, k);
+				}
+			}
+		}
+		return img;
+	}
+	
+	private static ByteBuffer write(HyperspectralImageData src, BandOrdering bo, ByteOrdering byo, int bytes) {
+		ByteBuffer bb = ByteBuffer.allocate((int) src.getTotalNumberOfSamples() * bytes);
+		ImageDataWriterFactory.getWriter(bo, byo, src.getDataType()).writeToBuffer(src, bb);
+		bb.flip();
+		return bb;
+	}
+	
+	private static void assertSameData(HyperspectralImageData expected, HyperspectralImageData actual, String message) {
+		for (int i = 0; i < expected.getNumberOfBands(); i++) {
+			for (int j = 0; j < expected.getNumberOfLines(); j++) {
+				for (int k = 0; k < expected.getNumberOfSamples(); k++) {
+					assertEquals(message, expected.getDataAt(i, j, k), actual.getDataAt(i, j, k));
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check images large enough to be split across threads and tiled against a 
+	 * straightforward sample by sample encoding
+	 */
+	@Test
+	public void testLargeInterleaved() {
+		Random r = new Random(42);
+		ImageDataType[] types = {ImageDataType.UNSIGNED_BYTE, ImageDataType.UNSIGNED_TWO_BYTE, ImageDataType.SIGNED_FOUR_BYTE};
+		for (ImageDataType type: types) {
+			for (BandOrdering bo: BandOrdering.values()) {
+				ByteOrdering byo = r.nextBoolean() ? ByteOrdering.BIG_ENDIAN : ByteOrdering.LITTLE_ENDIAN;
+				int bands = 70 + r.nextInt(10), lines = 40 + r.nextInt(10), samples = 90 + r.nextInt(20);
+				HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+				ByteBuffer expected = ByteBuffer.allocate((int) src.getTotalNumberOfSamples() * type.getByteDepth());
+				for (int a = 0; a < (bo == BandOrdering.BSQ ? bands : lines); a++) {
+					for (int b = 0; b < (bo == BandOrdering.BIP ? samples : bo == BandOrdering.BIL ? bands : lines); b++) {
+						for (int c = 0; c < (bo == BandOrdering.BIP ? bands : samples); c++) {
+							int band = bo == BandOrdering.BSQ ? a : bo == BandOrdering.BIL ? b : c;
+							int line = bo == BandOrdering.BSQ ? b : a;
+							int sample = bo == BandOrdering.BIP ? b : c;
+							IOUtilities.putBytes(src.getDataAt(band, line, sample), byo, type.getByteDepth(), expected);
+						}
+					}
+				}
+				expected.flip();
+				
+				assertEquals(type + " " + bo, expected, write(src, bo, byo, type.getByteDepth()));
+				HyperspectralImageIntegerData dst = new HyperspectralImageIntegerData(type, bands, lines, samples);
+				ImageDataReaderFactory.getReader(bo, byo, type).readFromBuffer(expected, dst);
+				assertSameData(src, dst, type + " " + bo);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check packed (non byte aligned) depths against a bit by bit encoding,
+	 * including runs that do not end at a byte boundary
+	 * @throws IOException 
+	 */
+	@Test
+	public void testPackedDepths() throws IOException {
+		Random r = new Random(43);
+		int[] depths = {1, 3, 5, 7, 9, 10, 11, 12, 13, 14, 15, 20, 25};
+		for (int depth: depths) {
+			ImageDataType type = new ImageDataType(depth, false);
+			for (BandOrdering bo: BandOrdering.values()) {
+				boolean large = r.nextBoolean();
+				int bands = r.nextInt(large ? 80 : 5) + 1, lines = r.nextInt(large ? 60 : 9) + 1, samples = r.nextInt(large ? 90 : 9) + 1;
+				HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				BitOutputStream bos = new BitOutputStream(baos);
+				for (int a = 0; a < (bo == BandOrdering.BSQ ? bands : lines); a++) {
+					for (int b = 0; b < (bo == BandOrdering.BIP ? samples : bo == BandOrdering.BIL ? bands : lines); b++) {
+						for (int c = 0; c < (bo == BandOrdering.BIP ? bands : samples); c++) {
+							int band = bo == BandOrdering.BSQ ? a : bo == BandOrdering.BIL ? b : c;
+							int line = bo == BandOrdering.BSQ ? b : a;
+							int sample = bo == BandOrdering.BIP ? b : c;
+							bos.writeNBitNumber(src.getDataAt(band, line, sample), depth);
+						}
+					}
+				}
+				bos.paddingFlush();
+				ByteBuffer expected = ByteBuffer.wrap(baos.toByteArray());
+				
+				ByteBuffer written = ByteBuffer.allocate(expected.limit());
+				ImageDataWriterFactory.getWriter(bo, ByteOrdering.BIG_ENDIAN, type).writeToBuffer(src, written);
+				assertEquals(depth + " " + bo, written.limit(), written.position());
+				written.flip();
+				assertEquals(depth + " " + bo, expected, written);
+				
+				HyperspectralImageIntegerData dst = new HyperspectralImageIntegerData(type, bands, lines, samples);
+				ImageDataReaderFactory.getReader(bo, ByteOrdering.BIG_ENDIAN, type).readFromBuffer(expected.duplicate(), dst);
+				assertSameData(src, dst, depth + " " + bo);
+				if (depth <= 24) { //floats are exact up to here
+					HyperspectralImageFloatData floatDst = new HyperspectralImageFloatData(type, bands, lines, samples);
+					ImageDataReaderFactory.getReader(bo, ByteOrdering.BIG_ENDIAN, type).readFromBuffer(expected, floatDst);
+					assertSameData(src, floatDst, depth + " " + bo + " (float)");
+					assertEquals(expected.limit(), expected.position());
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check that reading and writing through small chunks into images stored in 
+	 * several segments gives the same as doing it in one go
+	 */
+	@Test
+	public void testChunkedAndSegmented() {
+		Random r = new Random(44);
+		ImageDataType[] types = {ImageDataType.UNSIGNED_BYTE, ImageDataType.UNSIGNED_TWO_BYTE, new ImageDataType(24, false), 
+				ImageDataType.SIGNED_FOUR_BYTE, new ImageDataType(12, false), new ImageDataType(13, false)};
+		for (ImageDataType type: types) {
+			for (BandOrdering bo: BandOrdering.values()) {
+				ByteOrdering byo = r.nextBoolean() ? ByteOrdering.BIG_ENDIAN : ByteOrdering.LITTLE_ENDIAN;
+				int bands = r.nextInt(90) + 1, lines = r.nextInt(30) + 1, samples = r.nextInt(30) + 1;
+				HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+				int length = (int) ((src.getTotalNumberOfSamples() * type.getBitDepth() + 7) / 8);
+				ByteBuffer expected = ByteBuffer.allocate(length);
+				ImageDataWriterFactory.getWriter(bo, byo, type).writeToBuffer(src, expected);
+				expected.flip();
+				
+				int chunkSize = 48 * (r.nextInt(4) + 1);
+				HyperspectralImageIntegerData segmented = new HyperspectralImageIntegerData(type, bands, lines, samples, lines * samples * (r.nextInt(3) + 1));
+				ImageDataReaderFactory.getReader(bo, byo, type).readFromBuffer(ChunkedByteBuffer.wrap(expected, chunkSize), segmented);
+				assertSameData(src, segmented, type + " " + bo);
+				
+				ByteBuffer written = ByteBuffer.allocate(length);
+				ImageDataWriterFactory.getWriter(bo, byo, type).writeToBuffer(segmented, ChunkedByteBuffer.wrap(written, chunkSize));
+				assertEquals(type + " " + bo, expected, written);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check that the byte and short backed images read, write and convert to floats
+	 * the same as the integer backed ones
+	 */
+	@Test
+	public void testCompactImages() {
+		Random r = new Random(45);
+		ImageDataType[] types = {ImageDataType.UNSIGNED_BYTE, ImageDataType.SIGNED_BYTE, new ImageDataType(12, false),
+				ImageDataType.UNSIGNED_TWO_BYTE, ImageDataType.SIGNED_TWO_BYTE};
+		for (ImageDataType type: types) {
+			for (BandOrdering bo: BandOrdering.values()) {
+				ByteOrdering byo = r.nextBoolean() ? ByteOrdering.BIG_ENDIAN : ByteOrdering.LITTLE_ENDIAN;
+				int bands = r.nextInt(80) + 1, lines = r.nextInt(40) + 1, samples = r.nextInt(40) + 1;
+				HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+				int length = (int) ((src.getTotalNumberOfSamples() * type.getBitDepth() + 7) / 8);
+				ByteBuffer expected = ByteBuffer.allocate(length);
+				ImageDataWriterFactory.getWriter(bo, byo, type).writeToBuffer(src, expected);
+				expected.flip();
+				
+				HyperspectralImageData compact;
+				if (type.getBitDepth() <= 8) {
+					compact = new HyperspectralImageByteData(type, bands, lines, samples);
+				} else {
+					compact = new HyperspectralImageShortData(type, bands, lines, samples);
+				}
+				ImageDataReaderFactory.getReader(bo, byo, type).readFromBuffer(expected.duplicate(), compact);
+				assertSameData(src, compact, type + " " + bo);
+				assertArrayEquals(src.tofloatMatrix().getData(), compact.tofloatMatrix().getData(), 0f);
+				assertSameData(src, compact.resize(bands, lines, samples), type + " " + bo + " resized");
+				HyperspectralImageData copy = compact.resize(bands, lines, samples);
+				copy.copyDataFrom(src.tofloatMatrix());
+				assertArrayEquals(src.tofloatMatrix().getData(), copy.tofloatMatrix().getData(), 0f);
+				
+				ByteBuffer written = ByteBuffer.allocate(length);
+				ImageDataWriterFactory.getWriter(bo, byo, type).writeToBuffer(compact, written);
+				written.flip();
+				assertEquals(type + " " + bo, expected, written);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check that images decoded on demand from their raw data match the originals,
+	 * both sample by sample and in bulk
+	 */
+	@Test
+	public void testMappedImage() {
+		Random r = new Random(46);
+		ImageDataType[] types = {ImageDataType.SIGNED_BYTE, ImageDataType.SIGNED_TWO_BYTE, new ImageDataType(12, false), new ImageDataType(24, false)};
+		for (ImageDataType type: types) {
+			for (BandOrdering bo: BandOrdering.values()) {
+				ByteOrdering byo = r.nextBoolean() ? ByteOrdering.BIG_ENDIAN : ByteOrdering.LITTLE_ENDIAN;
+				int bands = r.nextInt(30) + 50, lines = r.nextInt(100) + 200, samples = r.nextInt(20) + 20;
+				HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+				int length = (int) ((src.getBitSize() + 7) / 8);
+				ByteBuffer bb = ByteBuffer.allocate(length);
+				ImageDataWriterFactory.getWriter(bo, byo, type).writeToBuffer(src, bb);
+				bb.flip();
+				
+				HyperspectralImageMappedData mapped = new HyperspectralImageMappedData(type, bands, lines, samples, 
+						ChunkedByteBuffer.wrap(bb, 3 << 12), bo, byo);
+				String message = type + " " + bo;
+				for (int i = 0; i < 1000; i++) {
+					int b = r.nextInt(bands), l = r.nextInt(lines), s = r.nextInt(samples);
+					assertEquals(message, src.getDataAt(b, l, s), mapped.getDataAt(b, l, s));
+				}
+				assertArrayEquals(message, src.getPixel(lines - 1, samples / 2), mapped.getPixel(lines - 1, samples / 2), 0f);
+				int[] expected = new int[lines * samples], actual = new int[lines * samples];
+				for (int b = 0; b < bands; b++) {
+					int from = r.nextInt(lines * samples);
+					src.getDataRun(b, from, expected, 0, lines * samples - from);
+					mapped.getDataRun(b, from, actual, 0, lines * samples - from);
+					assertArrayEquals(message, expected, actual);
+				}
+				assertSameData(src, mapped, message);
+				assertArrayEquals(message, src.tofloatMatrix().getData(), mapped.tofloatMatrix().getData(), 0f);
+				assertSameData(src, mapped.resize(bands, lines, samples), message);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check that images are written to files of the exact size their type needs,
+	 * and that float images are written with the data they represent
+	 * @throws IOException 
+	 */
+	@Test
+	public void testWriteImageFile() throws IOException {
+		Random r = new Random(48);
+		File f = File.createTempFile("jypec", ".raw");
+		f.deleteOnExit();
+		ImageDataType[] types = {ImageDataType.UNSIGNED_TWO_BYTE, ImageDataType.SIGNED_BYTE, new ImageDataType(12, false)};
+		for (ImageDataType type: types) {
+			HyperspectralImageIntegerData src = randomImage(r, type, 20, 30, 40);
+			HyperspectralImageFloatData floats = new HyperspectralImageFloatData(src.tofloatMatrix(), type, 20, 30, 40);
+			HyperspectralImageDataWriter.writeImageData(floats, 0, f.getPath(), BandOrdering.BIL, ByteOrdering.LITTLE_ENDIAN);
+			assertEquals(type.toString(), (src.getBitSize() + 7) / 8, f.length());
+			
+			HyperspectralImageIntegerData read = new HyperspectralImageIntegerData(type, 20, 30, 40);
+			HyperspectralImageDataReader.readImageData(f.getPath(), read, BandOrdering.BIL, ByteOrdering.LITTLE_ENDIAN);
+			//negative zeroes are written as zeroes, so compare values
+			assertArrayEquals(type.toString(), src.tofloatMatrix().getData(), read.tofloatMatrix().getData(), 0f);
+		}
+	}
+	
+	
+	/**
+	 * Check that writing an image a panel of lines at a time gives the same
+	 * result as writing it whole
+	 */
+	@Test
+	public void testWriteLinesInPanels() {
+		Random r = new Random(49);
+		ImageDataType[] types = {ImageDataType.UNSIGNED_TWO_BYTE, new ImageDataType(12, false), new ImageDataType(5, false)};
+		for (ImageDataType type: types) {
+			for (BandOrdering bo: BandOrdering.values()) {
+				ByteOrdering byo = r.nextBoolean() ? ByteOrdering.BIG_ENDIAN : ByteOrdering.LITTLE_ENDIAN;
+				int bands = r.nextInt(10) + 1, lines = r.nextInt(60) + 20, samples = r.nextInt(20) + 1;
+				if (bo == BandOrdering.BSQ) {
+					samples &= ~0x7; //bands must start at byte boundaries
+					samples += 8;
+				}
+				HyperspectralImageIntegerData src = randomImage(r, type, bands, lines, samples);
+				int length = (int) ((src.getBitSize() + 7) / 8);
+				ByteBuffer expected = ByteBuffer.allocate(length);
+				ImageDataWriterFactory.getWriter(bo, byo, type).writeToBuffer(src, expected);
+				expected.flip();
+				
+				ByteBuffer actual = ByteBuffer.allocate(length);
+				ChunkedByteBuffer cb = ChunkedByteBuffer.wrap(actual);
+				for (int firstLine = 0; firstLine < lines; firstLine += 8) {
+					int panelLines = Math.min(8, lines - firstLine);
+					HyperspectralImageIntegerData panel = new HyperspectralImageIntegerData(type, bands, panelLines, samples);
+					for (int i = 0; i < bands; i++) {
+						for (int j = 0; j < panelLines; j++) {
+							for (int k = 0; k < samples; k++) {
+								panel.setDataAt(src.getDataAt(i, firstLine + j, k), i, j, k);
+							}
+						}
+					}
+					ImageDataWriterFactory.getWriter(bo, byo, type).writeLinesToBuffer(panel, firstLine, lines, cb);
+				}
+				assertEquals(type + " " + bo, expected, actual);
+			}
+		}
+	}
+
+}
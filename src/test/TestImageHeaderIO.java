@@ -0,0 +1,110 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.jypec.img.HeaderConstants;
+import com.jypec.img.ImageHeaderData;
+import com.jypec.util.bits.BitInputStream;
+import com.jypec.util.bits.ByteBufferBitInputStream;
+import com.jypec.util.io.headerio.ImageHeaderReaderWriter;
+import com.jypec.util.io.headerio.enums.BandOrdering;
+
+/**
+ * Test that ENVI headers are parsed and written back properly
+ * @author Daniel
+ */
+public class TestImageHeaderIO {
+	
+	private static final String HEADER = 
+			"ENVI\r\n"
+			+ "description = {synthetic\n  image}\n"
+			+ "samples = 53\n"
+			+ "lines=70\n"
+			+ "this line is ignored\n"
+			+ "bands = 12\n"
+			+ "header offset = 0\n"
+			+ "data type = 12\n"
+			+ "interleave = bip\n"
+			+ "byte order = 0\n"
+			+ "wavelength = {\n 400, 410, 420, 430, 440, 450,\n 460, 470, 480, 490, 500, 510 }  \n";
+	
+	private static int load(byte[] bytes, ImageHeaderData ihd) throws IOException {
+		return ImageHeaderReaderWriter.loadFromStream(new ByteBufferBitInputStream(ByteBuffer.wrap(bytes)), ihd);
+	}
+	
+	private static byte[] save(ImageHeaderData ihd, boolean embedded) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageHeaderReaderWriter.saveToUncompressedStream(ihd, baos, false, embedded);
+		return baos.toByteArray();
+	}
+	
+	/**
+	 * Test that all entries are read, including multi-line lists
+	 * @throws IOException
+	 */
+	@Test
+	public void testParse() throws IOException {
+		ImageHeaderData ihd = new ImageHeaderData();
+		assertEquals(0, load(HEADER.getBytes(StandardCharsets.UTF_8), ihd));
+		assertEquals(53, ihd.getOnce(HeaderConstants.HEADER_SAMPLES));
+		assertEquals(70, ihd.getOnce(HeaderConstants.HEADER_LINES));
+		assertEquals(12, ihd.getOnce(HeaderConstants.HEADER_BANDS));
+		assertEquals(BandOrdering.BIP, ihd.getOnce(HeaderConstants.HEADER_INTERLEAVE));
+		
+		//writing and reading again gives the same header
+		byte[] saved = save(ihd, false);
+		ImageHeaderData reloaded = new ImageHeaderData();
+		load(saved, reloaded);
+		assertEquals(new String(saved, StandardCharsets.UTF_8), new String(save(reloaded, false), StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Test that parsing stops where the data starts when it comes after the header
+	 * @throws IOException
+	 */
+	@Test
+	public void testEmbedded() throws IOException {
+		ImageHeaderData ihd = new ImageHeaderData();
+		load(HEADER.getBytes(StandardCharsets.UTF_8), ihd);
+		byte[] header = save(ihd, true);
+		
+		//data that looks like more entries
+		byte[] data = "\nsamples = 1\nlines = {2\n".getBytes(StandardCharsets.UTF_8);
+		byte[] file = new byte[header.length + data.length];
+		System.arraycopy(header, 0, file, 0, header.length);
+		System.arraycopy(data, 0, file, header.length, data.length);
+		
+		ImageHeaderData reloaded = new ImageHeaderData();
+		assertEquals(header.length, load(file, reloaded));
+		assertEquals(53, reloaded.getOnce(HeaderConstants.HEADER_SAMPLES));
+		assertEquals(70, reloaded.getOnce(HeaderConstants.HEADER_LINES));
+		assertEquals(new String(save(ihd, false), StandardCharsets.UTF_8), new String(save(reloaded, false), StandardCharsets.UTF_8));
+	}
+	
+	
+	/**
+	 * Test that a header can be parsed from a plain {@link BitInputStream}, which
+	 * has to report the end of the header as such instead of failing
+	 * @throws IOException
+	 */
+	@Test
+	public void testParseFromStream() throws IOException {
+		byte[] bytes = HEADER.getBytes(StandardCharsets.UTF_8);
+		ImageHeaderData expected = new ImageHeaderData();
+		load(bytes, expected);
+		
+		ImageHeaderData ihd = new ImageHeaderData();
+		BitInputStream bis = new BitInputStream(new ByteArrayInputStream(bytes));
+		assertEquals(0, ImageHeaderReaderWriter.loadFromStream(bis, ihd));
+		assertEquals(new String(save(expected, false), StandardCharsets.UTF_8), new String(save(ihd, false), StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,137 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jypec.comdec.ComParameters;
+import com.jypec.comdec.Compressor;
+import com.jypec.comdec.Decompressor;
+import com.jypec.img.HeaderConstants;
+import com.jypec.img.HyperspectralImageData;
+import com.jypec.img.HyperspectralImageIntegerData;
+import com.jypec.img.ImageDataType;
+import com.jypec.img.ImageHeaderData;
+import com.jypec.util.bits.BitInputStream;
+import com.jypec.util.bits.BitOutputStream;
+import com.jypec.util.bits.BitOutputStreamTree;
+import com.jypec.util.datastructures.LowKeyHashMap;
+
+/**
+ * Test that images compressed losslessly are recovered exactly
+ * @author Daniel
+ */
+public class TestLosslessCompression {
+
+	private static final int BANDS = 6, LINES = 37, SAMPLES = 29;
+
+	/**
+	 * @param type
+	 * @param r
+	 * @return an image with smooth bands (so that band differences are small) plus noise,
+	 * covering the whole range of the type
+	 */
+	private static HyperspectralImageData randomImage(ImageDataType type, Random r) {
+		HyperspectralImageData img = new HyperspectralImageIntegerData(type, BANDS, LINES, SAMPLES);
+		long range = type.getMaxValue() - type.getMinValue();
+		for (int i = 0; i < BANDS; i++) {
+			for (int j = 0; j < LINES; j++) {
+				for (int k = 0; k < SAMPLES; k++) {
+					double base = 0.5 + 0.4 * Math.sin(j * 0.3 + k * 0.2 + i * 0.05);
+					long value = type.getMinValue() + (long) (base * range) + r.nextInt(64) - 32;
+					value = Math.max(type.getMinValue(), Math.min(type.getMaxValue(), value));
+					if (r.nextInt(100) == 0) {
+						//extreme values
+						value = r.nextBoolean() ? type.getMinValue() : type.getMaxValue();
+					}
+					img.setValueAt(value, i, j, k);
+				}
+			}
+		}
+		return img;
+	}
+
+	/**
+	 * @param img
+	 * @param typeCode header code of the image's data type
+	 * @param cp
+	 * @return the image after compressing and decompressing it with the given parameters
+	 * @throws IOException
+	 */
+	private static HyperspectralImageData roundTrip(HyperspectralImageData img, byte typeCode, ComParameters cp) throws IOException {
+		BitOutputStreamTree tree = new BitOutputStreamTree("root", true);
+		new Compressor(cp).compress(img, tree);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(baos);
+		tree.dumpInBitOutputStream(bos);
+		bos.paddingFlush();
+		bos.close();
+
+		ImageHeaderData ihd = new ImageHeaderData();
+		ihd.put(HeaderConstants.HEADER_BANDS, BANDS);
+		ihd.put(HeaderConstants.HEADER_LINES, LINES);
+		ihd.put(HeaderConstants.HEADER_SAMPLES, SAMPLES);
+		ihd.put(HeaderConstants.HEADER_DATA_TYPE, typeCode);
+		return new Decompressor().decompress(ihd, new BitInputStream(new ByteArrayInputStream(baos.toByteArray())));
+	}
+
+	private static void assertSameImage(HyperspectralImageData expected, HyperspectralImageData result) {
+		for (int i = 0; i < BANDS; i++) {
+			for (int j = 0; j < LINES; j++) {
+				for (int k = 0; k < SAMPLES; k++) {
+					assertEquals("Mismatch at " + i + "," + j + "," + k, expected.getValueAt(i, j, k), result.getValueAt(i, j, k));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that unsigned and signed images are recovered exactly, with and without band differencing
+	 * and for different numbers of wavelet passes
+	 * @throws IOException
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random r = new Random(3);
+		byte[] typeCodes = {1, 2, 12};
+		for (byte typeCode: typeCodes) {
+			HyperspectralImageData img = randomImage(ImageDataType.fromHeaderCode(typeCode), r);
+			for (int passes = 0; passes <= 3; passes++) {
+				for (boolean differencing: new boolean[]{false, true}) {
+					ComParameters cp = new ComParameters();
+					cp.shaveMap = new LowKeyHashMap<Integer, Integer>();
+					cp.lossless = true;
+					cp.bandDifferencing = differencing;
+					cp.wavePasses = passes;
+					assertSameImage(img, roundTrip(img, typeCode, cp));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that images whose coefficients would not fit in an integer are refused
+	 * @throws IOException
+	 */
+	@Test
+	public void testTooDeep() throws IOException {
+		HyperspectralImageData img = new HyperspectralImageIntegerData(ImageDataType.SIGNED_FOUR_BYTE, BANDS, LINES, SAMPLES);
+		ComParameters cp = new ComParameters();
+		cp.shaveMap = new LowKeyHashMap<Integer, Integer>();
+		cp.lossless = true;
+		cp.wavePasses = 1;
+		try {
+			new Compressor(cp).compress(img, new BitOutputStreamTree("root", true));
+			fail("Compression should have been refused");
+		} catch (UnsupportedOperationException e) {
+			//expected
+		}
+	}
+
+}
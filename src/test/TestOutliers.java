@@ -0,0 +1,97 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Test;
+
+import com.jypec.comdec.refinement.Outliers;
+import com.jypec.comdec.refinement.Refinements;
+import com.jypec.util.Pair;
+
+/**
+ * @author Daniel
+ * Test the outlier finder against picking from the fully sorted band
+ */
+public class TestOutliers {
+
+	/**
+	 * Test random bands (with plenty of repeated values and signed zeros) and percentages
+	 */
+	@Test
+	public void testAgainstSorting() {
+		Random r = new Random(6);
+		for (int t = 0; t < 200; t++) {
+			int rows = r.nextInt(30) + 2, cols = r.nextInt(30) + 2;
+			FMatrixRMaj m = new FMatrixRMaj(rows, cols);
+			boolean fewValues = r.nextBoolean();
+			for (int i = 0; i < m.getNumElements(); i++) {
+				m.data[i] = fewValues ? (r.nextInt(9) - 4) * 0.5f : (float) r.nextGaussian();
+				if (m.data[i] == 0 && r.nextBoolean()) {
+					m.data[i] = -0.0f;
+				}
+			}
+			double percent = r.nextDouble() * (t % 2 == 0 ? 0.05 : 0.4);
+			
+			Outliers outliers = Refinements.findOutliers(m, percent);
+			List<Pair<Float, Pair<Integer, Integer>>> expected = new ArrayList<Pair<Float, Pair<Integer, Integer>>>();
+			float[] expectedRange = findOutliersBySorting(m, percent, expected);
+			
+			assertEquals(expected.size(), outliers.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(Float.floatToIntBits(expected.get(i).first()), Float.floatToIntBits(outliers.getValue(i)));
+				assertEquals(expected.get(i).second().first().intValue(), outliers.getRow(i));
+				assertEquals(expected.get(i).second().second().intValue(), outliers.getColumn(i));
+			}
+			assertEquals(Float.floatToIntBits(expectedRange[0]), Float.floatToIntBits(outliers.getNonOutlierRange()[0]));
+			assertEquals(Float.floatToIntBits(expectedRange[1]), Float.floatToIntBits(outliers.getNonOutlierRange()[1]));
+		}
+	}
+	
+	/**
+	 * Reference implementation sorting all samples
+	 */
+	private float[] findOutliersBySorting(FMatrixRMaj m, double percentOutliers, List<Pair<Float, Pair<Integer, Integer>>> res) {
+		List<Pair<Float, Pair<Integer, Integer>>> list = new ArrayList<Pair<Float, Pair<Integer, Integer>>>();
+		for (int i = 0; i < m.getNumRows(); i++) {
+			for (int j = 0; j < m.getNumCols(); j++) {
+				list.add(new Pair<Float, Pair<Integer, Integer>>(m.get(i, j), new Pair<Integer, Integer>(i, j)));
+			}
+		}
+		Collections.sort(list, new Comparator<Pair<Float, Pair<Integer, Integer>>>() {
+			@Override
+			public int compare(Pair<Float, Pair<Integer, Integer>> o1, Pair<Float, Pair<Integer, Integer>> o2) {
+				return Float.compare(o1.first(), o2.first());
+			}
+		});
+		float[] range = new float[2];
+		int lowIndex = 0, highIndex = list.size() - 1;
+		double count = 0, totalCount = list.size();
+		while (count / totalCount < percentOutliers) {
+			float lowVal = list.get(lowIndex).first();
+			float lowNext = list.get(lowIndex + 1).first();
+			float highVal = list.get(highIndex).first();
+			float highPrev = list.get(highIndex - 1).first();
+			if (lowNext - lowVal > highVal - highPrev) {
+				res.add(list.get(lowIndex));
+				lowIndex++;
+				range[0] = lowNext;
+				range[1] = highVal;
+			} else {
+				res.add(list.get(highIndex));
+				highIndex--;
+				range[0] = lowVal;
+				range[1] = highPrev;
+			}
+			count++;
+		}
+		return range;
+	}
+
+}
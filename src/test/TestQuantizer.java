@@ -1,12 +1,25 @@
 package test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
 
+import org.ejml.data.FMatrixRMaj;
 import org.junit.Test;
 
+import com.jypec.img.HyperspectralImageIntegerData;
+import com.jypec.img.ImageDataType;
+import com.jypec.quantization.LogPrequantization;
+import com.jypec.quantization.LogTable;
+import com.jypec.quantization.MatrixQuantizer;
+import com.jypec.quantization.NonePrequantization;
+import com.jypec.quantization.PrequantizationTransformer;
 import com.jypec.quantization.Quantizer;
+import com.jypec.quantization.SplitLinearSqrtPrequantization;
+import com.jypec.quantization.SqrtPrequantization;
+import com.jypec.util.arrays.EJMLExtensions;
 
 /**
  * @author Daniel
@@ -58,4 +71,143 @@ public class TestQuantizer {
 			}
 		}
 	}
+	
+	
+	/**
+	 * Test that the bulk methods give exactly the same results as quantizing sample by sample,
+	 * out of range samples included
+	 */
+	@Test
+	public void testQuantizerBulk() {
+		Random r = new Random(2);
+		for (int j = 0; j < 100; j++) {
+			float upperLimit = r.nextFloat() * 65536;
+			float lowerLimit = - r.nextFloat() * 65536;
+			Quantizer q = new Quantizer(r.nextInt(29) + 1, r.nextInt(0x1 << 11), r.nextInt(3), lowerLimit, upperLimit, r.nextFloat());
+			
+			float[] samples = new float[1000];
+			for (int i = 0; i < samples.length; i++) {
+				samples[i] = (r.nextFloat() * 1.2f - 0.1f) * (upperLimit - lowerLimit) + lowerLimit;
+			}
+			int[] quantized = new int[samples.length + 3];
+			q.normalizeAndQuantize(samples, 0, quantized, 3, samples.length);
+			float[] recovered = new float[samples.length];
+			q.deQuantizeAndDenormalize(quantized, 3, recovered, 0, samples.length);
+			for (int i = 0; i < samples.length; i++) {
+				assertEquals(q.normalizeAndQuantize(samples[i]), quantized[i + 3]);
+				assertEquals(Float.floatToIntBits(q.deQuantizeAndDenormalize(quantized[i + 3])), Float.floatToIntBits(recovered[i]));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Test that the bulk matrix quantizer gives the same results as the element by element one,
+	 * with matrices big enough to be split across threads
+	 */
+	@Test
+	public void testMatrixQuantizerBulk() {
+		Random r = new Random(3);
+		FMatrixRMaj input = new FMatrixRMaj(301, 297);
+		for (int i = 0; i < input.getNumElements(); i++) {
+			input.data[i] = r.nextFloat() - 0.5f;
+		}
+		MatrixQuantizer mq = new MatrixQuantizer(15, 0, 1, -0.5f, 0.5f, 0.375f);
+		HyperspectralImageIntegerData expected = new HyperspectralImageIntegerData(new ImageDataType(16, true), 1, input.getNumRows(), input.getNumCols());
+		mq.quantize(input, expected.getBand(0));
+		int[] quantized = new int[input.getNumElements() + 5];
+		mq.quantize(input, quantized, 5);
+		for (int i = 0; i < input.getNumElements(); i++) {
+			assertEquals(expected.getBandArray(0)[expected.getBandOffset(0) + i], quantized[i + 5]);
+		}
+		
+		FMatrixRMaj expectedOutput = new FMatrixRMaj(input.getNumRows(), input.getNumCols());
+		mq.dequantize(expected.getBand(0), expectedOutput);
+		FMatrixRMaj output = new FMatrixRMaj(input.getNumRows(), input.getNumCols());
+		mq.dequantize(quantized, 5, output);
+		for (int i = 0; i < input.getNumElements(); i++) {
+			assertEquals(Float.floatToIntBits(expectedOutput.data[i]), Float.floatToIntBits(output.data[i]));
+		}
+	}
+	
+	
+	/**
+	 * Test that prequantizing while quantizing gives the same results as doing it in separate passes
+	 */
+	@Test
+	public void testFusedPrequantization() {
+		Random r = new Random(5);
+		FMatrixRMaj input = new FMatrixRMaj(257, 263);
+		for (int i = 0; i < input.getNumElements(); i++) {
+			input.data[i] = (float) r.nextGaussian() * 0.1f;
+		}
+		PrequantizationTransformer[] pts = {new NonePrequantization(), new LogPrequantization(), new SqrtPrequantization(), new SplitLinearSqrtPrequantization()};
+		for (PrequantizationTransformer pt: pts) {
+			pt.train(input);
+			MatrixQuantizer mq = new MatrixQuantizer(15, 0, 1, -0.5f, 0.5f, 0.375f);
+			int[] expected = new int[input.getNumElements()];
+			FMatrixRMaj transformed = input.copy();
+			pt.forwardTransform(transformed);
+			mq.quantize(transformed, expected, 0);
+			int[] quantized = new int[input.getNumElements()];
+			mq.quantize(input, pt, quantized, 0);
+			assertArrayEquals(expected, quantized);
+			
+			FMatrixRMaj expectedOutput = new FMatrixRMaj(input.getNumRows(), input.getNumCols());
+			mq.dequantize(expected, 0, expectedOutput);
+			pt.reverseTransform(expectedOutput);
+			FMatrixRMaj output = new FMatrixRMaj(input.getNumRows(), input.getNumCols());
+			mq.dequantize(quantized, 0, pt, output);
+			for (int i = 0; i < input.getNumElements(); i++) {
+				assertEquals(Float.floatToIntBits(expectedOutput.data[i]), Float.floatToIntBits(output.data[i]));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Test that the log table stays within its error bound
+	 */
+	@Test
+	public void testLogTable() {
+		Random r = new Random(7);
+		for (float max: new float[]{0.01f, 0.7f, 4f, 100f}) {
+			LogTable table = new LogTable(max, LogTable.DEFAULT_SEGMENTS);
+			for (int i = 0; i < 10000; i++) {
+				float t = i == 0 ? max : r.nextFloat() * max;
+				double exact = Math.log1p(t);
+				assertEquals(exact, table.log1p(t), table.getErrorBound() + 4 * Math.ulp((float) exact));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Test that the tabulated log prequantization stays within its error bound of the exact one,
+	 * both sample by sample and over runs
+	 */
+	@Test
+	public void testTabulatedLogPrequantization() {
+		Random r = new Random(11);
+		FMatrixRMaj input = new FMatrixRMaj(61, 127);
+		for (int i = 0; i < input.getNumElements(); i++) {
+			input.data[i] = (float) r.nextGaussian() * 3 + 1;
+		}
+		input.data[5] = 1;
+		float avg = EJMLExtensions.avg(input);
+		LogPrequantization tabulated = new LogPrequantization();
+		tabulated.setTabulated(true);
+		tabulated.train(input);
+		assertTrue(tabulated.getErrorBound() > 0);
+		
+		float[] run = new float[input.getNumElements()];
+		tabulated.forward(input.data, 0, run, 0, run.length);
+		for (int i = 0; i < input.getNumElements(); i++) {
+			float difference = input.data[i] - avg;
+			double expected = Math.signum(difference) * Math.log1p(Math.abs(difference));
+			assertEquals(expected, run[i], tabulated.getErrorBound() + 4 * Math.ulp((float) expected));
+			assertEquals(Float.floatToIntBits(tabulated.forward(input.data[i])), Float.floatToIntBits(run[i]));
+		}
+	}
+
 }
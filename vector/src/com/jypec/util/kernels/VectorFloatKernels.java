@@ -0,0 +1,152 @@
+package com.jypec.util.kernels;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD version of the {@link FloatKernels}, using the incubating vector API. <br>
+ * Only lane-wise operations are vectorized, so that results are bit-exact with
+ * {@link ScalarFloatKernels} (no fused multiply-adds and no reordered sums).
+ * Runs shorter than a vector fall back to the scalar code
+ * @author Daniel
+ */
+public class VectorFloatKernels extends ScalarFloatKernels {
+
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+
+	@Override
+	public void predict(float[] s, int n, int lanes, float coeff) {
+		if (lanes < FLOATS.length()) {
+			super.predict(s, n, lanes, coeff);
+			return;
+		}
+		for (int i = 1; i < n - 1; i += 2) {
+			lift(s, i * lanes, lanes, coeff);
+		}
+		if (n % 2 == 0 && n > 1) {
+			liftEdge(s, (n - 1) * lanes, -lanes, lanes, coeff);
+		}
+	}
+
+	@Override
+	public void update(float[] s, int n, int lanes, float coeff) {
+		if (lanes < FLOATS.length()) {
+			super.update(s, n, lanes, coeff);
+			return;
+		}
+		if (n > 1) {
+			liftEdge(s, 0, lanes, lanes, coeff);
+		}
+		for (int i = 2; i < n - 1; i += 2) {
+			lift(s, i * lanes, lanes, coeff);
+		}
+		if (n % 2 != 0 && n > 1) {
+			liftEdge(s, (n - 1) * lanes, -lanes, lanes, coeff);
+		}
+	}
+
+	/** s[k] += coeff * (s[k - lanes] + s[k + lanes]) for the given run */
+	private static void lift(float[] s, int base, int lanes, float coeff) {
+		int k = base, end = base + lanes, bound = base + FLOATS.loopBound(lanes);
+		for (; k < bound; k += FLOATS.length()) {
+			FloatVector prev = FloatVector.fromArray(FLOATS, s, k - lanes);
+			FloatVector next = FloatVector.fromArray(FLOATS, s, k + lanes);
+			FloatVector.fromArray(FLOATS, s, k).add(prev.add(next).mul(coeff)).intoArray(s, k);
+		}
+		for (; k < end; k++) {
+			s[k] += coeff * (s[k - lanes] + s[k + lanes]);
+		}
+	}
+
+	/** s[k] += 2 * coeff * s[k + distance] for the given run */
+	private static void liftEdge(float[] s, int base, int distance, int lanes, float coeff) {
+		float doubleCoeff = 2*coeff;
+		int k = base, end = base + lanes, bound = base + FLOATS.loopBound(lanes);
+		for (; k < bound; k += FLOATS.length()) {
+			FloatVector other = FloatVector.fromArray(FLOATS, s, k + distance);
+			FloatVector.fromArray(FLOATS, s, k).add(other.mul(doubleCoeff)).intoArray(s, k);
+		}
+		for (; k < end; k++) {
+			s[k] += doubleCoeff*s[k + distance];
+		}
+	}
+
+	@Override
+	public void normalize(float[] s, int offset, int length, float min, float range, float targetMin, float targetRange) {
+		int bound = FLOATS.loopBound(length);
+		for (int i = offset; i < offset + bound; i += FLOATS.length()) {
+			FloatVector.fromArray(FLOATS, s, i).sub(min).div(range).mul(targetRange).add(targetMin).intoArray(s, i);
+		}
+		super.normalize(s, offset + bound, length - bound, min, range, targetMin, targetRange);
+	}
+
+	@Override
+	public void minMax(float[] s, int offset, int length, float[] minMax) {
+		int bound = FLOATS.loopBound(length);
+		if (bound == 0) {
+			super.minMax(s, offset, length, minMax);
+			return;
+		}
+		//compare and blend instead of min/max, so that NaNs are skipped as in the scalar version
+		FloatVector min = FloatVector.broadcast(FLOATS, minMax[0]);
+		FloatVector max = FloatVector.broadcast(FLOATS, minMax[1]);
+		for (int i = offset; i < offset + bound; i += FLOATS.length()) {
+			FloatVector v = FloatVector.fromArray(FLOATS, s, i);
+			min = min.blend(v, min.compare(VectorOperators.GT, v));
+			max = max.blend(v, max.compare(VectorOperators.LT, v));
+		}
+		float[] result = {minMax[0], minMax[1]};
+		for (int l = 0; l < FLOATS.length(); l++) {
+			result[0] = result[0] > min.lane(l) ? min.lane(l) : result[0];
+			result[1] = result[1] < max.lane(l) ? max.lane(l) : result[1];
+		}
+		super.minMax(s, offset + bound, length - bound, result);
+		if (result[0] == 0f || result[1] == 0f) {
+			//which signed zero is kept depends on the order samples are seen, so do it the scalar way
+			super.minMax(s, offset, length, minMax);
+			return;
+		}
+		minMax[0] = result[0];
+		minMax[1] = result[1];
+	}
+
+	@Override
+	public void quantize(float[] src, int srcOffset, int[] dst, int dstOffset, int length,
+			float lowerLimit, float intervalLength, float lowerGuard, float upperGuard, float delta, int maxMagnitude, int signBit) {
+		int bound = FLOATS.loopBound(length);
+		for (int i = 0; i < bound; i += FLOATS.length()) {
+			FloatVector input = FloatVector.fromArray(FLOATS, src, srcOffset + i)
+					.sub(lowerLimit).div(intervalLength).sub(0.5f)
+					.min(upperGuard).max(lowerGuard);
+			VectorMask<Integer> negative = input.compare(VectorOperators.GE, 0.0f).not().cast(INTS);
+			IntVector magnitude = (IntVector) input.abs().div(delta).convertShape(VectorOperators.F2I, INTS, 0);
+			magnitude = magnitude.min(maxMagnitude);
+			magnitude.lanewise(VectorOperators.OR, signBit, negative).intoArray(dst, dstOffset + i);
+		}
+		super.quantize(src, srcOffset + bound, dst, dstOffset + bound, length - bound,
+				lowerLimit, intervalLength, lowerGuard, upperGuard, delta, maxMagnitude, signBit);
+	}
+
+	@Override
+	public void dequantize(int[] src, int srcOffset, float[] dst, int dstOffset, int length,
+			float lowerLimit, float intervalLength, float delta, float reconstructionOffset, int signBit) {
+		int bound = FLOATS.loopBound(length);
+		for (int i = 0; i < bound; i += FLOATS.length()) {
+			IntVector input = IntVector.fromArray(INTS, src, srcOffset + i);
+			VectorMask<Float> zero = input.compare(VectorOperators.EQ, 0).cast(FLOATS);
+			VectorMask<Float> negative = input.and(signBit).compare(VectorOperators.NE, 0).cast(FLOATS);
+			FloatVector result = (FloatVector) input.and(~signBit).convertShape(VectorOperators.I2F, FLOATS, 0);
+			result = result.add(reconstructionOffset).mul(delta);
+			result = result.lanewise(VectorOperators.NEG, negative).blend(0f, zero);
+			result.add(0.5f).mul(intervalLength).add(lowerLimit).intoArray(dst, dstOffset + i);
+		}
+		super.dequantize(src, srcOffset + bound, dst, dstOffset + bound, length - bound,
+				lowerLimit, intervalLength, delta, reconstructionOffset, signBit);
+	}
+
+}